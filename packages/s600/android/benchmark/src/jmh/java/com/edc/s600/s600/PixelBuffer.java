@@ -0,0 +1,21 @@
+package com.edc.s600.s600;
+
+/**
+ * PixelBuffer - stand-in for an Android Bitmap: rows are copied in as setPixels would
+ */
+final class PixelBuffer implements SymbolRaster.RowSink {
+  final int width;
+  final int height;
+  final int[] pixels;
+
+  PixelBuffer(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.pixels = new int[width * height];
+  }
+
+  @Override
+  public void setRow(int[] row, int y, int rowWidth) {
+    System.arraycopy(row, 0, pixels, y * width, rowWidth);
+  }
+}
@@ -0,0 +1,77 @@
+package com.edc.s600.s600;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * QrRenderBenchmark - QR encode and pixel fill at printable sizes
+ * createQRImage is the legacy path (ZXing scales a BitMatrix, then every pixel is
+ * copied); renderQRCode is the module-scaled path behind the SymbolCache. A
+ * PixelBuffer stands in for the RGB_565 Bitmap the device writes rows into
+ */
+@State(Scope.Thread)
+public class QrRenderBenchmark {
+  // A typical payment QR: a URL with an invoice reference
+  private static final String CONTENT = "https://pay.example.com/i/7f3c9a2e-41b8-4d0e-9a55-c2e1f08b6d13?amount=1250&currency=USD";
+
+  @Param({"100", "200", "300", "400", "600"})
+  public int size;
+
+  private byte[][] modules;
+  private PixelBuffer target;
+  private int[] row;
+
+  @Setup
+  public void setUp() throws WriterException {
+    modules = SymbolRaster.qrModules(CONTENT, ErrorCorrectionLevel.M);
+    int side = SymbolRaster.qrSize(modules.length, size);
+    target = new PixelBuffer(side, side);
+    row = new int[side];
+  }
+
+  /**
+   * QRCodeUtil.createQRImage without the Bitmap: encode at size, then fill every pixel
+   */
+  @Benchmark
+  public int[] createQRImage() throws WriterException {
+    Map<EncodeHintType, Object> hints = new HashMap<>();
+    hints.put(EncodeHintType.CHARACTER_SET, "utf-8");
+    hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+    BitMatrix matrix = new QRCodeWriter().encode(CONTENT, BarcodeFormat.QR_CODE, size, size, hints);
+    return SymbolRaster.matrixPixels(matrix, size, size);
+  }
+
+  /**
+   * QRCodeUtil.renderQRCode: encode modules once, then repeat rows by the module scale
+   */
+  @Benchmark
+  public PixelBuffer renderQRCode() throws WriterException {
+    byte[][] encoded = SymbolRaster.qrModules(CONTENT, ErrorCorrectionLevel.M);
+    int side = SymbolRaster.qrSize(encoded.length, size);
+    PixelBuffer bitmap = new PixelBuffer(side, side);
+    SymbolRaster.qrRows(encoded, side, new int[side], bitmap);
+    return bitmap;
+  }
+
+  /**
+   * Pixel fill alone, into a reused target, as for a SymbolCache miss with a warm row buffer
+   */
+  @Benchmark
+  public PixelBuffer fillRows() {
+    SymbolRaster.qrRows(modules, target.width, row, target);
+    return target;
+  }
+}
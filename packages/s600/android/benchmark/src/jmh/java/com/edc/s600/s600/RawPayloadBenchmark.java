@@ -0,0 +1,77 @@
+package com.edc.s600.s600;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * RawPayloadBenchmark - the CPU side of printRawBytes for 1 KB to 1 MB payloads
+ * Covers decoding the legacy List<int> argument and walking the payload in chunks
+ * the way printRawBytes does, building each chunk as the TEXT_LATIN1 strategy sends it
+ */
+@State(Scope.Thread)
+public class RawPayloadBenchmark {
+  @Param({"1024", "16384", "131072", "1048576"})
+  public int bytes;
+
+  @Param({"50", "1024"})
+  public int chunkSize;
+
+  private List<Integer> intList;
+  private byte[] payload;
+
+  @Setup
+  public void setUp() {
+    // Fixed seed so every run decodes and splits the same data
+    Random random = new Random(600);
+    payload = new byte[bytes];
+    random.nextBytes(payload);
+    intList = new ArrayList<>(bytes);
+    for (byte b : payload) {
+      intList.add(b & 0xff);
+    }
+  }
+
+  /**
+   * Decoding a payload sent as List<int> by older Dart callers
+   */
+  @Benchmark
+  public byte[] decodeIntList() {
+    return RawPayload.toByteArray(intList);
+  }
+
+  /**
+   * Fixed-size chunking as printRawBytes runs it, with every ack immediate
+   */
+  @Benchmark
+  public void splitFixed(Blackhole blackhole) {
+    split(new ChunkFlowControl(chunkSize, 0, false), blackhole);
+  }
+
+  /**
+   * Adaptive chunking: the chunk grows towards MAX_CHUNK_SIZE as fast acks come in
+   */
+  @Benchmark
+  public void splitAdaptive(Blackhole blackhole) {
+    split(new ChunkFlowControl(chunkSize, 0, true), blackhole);
+  }
+
+  private void split(ChunkFlowControl flow, Blackhole blackhole) {
+    int offset = 0;
+    while (offset < payload.length) {
+      int length = Math.min(flow.chunkSize(), payload.length - offset);
+      blackhole.consume(new String(payload, offset, length, StandardCharsets.ISO_8859_1));
+      flow.onChunkAcked(length, 1);
+      offset += length;
+    }
+    blackhole.consume(flow.chunksSent());
+  }
+}
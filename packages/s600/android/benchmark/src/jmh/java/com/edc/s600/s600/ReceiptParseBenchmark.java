@@ -0,0 +1,61 @@
+package com.edc.s600.s600;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ReceiptParseBenchmark - reading printReceipt item maps for receipts of 10 to 1000 lines
+ * Items mimic a real receipt: a centred bold header, one line per article, a total,
+ * feeds and a QR code. Rendering is left out; it is cached by the SymbolCache
+ */
+@State(Scope.Thread)
+public class ReceiptParseBenchmark {
+  @Param({"10", "100", "1000"})
+  public int lines;
+
+  private List<Map<String, Object>> items;
+
+  @Setup
+  public void setUp() {
+    items = new ArrayList<>(lines);
+    items.add(item("type", "text", "text", "SPROUT COFFEE", "style", "bold", "alignment", "center", "fontSize", 32));
+    items.add(item("type", "feedLine", "lines", 1));
+    while (items.size() < lines - 3) {
+      int n = items.size();
+      items.add(item("type", "text", "text", "Flat white x" + (n % 3 + 1) + "        " + (350 + n) / 100.0, "fontSize", 24));
+    }
+    items.add(item("type", "text", "text", "TOTAL 42.50", "style", "bold", "alignment", "right", "fontSize", 24));
+    items.add(item("type", "qrCode", "data", "https://pay.example.com/r/000123", "size", 200, "errorCorrection", "M"));
+    items.add(item("type", "feedLine", "lines", 3));
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) {
+    int plain = 0;
+    for (int i = 0; i < items.size(); i++) {
+      ReceiptItem item = ReceiptItem.parse(items.get(i), i);
+      if (item.isPlainText()) {
+        plain++;
+      }
+      blackhole.consume(item);
+    }
+    blackhole.consume(plain);
+  }
+
+  private static Map<String, Object> item(Object... keyValues) {
+    Map<String, Object> item = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      item.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return item;
+  }
+}
@@ -0,0 +1,54 @@
+package com.edc.s600.s600;
+
+import com.google.zxing.BarcodeFormat;
+import com.kp.ktsdkservice.data.PrinterConstant;
+import java.util.Locale;
+
+/**
+ * BarcodeSymbology - barcode types accepted by printBarcode
+ * Each type maps to the firmware's PrinterConstant.BarCodeType for native printing
+ * and to the ZXing format used when the firmware cannot print it. zxingFormat is
+ * null for types the bundled ZXing 3.2.1 cannot write.
+ */
+enum BarcodeSymbology {
+  CODE_128("code128", PrinterConstant.BarCodeType.CODE_128, BarcodeFormat.CODE_128),
+  CODE_39("code39", PrinterConstant.BarCodeType.CODE_39, BarcodeFormat.CODE_39),
+  CODE_93("code93", PrinterConstant.BarCodeType.CODE_93, null),
+  EAN_13("ean13", PrinterConstant.BarCodeType.EAN_13, BarcodeFormat.EAN_13),
+  EAN_8("ean8", PrinterConstant.BarCodeType.EAN_8, BarcodeFormat.EAN_8),
+  UPC_A("upc-a", PrinterConstant.BarCodeType.UPC_A, BarcodeFormat.UPC_A),
+  UPC_E("upc-e", PrinterConstant.BarCodeType.UPC_E, null),
+  ITF("itf", PrinterConstant.BarCodeType.ITF, BarcodeFormat.ITF),
+  CODABAR("codabar", PrinterConstant.BarCodeType.CODABAR, BarcodeFormat.CODABAR),
+  PDF_417("pdf417", PrinterConstant.BarCodeType.PDF_417, BarcodeFormat.PDF_417),
+  DATA_MATRIX("datamatrix", PrinterConstant.BarCodeType.DATA_MATRIX, BarcodeFormat.DATA_MATRIX),
+  AZTEC("aztec", PrinterConstant.BarCodeType.AZTEC, BarcodeFormat.AZTEC),
+  QR_CODE("qrcode", PrinterConstant.BarCodeType.QR_CODE, BarcodeFormat.QR_CODE);
+
+  final String dartName;
+  final int nativeType;
+  final BarcodeFormat zxingFormat;
+
+  BarcodeSymbology(String dartName, int nativeType, BarcodeFormat zxingFormat) {
+    this.dartName = dartName;
+    this.nativeType = nativeType;
+    this.zxingFormat = zxingFormat;
+  }
+
+  /**
+   * Look up a Dart type name; null defaults to code128, unknown names give null
+   */
+  static BarcodeSymbology from(String type) {
+    if (type == null) {
+      return CODE_128;
+    }
+
+    String name = type.toLowerCase(Locale.ROOT).replace("_", "");
+    for (BarcodeSymbology symbology : values()) {
+      if (symbology.dartName.replace("-", "").equals(name.replace("-", ""))) {
+        return symbology;
+      }
+    }
+    return null;
+  }
+}
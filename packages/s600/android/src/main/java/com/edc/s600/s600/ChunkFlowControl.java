@@ -0,0 +1,151 @@
+package com.edc.s600.s600;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChunkFlowControl - chunk size and inter-chunk delay for printRawBytes
+ * In fixed mode the caller's values are used as-is. In adaptive mode the chunk
+ * grows and the delay shrinks while acknowledgements stay fast, and both back off
+ * when a chunk fails, an ack is slow or the printer reports it is not ready
+ */
+class ChunkFlowControl {
+  static final int MIN_CHUNK_SIZE = 16;
+  static final int MAX_CHUNK_SIZE = 4096;
+  static final int MAX_DELAY_MS = 500;
+  static final int BACKOFF_DELAY_MS = 50;
+
+  // Acks faster than this count towards growing the chunk
+  static final long FAST_ACK_MS = 150;
+  // Acks slower than this shrink the chunk
+  static final long SLOW_ACK_MS = 1000;
+  // Consecutive fast acks needed before growing
+  static final int FAST_STREAK = 2;
+  // Times a failed chunk is retried (smaller) before the job fails
+  static final int MAX_RETRIES = 3;
+
+  private final boolean adaptive;
+  private int chunkSize;
+  private int delayMs;
+  private int fastStreak = 0;
+  private int retriesForChunk = 0;
+
+  // Statistics
+  private final long startNanos = System.nanoTime();
+  private long bytesSent = 0;
+  private int chunksSent = 0;
+  private int retries = 0;
+  private int backoffs = 0;
+  private int peakChunkSize;
+
+  ChunkFlowControl(int chunkSize, int delayMs, boolean adaptive) {
+    this.adaptive = adaptive;
+    this.chunkSize = adaptive ? clamp(chunkSize, MIN_CHUNK_SIZE, MAX_CHUNK_SIZE) : Math.max(1, chunkSize);
+    this.delayMs = Math.max(0, delayMs);
+    this.peakChunkSize = this.chunkSize;
+  }
+
+  boolean isAdaptive() {
+    return adaptive;
+  }
+
+  int chunkSize() {
+    return chunkSize;
+  }
+
+  int delayMs() {
+    return delayMs;
+  }
+
+  long bytesSent() {
+    return bytesSent;
+  }
+
+  int chunksSent() {
+    return chunksSent;
+  }
+
+  int retries() {
+    return retries;
+  }
+
+  /**
+   * A chunk was acknowledged by the printer after ackMs
+   */
+  void onChunkAcked(int length, long ackMs) {
+    bytesSent += length;
+    chunksSent++;
+    retriesForChunk = 0;
+
+    if (!adaptive) {
+      return;
+    }
+
+    if (ackMs >= SLOW_ACK_MS) {
+      fastStreak = 0;
+      chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize * 3 / 4);
+      return;
+    }
+
+    if (ackMs < FAST_ACK_MS && ++fastStreak >= FAST_STREAK) {
+      fastStreak = 0;
+      chunkSize = Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+      delayMs = delayMs / 2;
+      peakChunkSize = Math.max(peakChunkSize, chunkSize);
+    }
+  }
+
+  /**
+   * A chunk failed. Returns true if it should be retried with the backed-off settings.
+   */
+  boolean onChunkFailed() {
+    if (!adaptive || retriesForChunk >= MAX_RETRIES) {
+      return false;
+    }
+
+    retriesForChunk++;
+    retries++;
+    backOff();
+    return true;
+  }
+
+  /**
+   * The printer reported a state other than ready
+   */
+  void onPrinterNotReady() {
+    if (adaptive) {
+      backOff();
+    }
+  }
+
+  private void backOff() {
+    backoffs++;
+    fastStreak = 0;
+    chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+    delayMs = clamp(Math.max(BACKOFF_DELAY_MS, delayMs * 2), 0, MAX_DELAY_MS);
+  }
+
+  /**
+   * Achieved throughput and final settings, merged into the printRawBytes response
+   */
+  Map<String, Object> report() {
+    long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    Map<String, Object> report = new HashMap<>();
+    report.put("adaptive", adaptive);
+    report.put("bytesSent", bytesSent);
+    report.put("chunksSent", chunksSent);
+    report.put("retries", retries);
+    report.put("backoffs", backoffs);
+    report.put("elapsedMs", elapsedMs);
+    report.put("bytesPerSecond", bytesSent * 1000.0 / elapsedMs);
+    report.put("finalChunkSize", chunkSize);
+    report.put("peakChunkSize", peakChunkSize);
+    report.put("finalDelayMs", delayMs);
+    return report;
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
@@ -0,0 +1,722 @@
+package com.edc.s600.s600;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * EscPosInterpreter - incremental ESC/POS parser that turns a byte stream into printer operations
+ * Bytes can be fed in chunks of any size; a command split across chunks is simply
+ * completed by the next one. Memory per job is constant: one text line (flushed at
+ * MAX_LINE_CHARS), one raster row, one ESC * bit image band, and the payload of the
+ * current barcode or QR command. A line is printed with the style in effect at its first character.
+ * Unsupported commands are skipped and counted
+ */
+class EscPosInterpreter {
+  private static final byte LF = 0x0A;
+  private static final byte CR = 0x0D;
+  private static final byte HT = 0x09;
+  private static final byte DLE = 0x10;
+  private static final byte ESC = 0x1B;
+  private static final byte FS = 0x1C;
+  private static final byte GS = 0x1D;
+
+  // A line this long without LF is printed anyway, bounding the text buffer
+  static final int MAX_LINE_CHARS = 1024;
+
+  // Largest QR payload GS ( k accepts
+  private static final int MAX_SYMBOL_BYTES = 7089;
+
+  // Columns of an ESC * band that are kept; the rest lie past any print head and are skipped
+  static final int MAX_BIT_IMAGE_COLUMNS = 1024;
+
+  static final int ALIGN_LEFT = 0;
+  static final int ALIGN_CENTER = 1;
+  static final int ALIGN_RIGHT = 2;
+
+  /**
+   * Receives the decoded operations in stream order
+   */
+  interface Sink {
+    void text(String line, TextStyle style) throws Exception;
+
+    void feed(int lines) throws Exception;
+
+    void beginRaster(int widthDots, int height) throws Exception;
+
+    /**
+     * One raster row, packed MSB first, 1 = black. The array is reused for the next row.
+     */
+    void rasterRow(byte[] row, int y) throws Exception;
+
+    void endRaster() throws Exception;
+
+    void barcode(BarcodeSymbology symbology, String data, int height, int moduleWidth) throws Exception;
+
+    void qrCode(String data, int moduleSize, char ecLevel) throws Exception;
+  }
+
+  /**
+   * Text attributes, immutable so a line can keep the style it started with
+   */
+  static final class TextStyle {
+    static final TextStyle DEFAULT = new TextStyle(false, false, ALIGN_LEFT, 1, 1);
+
+    final boolean bold;
+    final boolean underline;
+    final int align;
+    final int widthMultiplier;
+    final int heightMultiplier;
+
+    TextStyle(boolean bold, boolean underline, int align, int widthMultiplier, int heightMultiplier) {
+      this.bold = bold;
+      this.underline = underline;
+      this.align = align;
+      this.widthMultiplier = widthMultiplier;
+      this.heightMultiplier = heightMultiplier;
+    }
+
+    TextStyle withBold(boolean value) {
+      return new TextStyle(value, underline, align, widthMultiplier, heightMultiplier);
+    }
+
+    TextStyle withUnderline(boolean value) {
+      return new TextStyle(bold, value, align, widthMultiplier, heightMultiplier);
+    }
+
+    TextStyle withAlign(int value) {
+      return new TextStyle(bold, underline, value, widthMultiplier, heightMultiplier);
+    }
+
+    TextStyle withSize(int width, int height) {
+      return new TextStyle(bold, underline, align, width, height);
+    }
+  }
+
+  private enum State {
+    TEXT,
+    ESC,
+    GS,
+    FS,
+    DLE,
+    PARAMS,
+    SKIP,
+    RASTER,
+    BIT_IMAGE,
+    BARCODE_NUL,
+    BARCODE_LENGTH,
+    BARCODE_DATA,
+    GS_PAREN_DATA
+  }
+
+  private final Sink sink;
+  private final Charset charset;
+
+  private State state = State.TEXT;
+  private TextStyle style = TextStyle.DEFAULT;
+  private TextStyle lineStyle;
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+
+  // Command being assembled
+  private byte prefix;
+  private byte command;
+  private final byte[] params = new byte[8];
+  private int paramCount;
+  private int paramIndex;
+  private int skipRemaining;
+
+  // Raster image (GS v 0)
+  private byte[] rasterRow;
+  private int rasterRowIndex;
+  private int rasterY;
+  private int rasterHeight;
+
+  // Bit image band (ESC *), stored column by column, 1 or 3 bytes per column
+  private final byte[] bitImage = new byte[MAX_BIT_IMAGE_COLUMNS * 3];
+  private int bitImageMode;
+  private int bitImageLength;
+  private int bitImageKept;
+  private int bitImageIndex;
+  // A band was printed since the last line feed, which only moves past it
+  private boolean bitImageLine;
+
+  // Barcode (GS k) and 2D symbol (GS ( k) payloads
+  private final ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+  private BarcodeSymbology barcodeSymbology;
+  private int payloadRemaining;
+  private int barcodeHeight = 162;
+  private int barcodeModuleWidth = 3;
+  private int qrModuleSize = 3;
+  private char qrEcLevel = 'M';
+  private byte[] qrData;
+
+  // Statistics
+  private int commands;
+  private int unsupported;
+
+  EscPosInterpreter(Sink sink, Charset charset) {
+    this.sink = sink;
+    this.charset = charset;
+  }
+
+  int getCommandCount() {
+    return commands;
+  }
+
+  int getUnsupportedCount() {
+    return unsupported;
+  }
+
+  void feed(byte[] data) throws Exception {
+    feed(data, 0, data.length);
+  }
+
+  void feed(byte[] data, int offset, int length) throws Exception {
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      byte b = data[i];
+      switch (state) {
+        case TEXT:
+          onTextByte(b);
+          break;
+        case ESC:
+          onEscCommand(b);
+          break;
+        case GS:
+          onGsCommand(b);
+          break;
+        case FS:
+          onFsCommand(b);
+          break;
+        case DLE:
+          onDleCommand(b);
+          break;
+        case PARAMS:
+          params[paramIndex++] = b;
+          if (paramIndex == paramCount) {
+            state = State.TEXT;
+            execute();
+          }
+          break;
+        case SKIP:
+          if (--skipRemaining <= 0) {
+            state = State.TEXT;
+          }
+          break;
+        case RASTER:
+          onRasterByte(b);
+          break;
+        case BIT_IMAGE:
+          if (bitImageIndex < bitImageKept) {
+            bitImage[bitImageIndex] = b;
+          }
+          if (++bitImageIndex == bitImageLength) {
+            state = State.TEXT;
+            printBitImage();
+          }
+          break;
+        case BARCODE_NUL:
+          if (b == 0) {
+            finishBarcode();
+          } else if (payload.size() < 255) {
+            payload.write(b);
+          }
+          break;
+        case BARCODE_LENGTH:
+          payloadRemaining = b & 0xff;
+          state = payloadRemaining > 0 ? State.BARCODE_DATA : State.TEXT;
+          break;
+        case BARCODE_DATA:
+          payload.write(b);
+          if (--payloadRemaining == 0) {
+            finishBarcode();
+          }
+          break;
+        case GS_PAREN_DATA:
+          if (payload.size() < MAX_SYMBOL_BYTES + 3) {
+            payload.write(b);
+          }
+          if (--payloadRemaining == 0) {
+            state = State.TEXT;
+            executeSymbolFunction();
+          }
+          break;
+      }
+    }
+  }
+
+  /**
+   * Print whatever text is still buffered at the end of the stream
+   */
+  void finish() throws Exception {
+    if (state == State.RASTER) {
+      // Truncated image: print the rows received so far
+      state = State.TEXT;
+      sink.endRaster();
+    }
+    if (state == State.BIT_IMAGE) {
+      // A truncated bit image band is dropped
+      state = State.TEXT;
+    }
+    flushLine();
+  }
+
+  private void onTextByte(byte b) throws Exception {
+    switch (b) {
+      case LF:
+        if (line.size() == 0 && lineStyle == null) {
+          // Generators end each row of bit image bands with LF at a line spacing of one band
+          if (bitImageLine) {
+            bitImageLine = false;
+          } else {
+            sink.feed(1);
+          }
+        } else {
+          flushLine();
+        }
+        return;
+      case CR:
+        return;
+      case HT:
+        appendText((byte) ' ');
+        appendText((byte) ' ');
+        appendText((byte) ' ');
+        appendText((byte) ' ');
+        return;
+      case ESC:
+        state = State.ESC;
+        return;
+      case GS:
+        state = State.GS;
+        return;
+      case FS:
+        state = State.FS;
+        return;
+      case DLE:
+        state = State.DLE;
+        return;
+      default:
+        if ((b & 0xff) < 0x20) {
+          // Other control characters carry nothing printable
+          return;
+        }
+        appendText(b);
+    }
+  }
+
+  private void appendText(byte b) throws Exception {
+    bitImageLine = false;
+    if (line.size() == 0) {
+      lineStyle = style;
+    }
+    line.write(b);
+    if (line.size() >= MAX_LINE_CHARS) {
+      flushLine();
+    }
+  }
+
+  private void flushLine() throws Exception {
+    if (line.size() == 0 && lineStyle == null) {
+      return;
+    }
+    String text = new String(line.toByteArray(), charset);
+    TextStyle printed = lineStyle != null ? lineStyle : style;
+    line.reset();
+    lineStyle = null;
+    sink.text(text, printed);
+  }
+
+  private void expectParams(byte prefix, byte command, int count) throws Exception {
+    this.prefix = prefix;
+    this.command = command;
+    if (count == 0) {
+      state = State.TEXT;
+      execute();
+      return;
+    }
+    paramCount = count;
+    paramIndex = 0;
+    state = State.PARAMS;
+  }
+
+  private void skip(int count) {
+    unsupported++;
+    if (count <= 0) {
+      state = State.TEXT;
+      return;
+    }
+    skipRemaining = count;
+    state = State.SKIP;
+  }
+
+  private void onEscCommand(byte b) throws Exception {
+    switch (b) {
+      case '@':
+      case '!':
+      case 'E':
+      case 'G':
+      case '-':
+      case 'a':
+      case 'd':
+      case 'J':
+        expectParams(ESC, b, b == '@' ? 0 : 1);
+        return;
+      case '*':
+        // ESC * m nL nH d1...dk
+        expectParams(ESC, b, 3);
+        return;
+      case '2':
+        skip(0);
+        return;
+      case '3':
+      case 't':
+      case 'M':
+      case ' ':
+      case '{':
+      case 'V':
+      case 'R':
+      case '%':
+      case 'r':
+        skip(1);
+        return;
+      case '$':
+      case '\\':
+      case 'c':
+        skip(2);
+        return;
+      case 'p':
+        skip(3);
+        return;
+      default:
+        skip(0);
+    }
+  }
+
+  private void onGsCommand(byte b) throws Exception {
+    switch (b) {
+      case '!':
+      case 'h':
+      case 'w':
+        expectParams(GS, b, 1);
+        return;
+      case 'v':
+        // GS v 0 m xL xH yL yH
+        expectParams(GS, b, 6);
+        return;
+      case 'k':
+        expectParams(GS, b, 1);
+        return;
+      case '(':
+        // GS ( fn pL pH ...; only GS ( k is understood, others are skipped after reading their length
+        expectParams(GS, b, 3);
+        return;
+      case 'V':
+        expectParams(GS, b, 1);
+        return;
+      case 'B':
+      case 'H':
+      case 'f':
+      case 'a':
+      case 'r':
+      case 'I':
+        skip(1);
+        return;
+      case 'L':
+      case 'W':
+        skip(2);
+        return;
+      default:
+        skip(0);
+    }
+  }
+
+  private void onFsCommand(byte b) {
+    switch (b) {
+      case '!':
+        skip(1);
+        return;
+      case 'p':
+        skip(2);
+        return;
+      default:
+        skip(0);
+    }
+  }
+
+  private void onDleCommand(byte b) {
+    // Real-time status requests (DLE EOT n, DLE ENQ n) have no meaning here
+    if (b == 0x04 || b == 0x05) {
+      skip(1);
+    } else {
+      skip(0);
+    }
+  }
+
+  private void execute() throws Exception {
+    commands++;
+    int n = params[0] & 0xff;
+
+    if (prefix == ESC) {
+      switch (command) {
+        case '@':
+          flushLine();
+          style = TextStyle.DEFAULT;
+          barcodeHeight = 162;
+          barcodeModuleWidth = 3;
+          return;
+        case '!':
+          style = style.withBold((n & 0x08) != 0)
+              .withUnderline((n & 0x80) != 0)
+              .withSize((n & 0x20) != 0 ? 2 : 1, (n & 0x10) != 0 ? 2 : 1);
+          return;
+        case 'E':
+        case 'G':
+          style = style.withBold((n & 0x01) != 0);
+          return;
+        case '-':
+          style = style.withUnderline(n == 1 || n == 2 || n == '1' || n == '2');
+          return;
+        case 'a':
+          style = style.withAlign(n >= '0' ? n - '0' : Math.min(n, ALIGN_RIGHT));
+          return;
+        case 'd':
+          flushLine();
+          sink.feed(n);
+          return;
+        case 'J':
+          // Feed n dots; the SDK only feeds whole lines, roughly 24 dots each
+          flushLine();
+          if (n >= 12) {
+            sink.feed(Math.max(1, (n + 12) / 24));
+          }
+          return;
+        case '*':
+          beginBitImage(n, (params[1] & 0xff) | ((params[2] & 0xff) << 8));
+          return;
+        default:
+          return;
+      }
+    }
+
+    switch (command) {
+      case '!':
+        style = style.withSize(((n >> 4) & 0x07) + 1, (n & 0x07) + 1);
+        return;
+      case 'h':
+        barcodeHeight = Math.max(1, n);
+        return;
+      case 'w':
+        barcodeModuleWidth = Math.max(1, n);
+        return;
+      case 'V':
+        // Paper cut: no cutter on the S600; function B variants carry one more byte
+        flushLine();
+        if (n == 65 || n == 66) {
+          state = State.SKIP;
+          skipRemaining = 1;
+        }
+        return;
+      case 'v':
+        beginRaster();
+        return;
+      case 'k':
+        beginBarcode(n);
+        return;
+      case '(':
+        beginParenFunction();
+        return;
+      default:
+        return;
+    }
+  }
+
+  private void beginRaster() throws Exception {
+    flushLine();
+    int widthBytes = (params[2] & 0xff) | ((params[3] & 0xff) << 8);
+    rasterHeight = (params[4] & 0xff) | ((params[5] & 0xff) << 8);
+    if (widthBytes == 0 || rasterHeight == 0) {
+      return;
+    }
+
+    if (rasterRow == null || rasterRow.length != widthBytes) {
+      rasterRow = new byte[widthBytes];
+    }
+    rasterRowIndex = 0;
+    rasterY = 0;
+    state = State.RASTER;
+    sink.beginRaster(widthBytes * 8, rasterHeight);
+  }
+
+  private void onRasterByte(byte b) throws Exception {
+    rasterRow[rasterRowIndex++] = b;
+    if (rasterRowIndex < rasterRow.length) {
+      return;
+    }
+
+    sink.rasterRow(rasterRow, rasterY++);
+    rasterRowIndex = 0;
+    if (rasterY == rasterHeight) {
+      state = State.TEXT;
+      sink.endRaster();
+    }
+  }
+
+  /**
+   * ESC * m: 8-dot bands for m = 0 and 1, 24-dot bands for 32 and 33. The data is read in
+   * full whatever m says, so none of it can end up printed as text.
+   */
+  private void beginBitImage(int m, int columns) throws Exception {
+    flushLine();
+    int bytesPerColumn = m >= 32 ? 3 : 1;
+    bitImageMode = m;
+    bitImageLength = columns * bytesPerColumn;
+    bitImageKept = Math.min(columns, MAX_BIT_IMAGE_COLUMNS) * bytesPerColumn;
+    bitImageIndex = 0;
+    if (bitImageLength > 0) {
+      state = State.BIT_IMAGE;
+    }
+  }
+
+  /**
+   * Turn the finished band into raster rows. Single density (m = 0, 32) doubles each dot
+   * across, and 8-dot bands are three times as tall, as on a 180 dpi head.
+   */
+  private void printBitImage() throws Exception {
+    int bytesPerColumn = bitImageMode >= 32 ? 3 : 1;
+    int scaleX = bitImageMode == 0 || bitImageMode == 32 ? 2 : 1;
+    int scaleY = bitImageMode >= 32 ? 1 : 3;
+    int columns = bitImageKept / bytesPerColumn;
+    int widthDots = columns * scaleX;
+    int rows = bytesPerColumn * 8 * scaleY;
+
+    int widthBytes = (widthDots + 7) / 8;
+    if (rasterRow == null || rasterRow.length != widthBytes) {
+      rasterRow = new byte[widthBytes];
+    }
+    sink.beginRaster(widthDots, rows);
+    for (int y = 0; y < rows; y++) {
+      int dot = y / scaleY;
+      Arrays.fill(rasterRow, (byte) 0);
+      for (int column = 0; column < columns; column++) {
+        if ((bitImage[column * bytesPerColumn + (dot >> 3)] & (0x80 >> (dot & 7))) == 0) {
+          continue;
+        }
+        for (int x = column * scaleX; x < (column + 1) * scaleX; x++) {
+          rasterRow[x >> 3] |= (byte) (0x80 >> (x & 7));
+        }
+      }
+      sink.rasterRow(rasterRow, y);
+    }
+    sink.endRaster();
+    bitImageLine = true;
+  }
+
+  private void beginBarcode(int m) throws Exception {
+    flushLine();
+    payload.reset();
+    barcodeSymbology = barcodeSymbology(m);
+    // Function A (m = 0..6) is NUL terminated, function B (m = 65..73) length prefixed
+    state = m <= 6 ? State.BARCODE_NUL : State.BARCODE_LENGTH;
+  }
+
+  private void finishBarcode() throws Exception {
+    state = State.TEXT;
+    String data = new String(payload.toByteArray(), charset);
+    payload.reset();
+    if (barcodeSymbology == null) {
+      unsupported++;
+      return;
+    }
+
+    // CODE128 payloads start with a code set selector ({A, {B, {C) the encoder picks itself
+    if (barcodeSymbology == BarcodeSymbology.CODE_128 && data.length() >= 2 && data.charAt(0) == '{') {
+      data = data.substring(2);
+    }
+    sink.barcode(barcodeSymbology, data, barcodeHeight, barcodeModuleWidth);
+  }
+
+  static BarcodeSymbology barcodeSymbology(int m) {
+    switch (m) {
+      case 0:
+      case 65:
+        return BarcodeSymbology.UPC_A;
+      case 1:
+      case 66:
+        return BarcodeSymbology.UPC_E;
+      case 2:
+      case 67:
+        return BarcodeSymbology.EAN_13;
+      case 3:
+      case 68:
+        return BarcodeSymbology.EAN_8;
+      case 4:
+      case 69:
+        return BarcodeSymbology.CODE_39;
+      case 5:
+      case 70:
+        return BarcodeSymbology.ITF;
+      case 6:
+      case 71:
+        return BarcodeSymbology.CODABAR;
+      case 72:
+        return BarcodeSymbology.CODE_93;
+      case 73:
+        return BarcodeSymbology.CODE_128;
+      default:
+        return null;
+    }
+  }
+
+  private void beginParenFunction() {
+    int length = (params[1] & 0xff) | ((params[2] & 0xff) << 8);
+    payload.reset();
+    if (length == 0) {
+      return;
+    }
+
+    payloadRemaining = length;
+    state = State.GS_PAREN_DATA;
+  }
+
+  /**
+   * GS ( k: cn fn [parameters]; only the QR code functions (cn = 49) are supported
+   */
+  private void executeSymbolFunction() throws Exception {
+    byte[] data = payload.toByteArray();
+    payload.reset();
+    if (params[0] != 'k' || data.length < 2 || data[0] != 49) {
+      unsupported++;
+      return;
+    }
+
+    switch (data[1]) {
+      case 67:
+        // Module size
+        if (data.length > 2) {
+          qrModuleSize = Math.max(1, data[2] & 0xff);
+        }
+        return;
+      case 69:
+        // Error correction level 48..51 = L, M, Q, H
+        if (data.length > 2) {
+          qrEcLevel = "LMQH".charAt(Math.max(0, Math.min(3, (data[2] & 0xff) - 48)));
+        }
+        return;
+      case 80:
+        // Store data; the third byte is m = 48
+        qrData = new byte[Math.max(0, data.length - 3)];
+        System.arraycopy(data, 3, qrData, 0, qrData.length);
+        return;
+      case 81:
+        // Print stored data
+        if (qrData != null && qrData.length > 0) {
+          flushLine();
+          sink.qrCode(new String(qrData, charset), qrModuleSize, qrEcLevel);
+        }
+        return;
+      default:
+        // Model selection and size queries need no action
+        return;
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.os.RemoteException;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.printer.PrintItemObj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * EscPosPrinterSink - executes interpreted ESC/POS operations through the KTP SDK
+ * Consecutive text lines and feeds are batched into one printText call; images go
+ * to printBmp in strips, barcodes to printBarCode (rendered with ZXing when the firmware
+ * cannot draw the symbology) and QR codes to printBmp from the SymbolCache. Every
+ * call is awaited before the next so the worker never outruns the service. Acknowledged
+ * calls are counted, so a stream that was cut off can be interpreted again from the
+ * start while skipping the calls that already printed
+ */
+class EscPosPrinterSink implements EscPosInterpreter.Sink {
+  private static final String TAG = "EscPosPrinterSink";
+
+  // Lines per printText call; keeps the pending batch bounded on long documents
+  static final int MAX_BATCH_LINES = 32;
+
+  private static final int BASE_FONT_SIZE = 24;
+  private static final int BLACK = 0xff000000;
+  private static final int WHITE = 0xffffffff;
+
+  static final class OperationFailedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final int errorCode;
+
+    OperationFailedException(String message, int errorCode) {
+      super(message);
+      this.errorCode = errorCode;
+    }
+  }
+
+  /**
+   * Notified on the worker thread each time the printer acknowledges a call
+   */
+  interface ProgressListener {
+    void onOperationsDone(int operations);
+  }
+
+  private final AidlPrinter printer;
+  private final PrinterCapabilities capabilities;
+  private final SymbolCache symbolCache;
+  private final int paperWidth;
+  private final long ackTimeoutMs;
+
+  private final ArrayList<PrintItemObj> batch = new ArrayList<>();
+
+  // Raster image (GS v 0), sent to printBmp a strip of RasterReceiptRenderer.BAND_HEIGHT rows at a time
+  private Bitmap rasterStrip;
+  private int[] rasterPixels;
+  private int rasterWidth;
+  private int stripRows;
+
+  private int textLines;
+  private int images;
+  private int barcodes;
+  private int calls;
+
+  // Acknowledged printer calls, counting those skipped on resume
+  private int operations;
+  private int skipOperations;
+  private ProgressListener progressListener;
+
+  EscPosPrinterSink(AidlPrinter printer, PrinterCapabilities capabilities, SymbolCache symbolCache,
+      int paperWidth, long ackTimeoutMs) {
+    this.printer = printer;
+    this.capabilities = capabilities;
+    this.symbolCache = symbolCache;
+    this.paperWidth = paperWidth;
+    this.ackTimeoutMs = ackTimeoutMs;
+  }
+
+  /**
+   * The first count calls printed before the stream was cut off; interpret them as usual
+   * but do not send them again
+   */
+  void resumeAfter(int count) {
+    skipOperations = count;
+  }
+
+  void setProgressListener(ProgressListener listener) {
+    progressListener = listener;
+  }
+
+  /**
+   * Printer calls acknowledged so far, including those skipped on resume
+   */
+  int getOperations() {
+    return operations;
+  }
+
+  @Override
+  public void text(String line, EscPosInterpreter.TextStyle style) throws Exception {
+    int fontSize = BASE_FONT_SIZE * Math.max(style.widthMultiplier, style.heightMultiplier);
+    PrintItemObj item = new PrintItemObj(line, fontSize, style.bold, align(style.align));
+    item.setUnderline(style.underline);
+    add(item);
+    textLines++;
+  }
+
+  @Override
+  public void feed(int lines) throws Exception {
+    for (int i = 0; i < lines; i++) {
+      add(new PrintItemObj("\n"));
+    }
+  }
+
+  @Override
+  public void beginRaster(int widthDots, int height) throws Exception {
+    flush();
+    // Dots past the head would be cropped by the firmware anyway, so they are never stored
+    rasterWidth = Math.min(widthDots, paperWidth);
+    rasterStrip = Bitmap.createBitmap(rasterWidth, Math.min(height, RasterReceiptRenderer.BAND_HEIGHT),
+        Bitmap.Config.RGB_565);
+    rasterPixels = new int[rasterWidth];
+    stripRows = 0;
+  }
+
+  @Override
+  public void rasterRow(byte[] row, int y) throws Exception {
+    for (int x = 0; x < rasterWidth; x++) {
+      boolean black = (row[x >> 3] & (0x80 >> (x & 7))) != 0;
+      rasterPixels[x] = black ? BLACK : WHITE;
+    }
+    rasterStrip.setPixels(rasterPixels, 0, rasterWidth, 0, stripRows, rasterWidth, 1);
+    if (++stripRows == rasterStrip.getHeight()) {
+      printStrip();
+    }
+  }
+
+  @Override
+  public void endRaster() throws Exception {
+    try {
+      if (stripRows > 0) {
+        printStrip();
+      }
+    } finally {
+      rasterStrip = null;
+      rasterPixels = null;
+    }
+    images++;
+  }
+
+  /**
+   * Send the rows collected so far; every row is overwritten before the strip is reused
+   */
+  private void printStrip() throws RemoteException, InterruptedException, OperationFailedException {
+    int rows = stripRows;
+    stripRows = 0;
+    if (alreadyPrinted()) {
+      return;
+    }
+    Bitmap out = rows == rasterStrip.getHeight() ? rasterStrip
+        : Bitmap.createBitmap(rasterStrip, 0, 0, rasterWidth, rows);
+    PrintCompletion completion = new PrintCompletion();
+    printer.printBmp(0, rasterWidth, rows, out, completion);
+    await(completion, "Image");
+  }
+
+  @Override
+  public void barcode(BarcodeSymbology symbology, String data, int height, int moduleWidth) throws Exception {
+    flush();
+    barcodes++;
+    int width = paperWidth;
+    boolean rejected = false;
+
+    if (capabilities.supportsNativeBarcode(symbology)) {
+      if (alreadyPrinted()) {
+        return;
+      }
+      PrintCompletion completion = new PrintCompletion();
+      try {
+        printer.printBarCode(symbology.nativeType, width, height, data, completion);
+        calls++;
+        if (!completion.await(ackTimeoutMs)) {
+          throw new OperationFailedException("Barcode was not acknowledged within " + ackTimeoutMs + "ms", -1);
+        }
+        if (completion.isSuccess()) {
+          acknowledged();
+          return;
+        }
+        // A rejected symbology leaves the printer ready; anything else is a real failure
+        if (!"ready".equals(S600Plugin.statusName(printer.getPrinterState()))) {
+          throw new OperationFailedException("Barcode failed", completion.getErrorCode());
+        }
+      } catch (RuntimeException e) {
+        PrinterLog.d(TAG, "printBarCode unavailable for %s: %s", symbology, e.getMessage());
+      }
+      rejected = true;
+    }
+
+    Bitmap bitmap = symbology.zxingFormat != null
+        ? symbolCache.barcode(data, symbology.zxingFormat, width, height)
+        : null;
+    // Only data ZXing can draw shows that the firmware cannot do the symbology
+    if (rejected && bitmap != null) {
+      capabilities.rememberNativeBarcodeUnsupported(symbology);
+    }
+    if (bitmap == null) {
+      add(new PrintItemObj(data, BASE_FONT_SIZE, false, PrintItemObj.ALIGN.CENTER));
+      return;
+    }
+    printBitmap(bitmap, "Barcode");
+  }
+
+  @Override
+  public void qrCode(String data, int moduleSize, char ecLevel) throws Exception {
+    flush();
+    // The renderer picks the largest whole module that fits; bound it by the requested module size
+    int size = Math.min(paperWidth, Math.max(64, moduleSize * 45));
+    Bitmap bitmap = symbolCache.qrCode(data, size, S600Plugin.errorCorrectionLevel(String.valueOf(ecLevel)));
+    if (bitmap == null) {
+      throw new OperationFailedException("QR code could not be encoded", -1);
+    }
+    printBitmap(bitmap, "QR code");
+    barcodes++;
+  }
+
+  /**
+   * Send any batched text. Call once after the interpreter finishes.
+   */
+  void flush() throws RemoteException, InterruptedException, OperationFailedException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (alreadyPrinted()) {
+      batch.clear();
+      return;
+    }
+
+    PrintCompletion completion = new PrintCompletion();
+    printer.printText(new ArrayList<>(batch), completion);
+    batch.clear();
+    await(completion, "Text");
+  }
+
+  int getPrinterCalls() {
+    return calls;
+  }
+
+  Map<String, Object> report() {
+    Map<String, Object> report = new HashMap<>();
+    report.put("textLines", textLines);
+    report.put("images", images);
+    report.put("barcodes", barcodes);
+    report.put("printerCalls", calls);
+    return report;
+  }
+
+  private void add(PrintItemObj item) throws RemoteException, InterruptedException, OperationFailedException {
+    batch.add(item);
+    if (batch.size() >= MAX_BATCH_LINES) {
+      flush();
+    }
+  }
+
+  private void printBitmap(Bitmap bitmap, String what)
+      throws RemoteException, InterruptedException, OperationFailedException {
+    if (alreadyPrinted()) {
+      return;
+    }
+    PrintCompletion completion = new PrintCompletion();
+    printer.printBmp(0, bitmap.getWidth(), bitmap.getHeight(), bitmap, completion);
+    await(completion, what);
+  }
+
+  private void await(PrintCompletion completion, String what) throws InterruptedException, OperationFailedException {
+    calls++;
+    if (!completion.await(ackTimeoutMs)) {
+      throw new OperationFailedException(what + " was not acknowledged within " + ackTimeoutMs + "ms", -1);
+    }
+    if (!completion.isSuccess()) {
+      throw new OperationFailedException(what + " failed", completion.getErrorCode());
+    }
+    acknowledged();
+  }
+
+  /**
+   * True while resuming, for a call that printed before the stream was cut off; it counts as done
+   */
+  private boolean alreadyPrinted() {
+    if (operations >= skipOperations) {
+      return false;
+    }
+    operations++;
+    return true;
+  }
+
+  private void acknowledged() {
+    operations++;
+    ProgressListener listener = progressListener;
+    if (listener != null) {
+      listener.onOperationsDone(operations);
+    }
+  }
+
+  private static PrintItemObj.ALIGN align(int align) {
+    switch (align) {
+      case EscPosInterpreter.ALIGN_CENTER:
+        return PrintItemObj.ALIGN.CENTER;
+      case EscPosInterpreter.ALIGN_RIGHT:
+        return PrintItemObj.ALIGN.RIGHT;
+      default:
+        return PrintItemObj.ALIGN.LEFT;
+    }
+  }
+}
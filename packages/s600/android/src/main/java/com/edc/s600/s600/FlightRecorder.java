@@ -0,0 +1,71 @@
+package com.edc.s600.s600;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FlightRecorder - fixed-size ring buffer of recent printer events
+ * Records method calls, job outcomes, AIDL calls and connection changes without
+ * receipt contents, so the last few hundred events can be dumped over the channel
+ * when a merchant reports a stuck printer. Recording never allocates beyond the
+ * event strings themselves; the oldest event is overwritten when full
+ */
+class FlightRecorder {
+  static final int DEFAULT_CAPACITY = 256;
+
+  private final long[] times;
+  private final String[] events;
+  private final String[] details;
+  private long recorded = 0;
+
+  FlightRecorder() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  FlightRecorder(int capacity) {
+    times = new long[capacity];
+    events = new String[capacity];
+    details = new String[capacity];
+  }
+
+  synchronized void record(String event, String detail) {
+    int slot = (int) (recorded % times.length);
+    times[slot] = System.currentTimeMillis();
+    events[slot] = event;
+    details[slot] = detail;
+    recorded++;
+  }
+
+  /**
+   * The most recent events, oldest first; limit <= 0 returns everything held
+   */
+  synchronized List<Map<String, Object>> dump(int limit) {
+    int held = (int) Math.min(recorded, times.length);
+    int count = limit > 0 ? Math.min(limit, held) : held;
+    List<Map<String, Object>> dump = new ArrayList<>(count);
+    for (long i = recorded - count; i < recorded; i++) {
+      int slot = (int) (i % times.length);
+      Map<String, Object> entry = new HashMap<>();
+      entry.put("seq", i);
+      entry.put("time", times[slot]);
+      entry.put("event", events[slot]);
+      entry.put("detail", details[slot]);
+      dump.add(entry);
+    }
+    return dump;
+  }
+
+  synchronized long getRecordedCount() {
+    return recorded;
+  }
+
+  synchronized void clear() {
+    for (int i = 0; i < times.length; i++) {
+      events[i] = null;
+      details[i] = null;
+    }
+    recorded = 0;
+  }
+}
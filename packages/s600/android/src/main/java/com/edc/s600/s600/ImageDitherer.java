@@ -0,0 +1,119 @@
+package com.edc.s600.s600;
+
+import java.util.Arrays;
+
+/**
+ * ImageDitherer - turns rows of ARGB pixels into black and white for the thermal head
+ * Rows are fed top to bottom in strips of any height. Floyd-Steinberg keeps the error it
+ * pushes into the next row between calls, so strips join without a seam; ordered
+ * dithering uses an 8x8 Bayer matrix. Transparent pixels count as paper.
+ */
+class ImageDitherer {
+  static final int BLACK = 0xFF000000;
+  static final int WHITE = 0xFFFFFFFF;
+
+  enum Mode {
+    FLOYD_STEINBERG,
+    ORDERED,
+    THRESHOLD;
+
+    static Mode from(String value) {
+      if (value == null) {
+        return FLOYD_STEINBERG;
+      }
+
+      switch (value) {
+        case "ordered":
+          return ORDERED;
+        case "threshold":
+          return THRESHOLD;
+        default:
+          return FLOYD_STEINBERG;
+      }
+    }
+  }
+
+  private static final int[] BAYER_8X8 = {
+      0, 32, 8, 40, 2, 34, 10, 42,
+      48, 16, 56, 24, 50, 18, 58, 26,
+      12, 44, 4, 36, 14, 46, 6, 38,
+      60, 28, 52, 20, 62, 30, 54, 22,
+      3, 35, 11, 43, 1, 33, 9, 41,
+      51, 19, 59, 27, 49, 17, 57, 25,
+      15, 47, 7, 39, 13, 45, 5, 37,
+      63, 31, 55, 23, 61, 29, 53, 21,
+  };
+
+  private final Mode mode;
+  private final int width;
+  private int row = 0;
+
+  // Floyd-Steinberg error for this row and the next, in sixteenths, with a guard column each side
+  private int[] errors;
+  private int[] nextErrors;
+
+  ImageDitherer(Mode mode, int width) {
+    this.mode = mode;
+    this.width = width;
+    if (mode == Mode.FLOYD_STEINBERG) {
+      errors = new int[width + 2];
+      nextErrors = new int[width + 2];
+    }
+  }
+
+  /**
+   * Dither the next rows of the image in place: pixels holds rows x width ARGB values,
+   * which become BLACK or WHITE
+   */
+  void dither(int[] pixels, int rows) {
+    for (int y = 0; y < rows; y++, row++) {
+      int offset = y * width;
+      switch (mode) {
+        case FLOYD_STEINBERG:
+          diffuseRow(pixels, offset);
+          break;
+        case ORDERED:
+          for (int x = 0; x < width; x++) {
+            int threshold = BAYER_8X8[(row & 7) * 8 + (x & 7)] * 4 + 2;
+            pixels[offset + x] = luminance(pixels[offset + x]) < threshold ? BLACK : WHITE;
+          }
+          break;
+        default:
+          for (int x = 0; x < width; x++) {
+            pixels[offset + x] = luminance(pixels[offset + x]) < 128 ? BLACK : WHITE;
+          }
+          break;
+      }
+    }
+  }
+
+  private void diffuseRow(int[] pixels, int offset) {
+    int[] current = errors;
+    int[] next = nextErrors;
+    for (int x = 0; x < width; x++) {
+      int value = luminance(pixels[offset + x]) + current[x + 1] / 16;
+      int out = value < 128 ? 0 : 255;
+      int error = value - out;
+      pixels[offset + x] = out == 0 ? BLACK : WHITE;
+
+      current[x + 2] += error * 7;
+      next[x] += error * 3;
+      next[x + 1] += error * 5;
+      next[x + 2] += error;
+    }
+
+    // The next row's error becomes current; the old buffer is cleared for the row after
+    Arrays.fill(current, 0);
+    errors = next;
+    nextErrors = current;
+  }
+
+  /**
+   * Perceived brightness 0-255, with the pixel laid over white paper
+   */
+  static int luminance(int argb) {
+    int alpha = argb >>> 24;
+    int gray = (((argb >> 16) & 0xFF) * 77 + ((argb >> 8) & 0xFF) * 150 + (argb & 0xFF) * 29) >> 8;
+    return (gray * alpha + 255 * (255 - alpha)) / 255;
+  }
+}
@@ -0,0 +1,198 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ImagePrinter - prints encoded PNG/JPEG images through printBmp in strips
+ * The image is decoded one strip at a time with BitmapRegionDecoder, subsampled while
+ * decoding to no more than twice the target width, scaled to it and dithered to black and
+ * white. As with raster receipts, a strip is prepared in one of two paper-wide buffers
+ * while the previous one prints, so memory stays at two strips however tall the image.
+ * Used from the print worker thread only
+ */
+class ImagePrinter {
+  private static final String TAG = "ImagePrinter";
+
+  static final int STRIP_HEIGHT = RasterReceiptRenderer.BAND_HEIGHT;
+
+  private final int paperWidth;
+
+  ImagePrinter(int paperWidth) {
+    this.paperWidth = paperWidth;
+  }
+
+  /**
+   * Where the source rows of each strip come from
+   */
+  private interface StripDecoder {
+    /**
+     * The source rows, subsampled; the caller recycles the bitmap
+     */
+    Bitmap decode(Rect source, BitmapFactory.Options options);
+
+    void recycle();
+  }
+
+  /**
+   * Decode, dither and send every strip, waiting for each acknowledgement before its buffer
+   * is reused. width is the printed width in dots, or 0 to fit the paper without scaling up.
+   * The caller finishes the job with prnStart/printClose and checks stop, which is honoured
+   * between strips. Returns strip statistics.
+   */
+  Map<String, Object> print(AidlPrinter printer, byte[] bytes, int width, Paint.Align align,
+      ImageDitherer.Mode mode, long ackTimeoutMs, PrintJobScheduler.StopSignal stop)
+      throws RemoteException, InterruptedException, RasterReceiptRenderer.BandPrintException {
+    long start = SystemClock.elapsedRealtime();
+    BitmapFactory.Options bounds = new BitmapFactory.Options();
+    bounds.inJustDecodeBounds = true;
+    BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bounds);
+    int sourceWidth = bounds.outWidth;
+    int sourceHeight = bounds.outHeight;
+    if (sourceWidth <= 0 || sourceHeight <= 0) {
+      throw new IllegalArgumentException("Image could not be decoded");
+    }
+
+    int outWidth = Math.min(width > 0 ? width : sourceWidth, paperWidth);
+    int outHeight = (int) Math.max(1, (long) sourceHeight * outWidth / sourceWidth);
+    int left = align == Paint.Align.CENTER ? (paperWidth - outWidth) / 2
+        : align == Paint.Align.RIGHT ? paperWidth - outWidth : 0;
+
+    // Decoding at a power-of-two fraction of the size costs a fraction of the memory and time
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inSampleSize = 1;
+    while (sourceWidth / (options.inSampleSize * 2) >= outWidth) {
+      options.inSampleSize *= 2;
+    }
+    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+    StripDecoder decoder = stripDecoder(bytes, options);
+    ImageDitherer ditherer = new ImageDitherer(mode, outWidth);
+    int[] pixels = new int[outWidth * STRIP_HEIGHT];
+    Bitmap[] buffers = new Bitmap[2];
+    PrintCompletion pending = null;
+    long decodeMs = 0;
+    int strips = 0;
+
+    try {
+      for (int top = 0; top < outHeight && !stop.isStopRequested(); top += STRIP_HEIGHT) {
+        long decodeStart = SystemClock.elapsedRealtime();
+        int rows = Math.min(STRIP_HEIGHT, outHeight - top);
+        int slot = strips % 2;
+        Bitmap out;
+        PrinterTrace.begin("S600 image strip");
+        try {
+          // Source rows this strip covers, rounded outwards
+          int sourceTop = (int) ((long) top * sourceHeight / outHeight);
+          int sourceBottom = (int) Math.min(sourceHeight,
+              ((long) (top + rows) * sourceHeight + outHeight - 1) / outHeight);
+          Bitmap region = decoder.decode(new Rect(0, sourceTop, sourceWidth, Math.max(sourceBottom, sourceTop + 1)),
+              options);
+          if (region == null) {
+            throw new IllegalArgumentException("Image could not be decoded");
+          }
+          Bitmap scaled = Bitmap.createScaledBitmap(region, outWidth, rows, true);
+          scaled.getPixels(pixels, 0, outWidth, 0, 0, outWidth, rows);
+          if (scaled != region) {
+            scaled.recycle();
+          }
+          region.recycle();
+          ditherer.dither(pixels, rows);
+
+          if (buffers[slot] == null) {
+            buffers[slot] = Bitmap.createBitmap(paperWidth, STRIP_HEIGHT, Bitmap.Config.RGB_565);
+          }
+          Bitmap strip = buffers[slot];
+          strip.eraseColor(Color.WHITE);
+          strip.setPixels(pixels, 0, outWidth, left, 0, outWidth, rows);
+          out = rows == STRIP_HEIGHT ? strip : Bitmap.createBitmap(strip, 0, 0, paperWidth, rows);
+        } finally {
+          PrinterTrace.end();
+        }
+        decodeMs += SystemClock.elapsedRealtime() - decodeStart;
+
+        // This strip was prepared while the previous one printed; only now wait for that one
+        RasterReceiptRenderer.awaitBand(pending, strips - 1, ackTimeoutMs);
+        pending = new PrintCompletion();
+        printer.printBmp(0, paperWidth, rows, out, pending);
+        strips++;
+      }
+      RasterReceiptRenderer.awaitBand(pending, strips - 1, ackTimeoutMs);
+    } finally {
+      decoder.recycle();
+    }
+
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("strips", strips);
+    stats.put("widthDots", outWidth);
+    stats.put("heightDots", outHeight);
+    stats.put("sampleSize", options.inSampleSize);
+    stats.put("decodeMs", decodeMs);
+    stats.put("elapsedMs", SystemClock.elapsedRealtime() - start);
+    return stats;
+  }
+
+  /**
+   * Decodes only the rows asked for where the format allows it; otherwise the whole image,
+   * subsampled, once
+   */
+  // newInstance without isShareable only exists from API 31
+  @SuppressWarnings("deprecation")
+  private static StripDecoder stripDecoder(byte[] bytes, BitmapFactory.Options options) {
+    try {
+      BitmapRegionDecoder regions = BitmapRegionDecoder.newInstance(bytes, 0, bytes.length, false);
+      if (regions != null) {
+        return new StripDecoder() {
+          @Override
+          public Bitmap decode(Rect source, BitmapFactory.Options options) {
+            return regions.decodeRegion(source, options);
+          }
+
+          @Override
+          public void recycle() {
+            regions.recycle();
+          }
+        };
+      }
+    } catch (IOException e) {
+      PrinterLog.d(TAG, "No region decoder for image, decoding it whole: %s", e.getMessage());
+    }
+
+    Bitmap whole = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    return new StripDecoder() {
+      @Override
+      public Bitmap decode(Rect source, BitmapFactory.Options options) {
+        if (whole == null) {
+          return null;
+        }
+        int scale = options.inSampleSize;
+        int top = Math.min(source.top / scale, whole.getHeight() - 1);
+        int bottom = Math.min(Math.max(top + 1, source.bottom / scale), whole.getHeight());
+        if (top == 0 && bottom == whole.getHeight()) {
+          // createBitmap would hand back whole itself, which the caller recycles
+          return whole.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        return Bitmap.createBitmap(whole, 0, top, whole.getWidth(), bottom - top);
+      }
+
+      @Override
+      public void recycle() {
+        if (whole != null) {
+          whole.recycle();
+        }
+      }
+    };
+  }
+}
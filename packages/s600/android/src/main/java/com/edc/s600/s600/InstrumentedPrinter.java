@@ -0,0 +1,59 @@
+package com.edc.s600.s600;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * InstrumentedPrinter - dynamic proxy around the bound AidlPrinter
+ * Every AIDL call gets a trace section, a latency sample in PrinterMetrics and a
+ * FlightRecorder entry, without touching the call sites. Status polls are timed
+ * but kept out of the recorder so they cannot flush the events that matter
+ */
+final class InstrumentedPrinter implements InvocationHandler {
+  private static final String POLL_METHOD = "getPrinterState";
+
+  private final AidlPrinter printer;
+  private final PrinterMetrics metrics;
+  private final FlightRecorder recorder;
+
+  private InstrumentedPrinter(AidlPrinter printer, PrinterMetrics metrics, FlightRecorder recorder) {
+    this.printer = printer;
+    this.metrics = metrics;
+    this.recorder = recorder;
+  }
+
+  static AidlPrinter wrap(AidlPrinter printer, PrinterMetrics metrics, FlightRecorder recorder) {
+    return (AidlPrinter) Proxy.newProxyInstance(AidlPrinter.class.getClassLoader(),
+        new Class<?>[] {AidlPrinter.class}, new InstrumentedPrinter(printer, metrics, recorder));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(printer, args);
+    }
+
+    String name = method.getName();
+    if (!POLL_METHOD.equals(name)) {
+      recorder.record("aidl", name);
+    }
+
+    PrinterTrace.begin("S600 aidl ", name);
+    long start = System.nanoTime();
+    try {
+      return method.invoke(printer, args);
+    } catch (InvocationTargetException e) {
+      // Keep RemoteException (and DeadObjectException) visible to the caller as-is
+      Throwable cause = e.getCause();
+      recorder.record("aidlError", name + ": " + cause);
+      throw cause;
+    } finally {
+      metrics.recordIpc(name, System.nanoTime() - start);
+      PrinterTrace.end();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.edc.s600.s600;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - lock-free log2 histogram of durations
+ * Bucket i counts samples below 2^(i+1) microseconds, so recording is one
+ * numberOfLeadingZeros and two atomic adds. Percentiles are reported as the upper
+ * bound of their bucket (at most 2x the true value), capped at the maximum seen
+ */
+class LatencyHistogram {
+  // 2^32 us is over an hour; anything longer lands in the last bucket
+  static final int BUCKETS = 32;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    buckets.incrementAndGet(bucketFor(micros));
+    count.incrementAndGet();
+    totalMicros.addAndGet(micros);
+
+    long max;
+    while (micros > (max = maxMicros.get())) {
+      if (maxMicros.compareAndSet(max, micros)) {
+        break;
+      }
+    }
+  }
+
+  static int bucketFor(long micros) {
+    if (micros <= 1) {
+      return 0;
+    }
+    return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+  }
+
+  long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Upper bound of the bucket holding the q-th quantile, in milliseconds
+   */
+  double percentileMs(double q) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(q * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(1L << (i + 1), maxMicros.get()) / 1000.0;
+      }
+    }
+    return maxMicros.get() / 1000.0;
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    totalMicros.set(0);
+    maxMicros.set(0);
+  }
+
+  Map<String, Object> toMap() {
+    long total = count.get();
+    Map<String, Object> map = new HashMap<>();
+    map.put("count", total);
+    map.put("meanMs", total > 0 ? totalMicros.get() / 1000.0 / total : 0.0);
+    map.put("maxMs", maxMicros.get() / 1000.0);
+    map.put("p50Ms", percentileMs(0.50));
+    map.put("p90Ms", percentileMs(0.90));
+    map.put("p99Ms", percentileMs(0.99));
+    return map;
+  }
+}
@@ -0,0 +1,183 @@
+package com.edc.s600.s600;
+
+import android.os.Handler;
+
+import com.kp.ktsdkservice.printer.PrintItemObj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * PrintCoalescer - merges bursts of small print calls into one print cycle
+ * While a window is set, printText and feedPaper calls are held for up to that long from
+ * the first one, then handed to the sink as a single Batch: one PrintItemObj list and one
+ * prnStart/printClose. A call in another priority lane, a full batch or flush() hands the
+ * batch over early. Each caller is still answered on its own Result.
+ */
+class PrintCoalescer {
+  // A longer burst is printed as several batches
+  static final int MAX_BATCH_ITEMS = 32;
+
+  /**
+   * Queues a batch on the print worker; runs while the coalescer is locked so batches
+   * keep their order relative to the calls around them
+   */
+  interface Sink {
+    void submit(Batch batch);
+  }
+
+  private final Handler handler;
+  private final Sink sink;
+  private final Runnable windowElapsed = this::flush;
+
+  // Guarded by this
+  private long windowMs = 0;
+  private Batch pending;
+  private long batches = 0;
+  private long calls = 0;
+
+  PrintCoalescer(Handler handler, Sink sink) {
+    this.handler = handler;
+    this.sink = sink;
+  }
+
+  synchronized boolean isEnabled() {
+    return windowMs > 0;
+  }
+
+  /**
+   * Hold calls for up to windowMs; 0 turns coalescing off and hands over what is held
+   */
+  synchronized void setWindowMs(long windowMs) {
+    this.windowMs = Math.max(0, windowMs);
+    if (this.windowMs == 0) {
+      flush();
+    }
+  }
+
+  /**
+   * Hold one call; false if coalescing is off and the caller should print it on its own
+   */
+  synchronized boolean add(PrintJobScheduler.Priority priority, String name, PrintItemObj item, Result result) {
+    if (windowMs == 0) {
+      return false;
+    }
+    if (pending != null && pending.priority != priority) {
+      flush();
+    }
+    if (pending == null) {
+      pending = new Batch(priority);
+      handler.postDelayed(windowElapsed, windowMs);
+    }
+
+    pending.add(name, item, result);
+    calls++;
+    if (pending.size() >= MAX_BATCH_ITEMS) {
+      flush();
+    }
+    return true;
+  }
+
+  /**
+   * Hand the held calls to the sink now; false if none were held
+   */
+  synchronized boolean flush() {
+    Batch batch = pending;
+    if (batch == null) {
+      return false;
+    }
+
+    handler.removeCallbacks(windowElapsed);
+    pending = null;
+    batches++;
+    sink.submit(batch);
+    return true;
+  }
+
+  synchronized Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("windowMs", windowMs);
+    stats.put("pending", pending != null ? pending.size() : 0);
+    stats.put("batches", batches);
+    stats.put("calls", calls);
+    return stats;
+  }
+
+  /**
+   * Calls printed together; answering the batch answers every call in it
+   */
+  static final class Batch implements Result {
+    final PrintJobScheduler.Priority priority;
+    private final ArrayList<PrintItemObj> items = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Result> results = new ArrayList<>();
+
+    Batch(PrintJobScheduler.Priority priority) {
+      this.priority = priority;
+    }
+
+    void add(String name, PrintItemObj item, Result result) {
+      names.add(name);
+      items.add(item);
+      results.add(result);
+    }
+
+    int size() {
+      return items.size();
+    }
+
+    /**
+     * One item per call, in call order
+     */
+    ArrayList<PrintItemObj> getItems() {
+      return items;
+    }
+
+    /**
+     * Call names, e.g. "printText x3, feedPaper"
+     */
+    String describe() {
+      StringBuilder description = new StringBuilder();
+      for (int i = 0; i < names.size(); i++) {
+        int run = 1;
+        while (i + 1 < names.size() && names.get(i + 1).equals(names.get(i))) {
+          run++;
+          i++;
+        }
+        if (description.length() > 0) {
+          description.append(", ");
+        }
+        description.append(names.get(i));
+        if (run > 1) {
+          description.append(" x").append(run);
+        }
+      }
+      return description.toString();
+    }
+
+    @Override
+    public void success(Object result) {
+      for (Result caller : results) {
+        caller.success(result);
+      }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      for (Result caller : results) {
+        caller.error(errorCode, errorMessage, errorDetails);
+      }
+    }
+
+    @Override
+    public void notImplemented() {
+      for (Result caller : results) {
+        caller.notImplemented();
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.edc.s600.s600;
+
+import com.kp.ktsdkservice.printer.AidlPrinterListener;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PrintCompletion - AidlPrinterListener the print worker can block on
+ * Released directly by onPrintFinish/onError on the binder thread, so the worker
+ * resumes the moment the service acknowledges a call instead of polling a flag
+ */
+class PrintCompletion extends AidlPrinterListener.Stub {
+  private final CountDownLatch latch = new CountDownLatch(1);
+  private volatile boolean success = false;
+  private volatile int errorCode = 0;
+
+  @Override
+  public void onPrintFinish() {
+    success = true;
+    latch.countDown();
+  }
+
+  @Override
+  public void onError(int errorCode) {
+    this.errorCode = errorCode;
+    success = false;
+    latch.countDown();
+  }
+
+  /**
+   * Wait for the acknowledgement. Returns false if none arrived within the timeout.
+   */
+  boolean await(long timeoutMs) throws InterruptedException {
+    return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  boolean isSuccess() {
+    return success;
+  }
+
+  int getErrorCode() {
+    return errorCode;
+  }
+}
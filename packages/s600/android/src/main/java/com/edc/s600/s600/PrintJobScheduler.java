@@ -0,0 +1,648 @@
+package com.edc.s600.s600;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * PrintJobScheduler - serializes every printer operation on a single worker thread
+ * A job holds the worker until its result has been delivered, so AIDL calls from
+ * two jobs can never interleave on the same AidlPrinter
+ */
+class PrintJobScheduler {
+  private static final String TAG = "PrintJobScheduler";
+
+  static final int DEFAULT_CAPACITY = 64;
+
+  // Safety net so a listener that never calls back cannot stall the queue forever
+  static final long JOB_TIMEOUT_MS = 60000;
+
+  // A job may be put back in the queue this many times after the printer service died under it
+  static final int MAX_REQUEUES = 1;
+
+  /**
+   * Priority lanes, served in declaration order
+   */
+  enum Priority {
+    URGENT,
+    RECEIPT,
+    NORMAL,
+    REPORT;
+
+    static Priority from(String value) {
+      if (value == null) {
+        return NORMAL;
+      }
+
+      switch (value) {
+        case "urgent":
+          return URGENT;
+        case "receipt":
+          return RECEIPT;
+        case "report":
+          return REPORT;
+        default:
+          return NORMAL;
+      }
+    }
+  }
+
+  /**
+   * Work executed on the worker thread. Must answer the job exactly once.
+   */
+  interface Task {
+    void run(PrintJob job) throws Exception;
+  }
+
+  /**
+   * Notified on the worker thread when a job did not answer within the job timeout, after
+   * it has been answered with TIMEOUT
+   */
+  interface TimeoutListener {
+    void onJobTimedOut(PrintJob job);
+  }
+
+  /**
+   * Polled by long-running tasks at chunk and item boundaries, so a cancelled or expired
+   * job stops sending instead of running to the end
+   */
+  interface StopSignal {
+    StopSignal NONE = () -> false;
+
+    boolean isStopRequested();
+  }
+
+  /**
+   * Notified on the worker thread after a job that had started was cancelled, missed its
+   * deadline or timed out, before the next job runs, so the printer can be closed and reset
+   */
+  interface AbortListener {
+    void onJobAborted(PrintJob job);
+  }
+
+  /**
+   * Notified on the worker thread when a job has finished for good (not when it is requeued).
+   * errorCode is null for a successful job and "TIMEOUT" for one that never answered.
+   */
+  interface CompletionListener {
+    void onJobCompleted(PrintJob job, long waitNanos, long runNanos, String errorCode);
+  }
+
+  /**
+   * A queued unit of work. The job is also the Result handed to the task, so
+   * answering it both replies to Dart and releases the worker.
+   */
+  static final class PrintJob implements Comparable<PrintJob>, Result, StopSignal {
+    final long id;
+    final String name;
+    final Priority priority;
+    final long submittedAt;
+    // Caller's handle for cancel(), or null
+    final String tag;
+    // Runs even while the scheduler is paused, ahead of every other job
+    final boolean ignoresPause;
+    // System.nanoTime() by which the job must be answered, or 0 for no deadline
+    final long deadlineAt;
+
+    private final Task task;
+    private final Result caller;
+    private final Executor resultExecutor;
+    private final AtomicBoolean answered = new AtomicBoolean(false);
+    private volatile CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean requeued = false;
+    private int requeues = 0;
+    private volatile long answeredAt;
+    // System.nanoTime() by which the current run must be answered
+    private volatile long runDeadlineAt;
+    private volatile String errorCode;
+    private volatile String stopCode;
+    private ScheduledFuture<?> deadlineTimer;
+
+    PrintJob(long id, String name, Priority priority, String tag, long deadlineMs, boolean ignoresPause, Task task,
+        Result caller, Executor resultExecutor) {
+      this.id = id;
+      this.name = name;
+      this.priority = priority;
+      this.tag = tag;
+      this.ignoresPause = ignoresPause;
+      this.task = task;
+      this.caller = caller;
+      this.resultExecutor = resultExecutor;
+      this.submittedAt = System.nanoTime();
+      this.deadlineAt = deadlineMs > 0 ? submittedAt + TimeUnit.MILLISECONDS.toNanos(deadlineMs) : 0;
+    }
+
+    boolean isAnswered() {
+      return answered.get();
+    }
+
+    /**
+     * True once the job was cancelled, missed its deadline or timed out; it has already been answered
+     */
+    @Override
+    public boolean isStopRequested() {
+      return stopCode != null;
+    }
+
+    /**
+     * "CANCELLED", "DEADLINE_EXCEEDED" or "TIMEOUT" once stopped, otherwise null
+     */
+    String getStopCode() {
+      return stopCode;
+    }
+
+    private boolean isPastDeadline(long now) {
+      return deadlineAt != 0 && now - deadlineAt >= 0;
+    }
+
+    /**
+     * Answer the job with code and mark it stopped; false if it had already been answered
+     */
+    private boolean stop(String code, String message) {
+      if (!answered.compareAndSet(false, true)) {
+        return false;
+      }
+      answeredAt = System.nanoTime();
+      errorCode = code;
+      stopCode = code;
+      resultExecutor.execute(() -> caller.error(code, message, tag));
+      done.countDown();
+      return true;
+    }
+
+    private void cancelDeadline() {
+      if (deadlineTimer != null) {
+        deadlineTimer.cancel(false);
+      }
+    }
+
+    /**
+     * Give up this run without answering and go back to the queue, ahead of later jobs
+     * in the same lane. Allowed MAX_REQUEUES times; returns false once that is used up.
+     */
+    boolean requeue() {
+      if (answered.get() || requeues >= MAX_REQUEUES) {
+        return false;
+      }
+
+      requeues++;
+      requeued = true;
+      done.countDown();
+      return true;
+    }
+
+    int getRequeues() {
+      return requeues;
+    }
+
+    private void beginRun(long timeoutMs) {
+      requeued = false;
+      done = new CountDownLatch(1);
+      runDeadlineAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    /**
+     * Time left before the running job fails with TIMEOUT, for tasks that block on the printer
+     */
+    long getRemainingRunMs() {
+      return Math.max(0, TimeUnit.NANOSECONDS.toMillis(runDeadlineAt - System.nanoTime()));
+    }
+
+    @Override
+    public void success(Object value) {
+      if (answered.compareAndSet(false, true)) {
+        answeredAt = System.nanoTime();
+        resultExecutor.execute(() -> caller.success(value));
+        done.countDown();
+      }
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      if (answered.compareAndSet(false, true)) {
+        answeredAt = System.nanoTime();
+        this.errorCode = errorCode;
+        resultExecutor.execute(() -> caller.error(errorCode, errorMessage, errorDetails));
+        done.countDown();
+      }
+    }
+
+    @Override
+    public void notImplemented() {
+      if (answered.compareAndSet(false, true)) {
+        answeredAt = System.nanoTime();
+        errorCode = "NOT_IMPLEMENTED";
+        resultExecutor.execute(caller::notImplemented);
+        done.countDown();
+      }
+    }
+
+    @Override
+    public int compareTo(PrintJob other) {
+      if (ignoresPause != other.ignoresPause) {
+        return ignoresPause ? -1 : 1;
+      }
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(id, other.id);
+    }
+  }
+
+  private final PriorityBlockingQueue<PrintJob> queue = new PriorityBlockingQueue<>();
+  private final Executor resultExecutor;
+  private final int capacity;
+  private final AtomicLong nextJobId = new AtomicLong(1);
+
+  // Statistics
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private final AtomicLong requeueCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private volatile long maxWaitNanos = 0;
+  private volatile long lastWaitNanos = 0;
+  private final AtomicLong cancelled = new AtomicLong();
+  private final AtomicLong deadlineExceeded = new AtomicLong();
+  private volatile PrintJob activeJob;
+
+  private Thread worker;
+  private volatile boolean running = false;
+  private volatile TimeoutListener timeoutListener;
+  private volatile CompletionListener completionListener;
+  private volatile AbortListener abortListener;
+  private volatile long jobTimeoutMs = JOB_TIMEOUT_MS;
+
+  // Expires jobs at their deadline, whether they are still queued or already running
+  private ScheduledThreadPoolExecutor deadlines;
+
+  // While paused (printer service gone) jobs stay queued instead of failing
+  private final Object pauseLock = new Object();
+  private boolean paused = false;
+
+  PrintJobScheduler(Executor resultExecutor) {
+    this(resultExecutor, DEFAULT_CAPACITY);
+  }
+
+  PrintJobScheduler(Executor resultExecutor, int capacity) {
+    this.resultExecutor = resultExecutor;
+    this.capacity = capacity;
+  }
+
+  /**
+   * Queue a job. Returns null when the queue is full; the caller is not answered in that case.
+   */
+  PrintJob submit(String name, Priority priority, Result caller, Task task) {
+    return submit(name, priority, null, 0, caller, task);
+  }
+
+  /**
+   * Queue a job that cancel(tag) can stop and that fails with DEADLINE_EXCEEDED unless it is
+   * answered within deadlineMs of now. A null tag and a deadlineMs of 0 mean neither.
+   */
+  synchronized PrintJob submit(String name, Priority priority, String tag, long deadlineMs, Result caller, Task task) {
+    if (queue.size() >= capacity) {
+      rejected.incrementAndGet();
+      return null;
+    }
+
+    PrintJob job = new PrintJob(nextJobId.getAndIncrement(), name, priority, tag, deadlineMs, false, task, caller,
+        resultExecutor);
+    submitted.incrementAndGet();
+    queue.add(job);
+    ensureStarted();
+    if (deadlineMs > 0) {
+      job.deadlineTimer = deadlines().schedule(() -> expire(job), deadlineMs, TimeUnit.MILLISECONDS);
+    }
+    return job;
+  }
+
+  /**
+   * Queue a job that runs ahead of everything, even while paused, for the work that ends a
+   * pause such as looking up the printer of a rebound service. Never rejected for capacity.
+   */
+  synchronized PrintJob submitIgnoringPause(String name, Result caller, Task task) {
+    PrintJob job = new PrintJob(nextJobId.getAndIncrement(), name, Priority.URGENT, null, 0, true, task, caller,
+        resultExecutor);
+    submitted.incrementAndGet();
+    queue.add(job);
+    ensureStarted();
+    synchronized (pauseLock) {
+      pauseLock.notifyAll();
+    }
+    return job;
+  }
+
+  /**
+   * Cancel every queued or running job submitted with tag. Queued jobs are dropped; a running
+   * job is answered now and stops at its next chunk or item boundary. Returns the number stopped.
+   */
+  int cancel(String tag) {
+    if (tag == null) {
+      return 0;
+    }
+
+    List<PrintJob> matches = new ArrayList<>();
+    synchronized (this) {
+      PrintJob active = activeJob;
+      if (active != null && tag.equals(active.tag)) {
+        matches.add(active);
+      }
+      for (PrintJob job : queue) {
+        if (tag.equals(job.tag)) {
+          matches.add(job);
+        }
+      }
+    }
+
+    int stopped = 0;
+    for (PrintJob job : matches) {
+      if (stop(job, "CANCELLED", "Job " + tag + " was cancelled")) {
+        cancelled.incrementAndGet();
+        stopped++;
+      }
+    }
+    return stopped;
+  }
+
+  private void expire(PrintJob job) {
+    long deadlineMs = TimeUnit.NANOSECONDS.toMillis(job.deadlineAt - job.submittedAt);
+    if (stop(job, "DEADLINE_EXCEEDED", job.name + " #" + job.id + " missed its " + deadlineMs + "ms deadline")) {
+      deadlineExceeded.incrementAndGet();
+    }
+  }
+
+  /**
+   * Answer job with code and make sure it goes no further: a queued job is dropped, and the
+   * worker is interrupted out of whatever the running job is blocked on
+   */
+  private synchronized boolean stop(PrintJob job, String code, String message) {
+    if (!job.stop(code, message)) {
+      return false;
+    }
+
+    PrinterLog.d(TAG, "Job %s (%s) stopped: %s", job.id, job.name, code);
+    job.cancelDeadline();
+    queue.remove(job);
+    // activeJob only changes under this lock, so the interrupt cannot land on the next job
+    if (activeJob == job && worker != null) {
+      worker.interrupt();
+    }
+    return true;
+  }
+
+  private ScheduledThreadPoolExecutor deadlines() {
+    if (deadlines == null) {
+      deadlines = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "S600-JobDeadlines");
+        thread.setDaemon(true);
+        return thread;
+      });
+      // Jobs that finish in time take their timer with them instead of holding it until it fires
+      deadlines.setRemoveOnCancelPolicy(true);
+    }
+    return deadlines;
+  }
+
+  void setTimeoutListener(TimeoutListener listener) {
+    timeoutListener = listener;
+  }
+
+  void setCompletionListener(CompletionListener listener) {
+    completionListener = listener;
+  }
+
+  void setAbortListener(AbortListener listener) {
+    abortListener = listener;
+  }
+
+  /**
+   * How long a job may run unanswered, from its start, before it fails with TIMEOUT
+   */
+  void setJobTimeoutMs(long timeoutMs) {
+    jobTimeoutMs = timeoutMs;
+  }
+
+  /**
+   * Hold queued jobs until resume(), apart from submitIgnoringPause ones; the job already running is not affected
+   */
+  void pause() {
+    synchronized (pauseLock) {
+      paused = true;
+    }
+  }
+
+  void resume() {
+    synchronized (pauseLock) {
+      paused = false;
+      pauseLock.notifyAll();
+    }
+  }
+
+  boolean isPaused() {
+    synchronized (pauseLock) {
+      return paused;
+    }
+  }
+
+  private boolean isPauseIgnoredByNextJob() {
+    PrintJob next = queue.peek();
+    return next != null && next.ignoresPause;
+  }
+
+  private void ensureStarted() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    worker = new Thread(this::runWorker, "S600-PrintWorker");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void runWorker() {
+    while (running) {
+      PrintJob job;
+      try {
+        // Held jobs stay in the queue, where cancel() finds them and later urgent jobs overtake them
+        synchronized (pauseLock) {
+          while (paused && running && !isPauseIgnoredByNextJob()) {
+            pauseLock.wait();
+          }
+        }
+        job = queue.take();
+        if (isPaused() && !job.ignoresPause) {
+          queue.add(job);
+          continue;
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+
+      if (!running) {
+        job.error("DETACHED", "Plugin detached before job " + job.id + " ran", null);
+        break;
+      }
+
+      long wait = System.nanoTime() - job.submittedAt;
+      lastWaitNanos = wait;
+      totalWaitNanos.addAndGet(wait);
+      if (wait > maxWaitNanos) {
+        maxWaitNanos = wait;
+      }
+
+      // A job stopped between take() and here, or already out of time, never starts
+      if (job.isPastDeadline(System.nanoTime())) {
+        expire(job);
+      }
+      synchronized (this) {
+        if (job.isStopRequested()) {
+          continue;
+        }
+        activeJob = job;
+      }
+
+      long timeoutMs = jobTimeoutMs;
+      job.beginRun(timeoutMs);
+      long startedAt = System.nanoTime();
+      // One section from the first AIDL call until the job is answered
+      PrinterTrace.begin("S600 job ", job.name);
+      try {
+        job.task.run(job);
+      } catch (Exception e) {
+        PrinterLog.e(TAG, "Job %s (%s) failed: %s", job.id, job.name, e.getMessage());
+        job.error("JOB_EXCEPTION", "Error running " + job.name, e.getMessage());
+      }
+
+      try {
+        // The timeout counts from the start of the run, including any time the task spent blocked.
+        // Answered like a cancel, so the caller hears back and the printer is closed before the next job
+        if (!job.done.await(job.getRemainingRunMs(), TimeUnit.MILLISECONDS)
+            && stop(job, "TIMEOUT", job.name + " #" + job.id + " did not complete within " + timeoutMs + "ms")) {
+          timedOut.incrementAndGet();
+          PrinterLog.e(TAG, "Job %s (%s) did not complete in time, releasing worker", job.id, job.name);
+          TimeoutListener listener = timeoutListener;
+          if (listener != null) {
+            listener.onJobTimedOut(job);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Either stop() interrupted a job that has already been answered, or shutdown()
+      } finally {
+        PrinterTrace.end();
+      }
+
+      synchronized (this) {
+        activeJob = null;
+        // Drop an interrupt meant for this job, now that no stop() can target it
+        Thread.interrupted();
+        job.cancelDeadline();
+      }
+      if (!running) {
+        break;
+      }
+
+      if (job.isStopRequested()) {
+        AbortListener listener = abortListener;
+        if (listener != null) {
+          listener.onJobAborted(job);
+        }
+      }
+      if (job.requeued && !job.isAnswered()) {
+        PrinterLog.d(TAG, "Job %s (%s) requeued", job.id, job.name);
+        requeueCount.incrementAndGet();
+        queue.add(job);
+        continue;
+      }
+      completed.incrementAndGet();
+
+      CompletionListener listener = completionListener;
+      if (listener != null) {
+        boolean answered = job.isAnswered();
+        long runNanos = (answered ? job.answeredAt : System.nanoTime()) - startedAt;
+        listener.onJobCompleted(job, wait, runNanos, answered ? job.errorCode : "TIMEOUT");
+      }
+    }
+  }
+
+  /**
+   * Stop the worker and fail every job that has not started yet
+   */
+  synchronized void shutdown() {
+    running = false;
+    resume();
+    if (worker != null) {
+      worker.interrupt();
+      worker = null;
+    }
+
+    if (deadlines != null) {
+      deadlines.shutdownNow();
+      deadlines = null;
+    }
+
+    PrintJob pending;
+    while ((pending = queue.poll()) != null) {
+      pending.error("DETACHED", "Plugin detached before job " + pending.id + " ran", null);
+    }
+  }
+
+  /**
+   * True while a job is running or waiting
+   */
+  boolean isBusy() {
+    return activeJob != null || !queue.isEmpty();
+  }
+
+  int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Snapshot of queue depth and wait times for the getQueueStats channel method
+   */
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    Map<String, Object> depthByPriority = new HashMap<>();
+    for (Priority priority : Priority.values()) {
+      depthByPriority.put(priority.name().toLowerCase(Locale.ROOT), 0);
+    }
+    for (PrintJob job : queue) {
+      String key = job.priority.name().toLowerCase(Locale.ROOT);
+      depthByPriority.put(key, (int) depthByPriority.get(key) + 1);
+    }
+
+    long started = completed.get() + (activeJob != null ? 1 : 0);
+    PrintJob active = activeJob;
+
+    stats.put("queueDepth", queue.size());
+    stats.put("capacity", capacity);
+    stats.put("depthByPriority", depthByPriority);
+    stats.put("submitted", submitted.get());
+    stats.put("completed", completed.get());
+    stats.put("rejected", rejected.get());
+    stats.put("timedOut", timedOut.get());
+    stats.put("requeued", requeueCount.get());
+    stats.put("cancelled", cancelled.get());
+    stats.put("deadlineExceeded", deadlineExceeded.get());
+    stats.put("paused", isPaused());
+    stats.put("lastWaitMs", TimeUnit.NANOSECONDS.toMillis(lastWaitNanos));
+    stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+    stats.put("averageWaitMs", started > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / started) : 0);
+    stats.put("activeJobId", active != null ? active.id : null);
+    stats.put("activeJob", active != null ? active.name : null);
+    return stats;
+  }
+}
@@ -0,0 +1,592 @@
+package com.edc.s600.s600;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * PrintSpool - append-only journal of print jobs that have not finished yet
+ * A spooled job is written as a SUBMIT record holding its encoded arguments and bulk data, followed by
+ * PROGRESS records as chunks are acknowledged and a DONE record once it is answered.
+ * Replaying the file after a restart yields the jobs that never finished and how far
+ * they got. Every record carries a CRC, so a write torn by process death is cut off on
+ * replay instead of corrupting what follows. All file I/O happens on one writer thread
+ * that appends in batches and compacts the file; callers only enqueue. A job's bulk data
+ * is held by reference and framed on the writer thread, so spooling a large job copies
+ * nothing on the caller's thread
+ */
+class PrintSpool {
+  private static final String TAG = "PrintSpool";
+
+  // Rewrite the file with only the live jobs once it has grown past this...
+  static final long COMPACT_THRESHOLD_BYTES = 256 * 1024;
+
+  // ...and past twice what the live jobs took at the last rewrite
+  private static final int COMPACT_GROWTH_FACTOR = 2;
+
+  // A record longer than this can only be a corrupt length field
+  private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+  // How long append waits for the previous run's jobs to be read back
+  private static final long LOAD_TIMEOUT_MS = 2000;
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private static final byte SUBMIT = 1;
+  private static final byte PROGRESS = 2;
+  private static final byte DONE = 3;
+
+  // Queued by close() to stop the writer once everything before it is on disk
+  private static final Object CLOSE = new Object();
+
+  /**
+   * Called on the writer thread once the file has been read back, with the number of
+   * jobs left over from the previous run
+   */
+  interface RecoveryListener {
+    void onRecovered(int entries);
+  }
+
+  /**
+   * One spooled job. Payload and data are opaque here; the plugin stores the encoded call
+   * arguments and, apart from them, the call's byte array.
+   */
+  static final class Entry {
+    final long id;
+    final String method;
+    // Caller's jobId, or null
+    final String tag;
+    private final byte[] payload;
+    // Held by reference, never copied, so it must not change once appended; or null
+    private final byte[] data;
+    private volatile int progress;
+    private volatile boolean parked;
+
+    // Guarded by the spool
+    private boolean inFlight;
+    private boolean done;
+
+    private Entry(long id, String method, String tag, byte[] payload, byte[] data) {
+      this.id = id;
+      this.method = method;
+      this.tag = tag;
+      this.payload = payload;
+      this.data = data;
+    }
+
+    byte[] getPayload() {
+      return payload;
+    }
+
+    byte[] getData() {
+      return data;
+    }
+
+    /**
+     * How far the job got, in the unit its method chose: bytes for printRawBytes sent raw,
+     * acknowledged printer calls when it is interpreted
+     */
+    int getProgress() {
+      return progress;
+    }
+
+    /**
+     * Keep this job when it fails now, and run it again once the printer is ready
+     */
+    void park() {
+      parked = true;
+    }
+
+    boolean isParked() {
+      return parked;
+    }
+  }
+
+  private final File file;
+  private final Map<Long, Entry> entries = new LinkedHashMap<>();
+  // Record bodies, and entries whose SUBMIT record the writer frames itself
+  private final LinkedBlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+  private final CountDownLatch loaded = new CountDownLatch(1);
+  private long nextId = 1;
+
+  // Writer thread only
+  private BufferedOutputStream out;
+  private volatile long fileBytes = 0;
+  private long compactedBytes = 0;
+
+  // Statistics
+  private volatile int recovered = 0;
+  private volatile long appended = 0;
+  private volatile long compactions = 0;
+  private volatile long tornBytes = 0;
+  private volatile boolean failed = false;
+
+  private Thread writer;
+  private volatile boolean closed = false;
+
+  PrintSpool(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Start the writer, which first reads back the jobs a previous run left unfinished
+   */
+  synchronized void open(RecoveryListener listener) {
+    if (writer != null) {
+      return;
+    }
+
+    writer = new Thread(() -> runWriter(listener), "S600-Spool");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Record a submitted job with its bulk data, which may be null. Returns null if the spool
+   * is not usable, in which case the job simply runs without surviving a restart.
+   */
+  Entry append(String method, String tag, byte[] payload, byte[] data) {
+    try {
+      if (closed || !loaded.await(LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS) || failed) {
+        return null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+
+    Entry entry;
+    synchronized (this) {
+      entry = new Entry(nextId++, method, tag, payload, data);
+      entry.inFlight = true;
+      entries.put(entry.id, entry);
+    }
+    enqueue(entry);
+    return entry;
+  }
+
+  /**
+   * Remember how far entry got; a restart resumes from here
+   */
+  void progress(Entry entry, int position) {
+    entry.progress = position;
+    enqueue(record(PROGRESS, entry.id, position));
+  }
+
+  /**
+   * The job was answered for good; forget it
+   */
+  void complete(Entry entry) {
+    synchronized (this) {
+      if (entry.done) {
+        return;
+      }
+      entry.done = true;
+      entries.remove(entry.id);
+    }
+    enqueue(record(DONE, entry.id, 0));
+  }
+
+  /**
+   * The job stopped without finishing; keep it for takePending
+   */
+  synchronized void release(Entry entry) {
+    entry.inFlight = false;
+  }
+
+  /**
+   * Jobs waiting to run again, in submission order; they count as running until released
+   * or completed
+   */
+  synchronized List<Entry> takePending() {
+    List<Entry> taken = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      if (!entry.inFlight) {
+        entry.inFlight = true;
+        entry.parked = false;
+        taken.add(entry);
+      }
+    }
+    return taken;
+  }
+
+  /**
+   * Drop the waiting jobs submitted with tag; returns how many there were
+   */
+  int discard(String tag) {
+    List<Entry> matches = new ArrayList<>();
+    synchronized (this) {
+      for (Entry entry : entries.values()) {
+        if (!entry.inFlight && tag.equals(entry.tag)) {
+          matches.add(entry);
+        }
+      }
+    }
+    for (Entry entry : matches) {
+      complete(entry);
+    }
+    return matches.size();
+  }
+
+  /**
+   * Write out everything queued so far and stop the writer
+   */
+  void close() {
+    Thread thread;
+    synchronized (this) {
+      thread = writer;
+      writer = null;
+    }
+    if (thread == null) {
+      return;
+    }
+
+    closed = true;
+    pending.add(CLOSE);
+    try {
+      thread.join(LOAD_TIMEOUT_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    int waiting = 0;
+    int size;
+    synchronized (this) {
+      size = entries.size();
+      for (Entry entry : entries.values()) {
+        if (!entry.inFlight) {
+          waiting++;
+        }
+      }
+    }
+    stats.put("entries", size);
+    stats.put("waiting", waiting);
+    stats.put("recovered", recovered);
+    stats.put("records", appended);
+    stats.put("compactions", compactions);
+    stats.put("tornBytes", tornBytes);
+    stats.put("fileBytes", fileBytes);
+    stats.put("failed", failed);
+    return stats;
+  }
+
+  private void enqueue(Object body) {
+    // Nothing drains the queue once closed
+    if (!closed) {
+      pending.add(body);
+    }
+  }
+
+  private void runWriter(RecoveryListener listener) {
+    int leftOver = 0;
+    try {
+      leftOver = load();
+    } catch (IOException e) {
+      fail("reading " + file, e);
+    } finally {
+      loaded.countDown();
+    }
+    if (listener != null && leftOver > 0) {
+      listener.onRecovered(leftOver);
+    }
+
+    try {
+      while (true) {
+        Object body = pending.take();
+        boolean closing = false;
+        // Everything queued meanwhile goes out with the same flush
+        while (body != null) {
+          if (body == CLOSE) {
+            closing = true;
+          } else {
+            write(body);
+          }
+          body = pending.poll();
+        }
+        flush();
+        if (closing) {
+          break;
+        }
+        if (out != null && fileBytes > COMPACT_THRESHOLD_BYTES && fileBytes > COMPACT_GROWTH_FACTOR * compactedBytes) {
+          compact();
+        }
+      }
+    } catch (InterruptedException e) {
+      // Dropped records are replayed as unfinished jobs, the safe direction
+    } finally {
+      closeStream();
+    }
+  }
+
+  /**
+   * Replay the file into entries and rewrite it with just those. Returns how many were left.
+   */
+  private int load() throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Cannot create " + parent);
+    }
+
+    long good = 0;
+    if (file.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_BYTES))) {
+        while (true) {
+          int length = in.readInt();
+          int crc = in.readInt();
+          if (length <= 0 || length > MAX_RECORD_BYTES) {
+            break;
+          }
+          byte[] body = new byte[length];
+          in.readFully(body);
+          if (crc(body) != crc) {
+            break;
+          }
+          apply(body);
+          good += 8 + length;
+        }
+      } catch (EOFException e) {
+        // End of file, possibly mid-record
+      }
+
+      tornBytes = file.length() - good;
+      if (tornBytes > 0) {
+        PrinterLog.e(TAG, "Dropped %s bytes of incomplete spool records", tornBytes);
+      }
+    }
+
+    int leftOver;
+    synchronized (this) {
+      leftOver = entries.size();
+    }
+    recovered = leftOver;
+    compact();
+    if (leftOver > 0) {
+      PrinterLog.d(TAG, "Recovered %s unfinished print jobs", leftOver);
+    }
+    return leftOver;
+  }
+
+  private synchronized void apply(byte[] body) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte type = in.readByte();
+    long id = in.readLong();
+    nextId = Math.max(nextId, id + 1);
+
+    switch (type) {
+      case SUBMIT: {
+        String method = in.readUTF();
+        String tag = in.readBoolean() ? in.readUTF() : null;
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        int dataLength = in.readInt();
+        byte[] data = dataLength >= 0 ? new byte[dataLength] : null;
+        if (data != null) {
+          in.readFully(data);
+        }
+        // A compaction may have copied a job whose own SUBMIT was still queued
+        if (!entries.containsKey(id)) {
+          entries.put(id, new Entry(id, method, tag, payload, data));
+        }
+        break;
+      }
+
+      case PROGRESS: {
+        Entry entry = entries.get(id);
+        if (entry != null) {
+          entry.progress = in.readInt();
+        }
+        break;
+      }
+
+      case DONE:
+        entries.remove(id);
+        break;
+
+      default:
+        throw new IOException("Unknown spool record " + type);
+    }
+  }
+
+  /**
+   * Rewrite the file with only the live jobs: written to a temporary file, synced, then
+   * renamed over the old one, so a crash leaves either the old file or the new one
+   */
+  private void compact() {
+    List<Entry> live;
+    synchronized (this) {
+      live = new ArrayList<>(entries.values());
+    }
+
+    File compacted = new File(file.getPath() + ".tmp");
+    long bytes = 0;
+    try {
+      try (FileOutputStream stream = new FileOutputStream(compacted)) {
+        BufferedOutputStream buffered = new BufferedOutputStream(stream, BUFFER_BYTES);
+        for (Entry entry : live) {
+          bytes += frame(buffered, entry);
+          if (entry.progress > 0) {
+            bytes += frame(buffered, record(PROGRESS, entry.id, entry.progress));
+          }
+        }
+        buffered.flush();
+        stream.getFD().sync();
+      }
+
+      closeStream();
+      if (!compacted.renameTo(file)) {
+        throw new IOException("Cannot replace " + file);
+      }
+      out = new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_BYTES);
+      fileBytes = bytes;
+      compactedBytes = bytes;
+      compactions++;
+    } catch (IOException e) {
+      fail("compacting " + file, e);
+    }
+  }
+
+  private void write(Object body) {
+    if (out == null) {
+      return;
+    }
+    try {
+      fileBytes += body instanceof Entry ? frame(out, (Entry) body) : frame(out, (byte[]) body);
+      appended++;
+    } catch (IOException e) {
+      fail("writing " + file, e);
+    }
+  }
+
+  /**
+   * Hand the batch to the OS; it survives the process dying from here on
+   */
+  private void flush() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.flush();
+    } catch (IOException e) {
+      fail("writing " + file, e);
+    }
+  }
+
+  private void closeStream() {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      PrinterLog.e(TAG, "Error closing %s: %s", file, e.getMessage());
+    }
+    out = null;
+  }
+
+  /**
+   * Stop spooling for the rest of this run; jobs keep printing, they just do not survive a restart
+   */
+  private void fail(String action, IOException e) {
+    PrinterLog.e(TAG, "Spool disabled after error %s: %s", action, e.getMessage());
+    failed = true;
+    closeStream();
+  }
+
+  private static int frame(BufferedOutputStream stream, byte[] body) throws IOException {
+    return frame(stream, body, null);
+  }
+
+  /**
+   * A SUBMIT record: the head is built here, the data is written and checksummed in place
+   */
+  private static int frame(BufferedOutputStream stream, Entry entry) throws IOException {
+    return frame(stream, submitHead(entry), entry.data);
+  }
+
+  /**
+   * Write head followed by tail, which may be null, as one record
+   */
+  private static int frame(BufferedOutputStream stream, byte[] head, byte[] tail) throws IOException {
+    int length = head.length + (tail != null ? tail.length : 0);
+    CRC32 crc = new CRC32();
+    crc.update(head, 0, head.length);
+    if (tail != null) {
+      crc.update(tail, 0, tail.length);
+    }
+    int value = (int) crc.getValue();
+    stream.write(new byte[] {
+        (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length,
+        (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    stream.write(head);
+    if (tail != null) {
+      // An array larger than the buffer goes straight to the file, uncopied
+      stream.write(tail);
+    }
+    return 8 + length;
+  }
+
+  private static int crc(byte[] body) {
+    CRC32 crc = new CRC32();
+    crc.update(body, 0, body.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Everything of a SUBMIT record up to the data itself, which follows its length
+   */
+  private static byte[] submitHead(Entry entry) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.payload.length + 64);
+    DataOutputStream body = new DataOutputStream(bytes);
+    try {
+      body.writeByte(SUBMIT);
+      body.writeLong(entry.id);
+      body.writeUTF(entry.method);
+      body.writeBoolean(entry.tag != null);
+      if (entry.tag != null) {
+        body.writeUTF(entry.tag);
+      }
+      body.writeInt(entry.payload.length);
+      body.write(entry.payload);
+      body.writeInt(entry.data != null ? entry.data.length : -1);
+    } catch (IOException e) {
+      // ByteArrayOutputStream does not throw
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] record(byte type, long id, int value) {
+    byte[] body = new byte[type == DONE ? 9 : 13];
+    body[0] = type;
+    for (int i = 0; i < 8; i++) {
+      body[1 + i] = (byte) (id >>> (56 - 8 * i));
+    }
+    if (type != DONE) {
+      body[9] = (byte) (value >>> 24);
+      body[10] = (byte) (value >>> 16);
+      body[11] = (byte) (value >>> 8);
+      body[12] = (byte) value;
+    }
+    return body;
+  }
+}
@@ -0,0 +1,175 @@
+package com.edc.s600.s600;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.printer.PrintItemObj;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PrinterCapabilities - what the connected KTP printer service can do
+ * Probed once when the service connects: SP firmware version plus the optional
+ * raw-byte methods resolved by reflection. The raw-send strategy that works is
+ * remembered per device model and SP version, across restarts; the barcode types the
+ * firmware cannot print natively only for as long as the service stays connected
+ */
+class PrinterCapabilities {
+  private static final String TAG = "PrinterCapabilities";
+  private static final String PREFS_NAME = "s600_printer_capabilities";
+
+  /**
+   * Ways of pushing a raw ESC/POS chunk through the KTP service, in probing order
+   */
+  enum RawSendStrategy {
+    // printText with the chunk decoded as ISO-8859-1
+    TEXT_LATIN1,
+    // PrintItemObj.setRawBytes, when the SDK build has it
+    PRINT_ITEM_RAW_BYTES,
+    // AidlPrinter.sendEscPosCmd/sendRawData/write, when the SDK build has one
+    DIRECT_COMMAND
+  }
+
+  final int spVersion;
+  final Method setRawBytesMethod;
+  final Method directCommandMethod;
+
+  private final SharedPreferences prefs;
+  private final String strategyKey;
+  private volatile RawSendStrategy rawStrategy;
+  private final Set<String> unsupportedBarcodes = Collections.synchronizedSet(new HashSet<String>());
+
+  private PrinterCapabilities(int spVersion, Method setRawBytesMethod, Method directCommandMethod,
+                              SharedPreferences prefs) {
+    this.spVersion = spVersion;
+    this.setRawBytesMethod = setRawBytesMethod;
+    this.directCommandMethod = directCommandMethod;
+    this.prefs = prefs;
+    this.strategyKey = "rawStrategy:" + Build.MODEL + ":" + spVersion;
+
+    String stored = prefs != null ? prefs.getString(strategyKey, null) : null;
+    if (stored != null) {
+      try {
+        rawStrategy = RawSendStrategy.valueOf(stored);
+      } catch (IllegalArgumentException e) {
+        rawStrategy = null;
+      }
+    }
+  }
+
+  /**
+   * Probe the connected printer. Never throws; unknown values fall back to defaults.
+   */
+  static PrinterCapabilities probe(AidlPrinter printer, Context context) {
+    int spVersion = -1;
+    try {
+      spVersion = printer.getSpVersion();
+    } catch (Exception e) {
+      PrinterLog.e(TAG, "Unable to read SP version: %s", e.getMessage());
+    }
+
+    Method setRawBytes = null;
+    try {
+      setRawBytes = PrintItemObj.class.getMethod("setRawBytes", byte[].class);
+    } catch (NoSuchMethodException e) {
+      // Not available in this SDK build
+    }
+
+    Method directCommand = null;
+    for (String name : new String[] {"sendEscPosCmd", "sendRawData", "write"}) {
+      try {
+        directCommand = AidlPrinter.class.getMethod(name, byte[].class);
+        break;
+      } catch (NoSuchMethodException e) {
+        // Try the next candidate
+      }
+    }
+
+    SharedPreferences prefs = context != null
+        ? context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+        : null;
+    PrinterCapabilities capabilities = new PrinterCapabilities(spVersion, setRawBytes, directCommand, prefs);
+    PrinterLog.d(TAG, "Probed printer: %s", capabilities.toMap());
+    return capabilities;
+  }
+
+  boolean supports(RawSendStrategy strategy) {
+    switch (strategy) {
+      case PRINT_ITEM_RAW_BYTES:
+        return setRawBytesMethod != null;
+      case DIRECT_COMMAND:
+        return directCommandMethod != null;
+      default:
+        return true;
+    }
+  }
+
+  RawSendStrategy getRawStrategy() {
+    return rawStrategy;
+  }
+
+  /**
+   * Strategies to try for a chunk: the remembered one first, then the other supported ones
+   */
+  List<RawSendStrategy> rawStrategies() {
+    List<RawSendStrategy> strategies = new ArrayList<>();
+    RawSendStrategy remembered = rawStrategy;
+    if (remembered != null && supports(remembered)) {
+      strategies.add(remembered);
+    }
+    for (RawSendStrategy strategy : RawSendStrategy.values()) {
+      if (strategy != remembered && supports(strategy)) {
+        strategies.add(strategy);
+      }
+    }
+    return strategies;
+  }
+
+  void rememberRawStrategy(RawSendStrategy strategy) {
+    if (strategy == rawStrategy) {
+      return;
+    }
+
+    rawStrategy = strategy;
+    if (prefs != null) {
+      prefs.edit().putString(strategyKey, strategy.name()).apply();
+    }
+    PrinterLog.d(TAG, "Raw send strategy for %s is now %s", strategyKey, strategy);
+  }
+
+  /**
+   * False once the firmware has rejected valid data of this symbology in AidlPrinter.printBarCode
+   */
+  boolean supportsNativeBarcode(BarcodeSymbology symbology) {
+    return !unsupportedBarcodes.contains(symbology.name());
+  }
+
+  /**
+   * Render symbology from now on. Kept in memory only: a rejection can be wrong, and the
+   * next connection asks the firmware again.
+   */
+  void rememberNativeBarcodeUnsupported(BarcodeSymbology symbology) {
+    if (unsupportedBarcodes.add(symbology.name())) {
+      PrinterLog.d(TAG, "Firmware cannot print %s natively, rendering it until reconnected", symbology);
+    }
+  }
+
+  Map<String, Object> toMap() {
+    Map<String, Object> map = new HashMap<>();
+    map.put("spVersion", spVersion);
+    map.put("rawBytesItem", setRawBytesMethod != null);
+    map.put("directCommand", directCommandMethod != null ? directCommandMethod.getName() : null);
+    map.put("rawStrategy", rawStrategy != null ? rawStrategy.name() : null);
+    map.put("unsupportedBarcodes", new ArrayList<>(unsupportedBarcodes));
+    return map;
+  }
+}
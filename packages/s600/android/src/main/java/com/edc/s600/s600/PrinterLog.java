@@ -0,0 +1,87 @@
+package com.edc.s600.s600;
+
+import android.util.Log;
+
+/**
+ * PrinterLog - level-gated logging for the plugin
+ * Messages take a String.format pattern that is only formatted when the level is
+ * enabled. The arguments are still boxed into an array, so per-call and per-chunk
+ * logging checks isDebug() first. Debug output is off unless enabled with
+ * setLogLevel or `adb shell setprop log.tag.S600 DEBUG`
+ */
+final class PrinterLog {
+  static final String TAG = "S600";
+
+  // Above Log.ASSERT, so nothing is logged
+  static final int NONE = Log.ASSERT + 1;
+
+  private static volatile int level = Log.isLoggable(TAG, Log.DEBUG) ? Log.DEBUG : Log.INFO;
+
+  private PrinterLog() {
+  }
+
+  static boolean isLoggable(int priority) {
+    return priority >= level;
+  }
+
+  /**
+   * True if d() logs anything; costs a volatile read
+   */
+  static boolean isDebug() {
+    return level <= Log.DEBUG;
+  }
+
+  static void setLevel(int priority) {
+    level = priority;
+  }
+
+  /**
+   * Parse a level name (verbose, debug, info, warn, error, none); returns -1 for anything else
+   */
+  static int levelFrom(String name) {
+    if (name == null) {
+      return -1;
+    }
+
+    switch (name) {
+      case "verbose":
+        return Log.VERBOSE;
+      case "debug":
+        return Log.DEBUG;
+      case "info":
+        return Log.INFO;
+      case "warn":
+        return Log.WARN;
+      case "error":
+        return Log.ERROR;
+      case "none":
+        return NONE;
+      default:
+        return -1;
+    }
+  }
+
+  static void d(String tag, String message) {
+    if (level <= Log.DEBUG) {
+      Log.d(tag, message);
+    }
+  }
+
+  static void d(String tag, String format, Object... args) {
+    if (level <= Log.DEBUG) {
+      Log.d(tag, String.format(format, args));
+    }
+  }
+
+  static void e(String tag, String message) {
+    if (level <= Log.ERROR) {
+      Log.e(tag, message);
+    }
+  }
+
+  static void e(String tag, String format, Object... args) {
+    if (level <= Log.ERROR) {
+      Log.e(tag, String.format(format, args));
+    }
+  }
+}
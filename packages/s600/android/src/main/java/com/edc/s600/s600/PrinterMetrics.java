@@ -0,0 +1,143 @@
+package com.edc.s600.s600;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PrinterMetrics - per job type latency histograms and counters for getPrinterMetrics
+ * Jobs are recorded by the scheduler when they finish; AIDL calls are timed by
+ * InstrumentedPrinter, so every call site is covered without touching it.
+ * Everything is lock-free and allocation-free once a key exists
+ */
+class PrinterMetrics {
+  /**
+   * Counters for one job type, e.g. printText or printRawBytes
+   */
+  static final class JobStats {
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final LatencyHistogram run = new LatencyHistogram();
+    final AtomicLong succeeded = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong retries = new AtomicLong();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong chunks = new AtomicLong();
+    final ConcurrentHashMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+    Map<String, Object> toMap() {
+      Map<String, Object> map = new HashMap<>();
+      map.put("succeeded", succeeded.get());
+      map.put("failed", failed.get());
+      map.put("retries", retries.get());
+      map.put("bytes", bytes.get());
+      map.put("chunks", chunks.get());
+      map.put("queueWait", queueWait.toMap());
+      map.put("run", run.toMap());
+      Map<String, Object> errorCounts = new HashMap<>();
+      for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+        errorCounts.put(entry.getKey(), entry.getValue().get());
+      }
+      map.put("errors", errorCounts);
+      return map;
+    }
+  }
+
+  // ConcurrentHashMap.putIfAbsent rather than computeIfAbsent, which needs API 24
+  private final ConcurrentHashMap<String, JobStats> jobs = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, LatencyHistogram> ipc = new ConcurrentHashMap<>();
+  private final LatencyHistogram bind = new LatencyHistogram();
+  private volatile long since = System.currentTimeMillis();
+
+  JobStats job(String type) {
+    JobStats stats = jobs.get(type);
+    if (stats == null) {
+      stats = new JobStats();
+      JobStats existing = jobs.putIfAbsent(type, stats);
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Scheduler completion hook
+   */
+  void recordJob(String type, long waitNanos, long runNanos, String errorCode, int retries) {
+    JobStats stats = job(type);
+    stats.queueWait.record(waitNanos);
+    stats.run.record(runNanos);
+    if (retries > 0) {
+      stats.retries.addAndGet(retries);
+    }
+    if (errorCode == null) {
+      stats.succeeded.incrementAndGet();
+      return;
+    }
+
+    stats.failed.incrementAndGet();
+    AtomicLong count = stats.errors.get(errorCode);
+    if (count == null) {
+      count = new AtomicLong();
+      AtomicLong existing = stats.errors.putIfAbsent(errorCode, count);
+      if (existing != null) {
+        count = existing;
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   * Data a job pushed to the printer, and how many extra attempts it needed on top of the job retries
+   */
+  void recordTransfer(String type, long bytes, int chunks, int retries) {
+    JobStats stats = job(type);
+    stats.bytes.addAndGet(bytes);
+    stats.chunks.addAndGet(chunks);
+    if (retries > 0) {
+      stats.retries.addAndGet(retries);
+    }
+  }
+
+  void recordIpc(String method, long nanos) {
+    LatencyHistogram histogram = ipc.get(method);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = ipc.putIfAbsent(method, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    histogram.record(nanos);
+  }
+
+  void recordBind(long nanos) {
+    bind.record(nanos);
+  }
+
+  void reset() {
+    jobs.clear();
+    ipc.clear();
+    bind.reset();
+    since = System.currentTimeMillis();
+  }
+
+  Map<String, Object> snapshot() {
+    Map<String, Object> jobMaps = new HashMap<>();
+    for (Map.Entry<String, JobStats> entry : jobs.entrySet()) {
+      jobMaps.put(entry.getKey(), entry.getValue().toMap());
+    }
+    Map<String, Object> ipcMaps = new HashMap<>();
+    for (Map.Entry<String, LatencyHistogram> entry : ipc.entrySet()) {
+      ipcMaps.put(entry.getKey(), entry.getValue().toMap());
+    }
+
+    Map<String, Object> snapshot = new HashMap<>();
+    snapshot.put("since", since);
+    snapshot.put("bind", bind.toMap());
+    snapshot.put("jobs", jobMaps);
+    snapshot.put("ipc", ipcMaps);
+    return snapshot;
+  }
+}
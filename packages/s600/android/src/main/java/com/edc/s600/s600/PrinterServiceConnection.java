@@ -0,0 +1,302 @@
+package com.edc.s600.s600;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.RemoteException;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.service.AidlDeviceService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * PrinterServiceConnection - binds to the KTP device service and hands out the AidlPrinter
+ * Callers waiting for the printer are answered from onServiceConnected itself, so
+ * they never wait longer than the service takes to connect. Once connected, the
+ * binder is watched with linkToDeath and a lost service is rebound with exponential
+ * backoff. All methods run on the main thread; only the getPrinter() lookup, a blocking
+ * binder call, runs on the lookup executor and posts its outcome back
+ */
+class PrinterServiceConnection implements ServiceConnection {
+  private static final String TAG = "PrinterServiceConnection";
+
+  // KTP SDK service package and class names
+  static final String PACKAGE_NAME = "com.kp.ktsdkservice";
+  static final String CLASS_NAME = "com.kp.ktsdkservice.service.DeviceService";
+
+  // Rebind backoff: 500 ms, 1 s, 2 s ... capped at 30 s, giving up after MAX_RECONNECT_ATTEMPTS
+  static final long RECONNECT_INITIAL_DELAY_MS = 500;
+  static final long RECONNECT_MAX_DELAY_MS = 30000;
+  static final int MAX_RECONNECT_ATTEMPTS = 8;
+
+  interface Listener {
+    void onPrinterConnected(AidlDeviceService serviceManager, AidlPrinter printer);
+
+    void onPrinterDisconnected();
+
+    /**
+     * Rebinding gave up after MAX_RECONNECT_ATTEMPTS
+     */
+    void onReconnectFailed();
+  }
+
+  interface ConnectCallback {
+    void onConnectResult(boolean connected);
+  }
+
+  private final Context context;
+  private final Handler handler;
+  private final Executor lookupExecutor;
+  private final Listener listener;
+  private final List<ConnectCallback> waiters = new ArrayList<>();
+
+  private boolean bound = false;
+  private AidlPrinter printer;
+  private IBinder binder;
+
+  // True between a lost connection and the next successful one
+  private boolean reconnecting = false;
+  private int reconnectAttempts = 0;
+  private final Runnable reconnectRunnable = this::attemptReconnect;
+
+  private final IBinder.DeathRecipient deathRecipient;
+
+  // bindService() to onServiceConnected, for the bind latency metric
+  private long bindStartedAt;
+  private long lastBindNanos = -1;
+
+  PrinterServiceConnection(Context context, Handler handler, Executor lookupExecutor, Listener listener) {
+    this.context = context;
+    this.handler = handler;
+    this.lookupExecutor = lookupExecutor;
+    this.listener = listener;
+    // binderDied arrives on a binder thread
+    this.deathRecipient = () -> handler.post(() -> onServiceLost("binder died"));
+  }
+
+  boolean isConnected() {
+    return printer != null;
+  }
+
+  boolean isReconnecting() {
+    return reconnecting;
+  }
+
+  /**
+   * Time the last successful bind took, or -1 if none has completed
+   */
+  long getLastBindNanos() {
+    return lastBindNanos;
+  }
+
+  /**
+   * Start binding unless a binding is already in place. Returns false if the service cannot be bound.
+   */
+  boolean bind() {
+    if (bound) {
+      return true;
+    }
+
+    Intent intent = new Intent();
+    intent.setClassName(PACKAGE_NAME, CLASS_NAME);
+    bindStartedAt = System.nanoTime();
+    PrinterTrace.begin("S600 bindService");
+    try {
+      bound = context.bindService(intent, this, Context.BIND_AUTO_CREATE);
+    } finally {
+      PrinterTrace.end();
+    }
+    PrinterLog.d(TAG, bound ? "Service binding initiated" : "Failed to bind to service");
+    return bound;
+  }
+
+  /**
+   * Call back as soon as the printer is connected, or with false once timeoutMs has passed
+   */
+  void awaitConnected(long timeoutMs, ConnectCallback callback) {
+    if (printer != null) {
+      callback.onConnectResult(true);
+      return;
+    }
+
+    waiters.add(callback);
+    handler.postDelayed(() -> {
+      if (waiters.remove(callback)) {
+        PrinterLog.e(TAG, "Printer service did not connect within %sms", timeoutMs);
+        callback.onConnectResult(false);
+      }
+    }, timeoutMs);
+  }
+
+  void unbind() {
+    handler.removeCallbacks(reconnectRunnable);
+    reconnecting = false;
+    reconnectAttempts = 0;
+    release();
+  }
+
+  /**
+   * Drop the current binding and start over, e.g. when the service stopped answering
+   */
+  void reconnect(String reason) {
+    if (!bound && !reconnecting) {
+      return;
+    }
+    onServiceLost(reason);
+  }
+
+  private void release() {
+    unlinkBinder();
+    if (bound) {
+      try {
+        context.unbindService(this);
+      } catch (Exception e) {
+        PrinterLog.e(TAG, "Error unbinding from service: %s", e.getMessage());
+      }
+    }
+    bound = false;
+    printer = null;
+  }
+
+  private void unlinkBinder() {
+    if (binder != null) {
+      try {
+        binder.unlinkToDeath(deathRecipient, 0);
+      } catch (Exception e) {
+        // Already dead
+      }
+      binder = null;
+    }
+  }
+
+  /**
+   * The service died, disconnected or hung. Tell the listener once and schedule a rebind.
+   */
+  private void onServiceLost(String reason) {
+    boolean wasConnected = printer != null;
+    PrinterLog.e(TAG, "Printer service lost: %s", reason);
+
+    release();
+    if (wasConnected) {
+      listener.onPrinterDisconnected();
+    }
+
+    if (!reconnecting) {
+      reconnecting = true;
+      reconnectAttempts = 0;
+      scheduleReconnect();
+    }
+  }
+
+  private void scheduleReconnect() {
+    long delay = Math.min(RECONNECT_MAX_DELAY_MS, RECONNECT_INITIAL_DELAY_MS << Math.min(reconnectAttempts, 16));
+    PrinterLog.d(TAG, "Reconnecting in %sms (attempt %s)", delay, (reconnectAttempts + 1));
+    handler.removeCallbacks(reconnectRunnable);
+    handler.postDelayed(reconnectRunnable, delay);
+  }
+
+  private void attemptReconnect() {
+    if (!reconnecting || printer != null) {
+      return;
+    }
+
+    reconnectAttempts++;
+    release();
+    bind();
+
+    if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS) {
+      // Keep the last binding open in case the service comes back, but stop holding jobs
+      PrinterLog.e(TAG, "Giving up on reconnecting after %s attempts", reconnectAttempts);
+      reconnecting = false;
+      listener.onReconnectFailed();
+      return;
+    }
+
+    scheduleReconnect();
+  }
+
+  @Override
+  public void onServiceConnected(ComponentName name, IBinder serviceBinder) {
+    PrinterLog.d(TAG, "Service connected");
+    lastBindNanos = System.nanoTime() - bindStartedAt;
+
+    AidlDeviceService serviceManager = AidlDeviceService.Stub.asInterface(serviceBinder);
+    try {
+      unlinkBinder();
+      binder = serviceBinder;
+      binder.linkToDeath(deathRecipient, 0);
+    } catch (RemoteException e) {
+      onLookupFailed(serviceBinder, e);
+      return;
+    }
+
+    lookupExecutor.execute(() -> {
+      PrinterTrace.begin("S600 getPrinter");
+      try {
+        AidlPrinter found = AidlPrinter.Stub.asInterface(serviceManager.getPrinter());
+        handler.post(() -> onPrinterFound(serviceBinder, serviceManager, found));
+      } catch (RemoteException e) {
+        handler.post(() -> onLookupFailed(serviceBinder, e));
+      } finally {
+        PrinterTrace.end();
+      }
+    });
+  }
+
+  private void onPrinterFound(IBinder serviceBinder, AidlDeviceService serviceManager, AidlPrinter found) {
+    // The binding was dropped while the lookup ran
+    if (binder != serviceBinder) {
+      return;
+    }
+
+    printer = found;
+    handler.removeCallbacks(reconnectRunnable);
+    reconnecting = false;
+    reconnectAttempts = 0;
+
+    listener.onPrinterConnected(serviceManager, printer);
+    PrinterLog.d(TAG, "Printer service retrieved successfully");
+    answerWaiters();
+  }
+
+  private void onLookupFailed(IBinder serviceBinder, RemoteException e) {
+    if (binder != serviceBinder) {
+      return;
+    }
+
+    // The service died while we were connecting; treat it like any other loss
+    PrinterLog.e(TAG, "RemoteException in service connection: %s", e.getMessage());
+    printer = null;
+    if (!reconnecting) {
+      reconnecting = true;
+      reconnectAttempts = 0;
+      scheduleReconnect();
+    }
+    answerWaiters();
+  }
+
+  /**
+   * Answer everyone waiting, successfully or not, instead of letting them run into the timeout
+   */
+  private void answerWaiters() {
+    List<ConnectCallback> pending = new ArrayList<>(waiters);
+    waiters.clear();
+    for (ConnectCallback callback : pending) {
+      callback.onConnectResult(printer != null);
+    }
+  }
+
+  @Override
+  public void onServiceDisconnected(ComponentName name) {
+    PrinterLog.d(TAG, "Service disconnected");
+    if (printer != null) {
+      onServiceLost("service disconnected");
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.edc.s600.s600;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * PrinterStatusMonitor - single source of truth for the printer status
+ * Print jobs and periodic samples update one atomic value; getPrinterStatus reads
+ * it without IPC and every change (duplicates coalesced) is pushed to Dart over
+ * the s600/status EventChannel. Sampling is fast while the printer is not ready
+ * or has just changed, and slow while it sits idle
+ */
+class PrinterStatusMonitor implements EventChannel.StreamHandler {
+  static final long FAST_INTERVAL_MS = 500;
+  static final long SLOW_INTERVAL_MS = 5000;
+
+  // Keep sampling fast for this long after any change
+  static final long SETTLE_MS = 10000;
+
+  /**
+   * Queries the printer; implementations report back through update()
+   */
+  interface Sampler {
+    void sample();
+  }
+
+  private final Handler handler;
+  private final Sampler sampler;
+  private final AtomicReference<String> status = new AtomicReference<>("unknown");
+  private final Runnable tick = this::tick;
+
+  // Touched on the main thread only
+  private EventChannel.EventSink sink;
+  private String lastEmitted;
+  private boolean running = false;
+  private volatile long lastChangeAt = 0;
+
+  PrinterStatusMonitor(Handler handler, Sampler sampler) {
+    this.handler = handler;
+    this.sampler = sampler;
+  }
+
+  String get() {
+    return status.get();
+  }
+
+  /**
+   * Record a new status from any thread; listeners hear about it only if it changed
+   */
+  void update(String newStatus) {
+    String previous = status.getAndSet(newStatus);
+    if (newStatus.equals(previous)) {
+      return;
+    }
+
+    lastChangeAt = SystemClock.elapsedRealtime();
+    handler.post(this::emit);
+  }
+
+  /**
+   * Push the latest status unless listeners already have it; bursts of changes collapse into one event
+   */
+  private void emit() {
+    String current = status.get();
+    if (sink != null && !current.equals(lastEmitted)) {
+      lastEmitted = current;
+      sink.success(current);
+    }
+  }
+
+  /**
+   * Start periodic sampling, beginning with an immediate sample. Main thread only.
+   */
+  void start() {
+    if (running) {
+      return;
+    }
+
+    running = true;
+    handler.removeCallbacks(tick);
+    handler.post(tick);
+  }
+
+  void stop() {
+    running = false;
+    handler.removeCallbacks(tick);
+  }
+
+  private void tick() {
+    if (!running) {
+      return;
+    }
+
+    sampler.sample();
+    handler.postDelayed(tick, nextInterval());
+  }
+
+  private long nextInterval() {
+    boolean settling = SystemClock.elapsedRealtime() - lastChangeAt < SETTLE_MS;
+    return !"ready".equals(status.get()) || settling ? FAST_INTERVAL_MS : SLOW_INTERVAL_MS;
+  }
+
+  @Override
+  public void onListen(Object arguments, EventChannel.EventSink events) {
+    sink = events;
+    // New listeners start from the current value
+    lastEmitted = status.get();
+    sink.success(lastEmitted);
+  }
+
+  @Override
+  public void onCancel(Object arguments) {
+    sink = null;
+  }
+}
@@ -0,0 +1,40 @@
+package com.edc.s600.s600;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * PrinterTrace - android.os.Trace sections for Systrace and Perfetto
+ * Section names are only built while a trace is being captured (API 29+; older
+ * releases always build them). Every begin must be paired with end() on the same
+ * thread, so callers use try/finally
+ */
+final class PrinterTrace {
+  private PrinterTrace() {
+  }
+
+  static boolean isEnabled() {
+    return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || Trace.isEnabled();
+  }
+
+  static void begin(String section) {
+    Trace.beginSection(section);
+  }
+
+  /**
+   * Begin "prefix + name" without concatenating when tracing is off.
+   * Always pair with end(), which is cheap when nothing was begun.
+   */
+  static void begin(String prefix, String name) {
+    Trace.beginSection(isEnabled() ? truncate(prefix + name) : prefix);
+  }
+
+  static void end() {
+    Trace.endSection();
+  }
+
+  // Trace rejects section names longer than 127 characters
+  private static String truncate(String section) {
+    return section.length() > 127 ? section.substring(0, 127) : section;
+  }
+}
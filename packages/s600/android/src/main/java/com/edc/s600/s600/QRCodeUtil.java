@@ -10,6 +10,7 @@ import com.google.zxing.ChecksumException;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.FormatException;
+import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.NotFoundException;
 import com.google.zxing.RGBLuminanceSource;
 import com.google.zxing.Result;
@@ -22,6 +23,24 @@ import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
 public class QRCodeUtil {
 
+    private static final String TAG = "QRCodeUtil";
+
+    private static final ThreadLocal<int[]> ROW_BUFFER = new ThreadLocal<>();
+
+    /**
+     * Encode a throwaway code so ZXing's classes are loaded and warm before the first real print
+     */
+    public static void warmUp() {
+        try {
+            Map<EncodeHintType, Object> hints = new HashMap<>();
+            hints.put(EncodeHintType.CHARACTER_SET, "utf-8");
+            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+            new QRCodeWriter().encode("s600-warm-up", BarcodeFormat.QR_CODE, 64, 64, hints);
+        } catch (WriterException e) {
+            PrinterLog.e(TAG, "Warm-up encode failed: %s", e.getMessage());
+        }
+    }
+
     public static Bitmap createQRImage(String content, int widthPix, int heightPix, Bitmap logoBm) {
         Bitmap mBitmap = null;
 
@@ -35,17 +54,7 @@ public class QRCodeUtil {
             hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
 
             BitMatrix bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, widthPix, heightPix, hints);
-            int[] pixels = new int[widthPix * heightPix];
-
-            for (int y = 0; y < heightPix; y++) {
-                for (int x = 0; x < widthPix; x++) {
-                    if (bitMatrix.get(x, y)) {
-                        pixels[y * widthPix + x] = 0xff000000;
-                    } else {
-                        pixels[y * widthPix + x] = 0xffffffff;
-                    }
-                }
-            }
+            int[] pixels = SymbolRaster.matrixPixels(bitMatrix, widthPix, heightPix);
 
             mBitmap = Bitmap.createBitmap(widthPix, heightPix, Bitmap.Config.ARGB_8888);
             mBitmap.setPixels(pixels, 0, widthPix, 0, 0, widthPix, heightPix);
@@ -55,12 +64,91 @@ public class QRCodeUtil {
             }
 
         } catch (WriterException e) {
-            e.printStackTrace();
+            PrinterLog.e(TAG, "Cannot encode QR code: %s", e.getMessage());
         }
 
         return mBitmap;
     }
 
+    /**
+     * Render a QR code scaled by whole modules to at most maxSize pixels square, in RGB_565.
+     * Every module is the same number of dots wide, and the pixels are pure black or white,
+     * so the bitmap binarizes losslessly at half the size of ARGB_8888.
+     * Returns null if the content cannot be encoded.
+     */
+    public static Bitmap renderQRCode(String content, int maxSize, ErrorCorrectionLevel ecLevel) {
+        if (content == null || "".equals(content)) {
+            return null;
+        }
+
+        try {
+            byte[][] modules = SymbolRaster.qrModules(content, ecLevel);
+            int size = SymbolRaster.qrSize(modules.length, maxSize);
+
+            Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.RGB_565);
+            bitmap.eraseColor(SymbolRaster.WHITE);
+            SymbolRaster.qrRows(modules, size, rowBuffer(size), bitmapRows(bitmap));
+            return bitmap;
+        } catch (WriterException e) {
+            PrinterLog.e(TAG, "Cannot encode QR code: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Render a barcode in RGB_565; returns null if the content is not valid for the format.
+     * 1D bars are encoded once as a single row and repeated down the bitmap; 2D symbols
+     * (PDF417, Data Matrix, Aztec) are copied row by row through the same buffer.
+     */
+    public static Bitmap createBarcodeImage(String content, BarcodeFormat format, int widthPix, int heightPix) {
+        if (content == null || "".equals(content)) {
+            return null;
+        }
+
+        try {
+            boolean oneDimensional = isOneDimensional(format);
+            BitMatrix bitMatrix = new MultiFormatWriter().encode(content, format, widthPix, oneDimensional ? 1 : heightPix);
+            int width = bitMatrix.getWidth();
+            int height = oneDimensional ? Math.max(1, heightPix) : bitMatrix.getHeight();
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            SymbolRaster.barcodeRows(bitMatrix, height, oneDimensional, rowBuffer(width), bitmapRows(bitmap));
+            return bitmap;
+        } catch (WriterException | IllegalArgumentException e) {
+            PrinterLog.e(TAG, "Cannot encode %s barcode: %s", format, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isOneDimensional(BarcodeFormat format) {
+        switch (format) {
+            case QR_CODE:
+            case PDF_417:
+            case DATA_MATRIX:
+            case AZTEC:
+            case MAXICODE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static SymbolRaster.RowSink bitmapRows(Bitmap bitmap) {
+        return (row, y, width) -> bitmap.setPixels(row, 0, width, 0, y, width, 1);
+    }
+
+    /**
+     * Per-thread scratch row, grown on demand and reused across renders
+     */
+    private static int[] rowBuffer(int width) {
+        int[] row = ROW_BUFFER.get();
+        if (row == null || row.length < width) {
+            row = new int[width];
+            ROW_BUFFER.set(row);
+        }
+        return row;
+    }
+
     public static String scanningImage(Bitmap bitmap) {
         String mResult = null;
         Map<DecodeHintType, String> hints = new HashMap<DecodeHintType, String>();
@@ -82,12 +170,8 @@ public class QRCodeUtil {
                 if (result != null) {
                     mResult = result.getText();
                 }
-            } catch (NotFoundException e) {
-                e.printStackTrace();
-            } catch (ChecksumException e) {
-                e.printStackTrace();
-            } catch (FormatException e) {
-                e.printStackTrace();
+            } catch (NotFoundException | ChecksumException | FormatException e) {
+                PrinterLog.e(TAG, "Cannot decode QR code: %s", e.getClass().getSimpleName());
             }
         }
 
@@ -128,7 +212,7 @@ public class QRCodeUtil {
             canvas.restore();
         } catch (Exception e) {
             bitmap = null;
-            e.printStackTrace();
+            PrinterLog.e(TAG, "Cannot add logo: %s", e.getMessage());
         }
 
         return bitmap;
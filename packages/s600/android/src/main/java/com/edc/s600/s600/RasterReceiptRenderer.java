@@ -0,0 +1,408 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * RasterReceiptRenderer - lays a receipt out with Canvas and streams it to printBmp in bands
+ * Items are expanded into rows lazily and drawn into one of two fixed-height band
+ * bitmaps; while the service prints one band the next is drawn into the other, so
+ * memory stays at two bands however long the receipt is. Paints (and with them the
+ * platform's glyph caches) and wrapped text lines are cached across receipts.
+ * Used from the print worker thread only
+ */
+class RasterReceiptRenderer {
+  // 384 x 256 RGB_565 is 192 KB per band, well under the 1 MB binder transaction buffer
+  static final int BAND_HEIGHT = 256;
+
+  // Wrapped-line layouts kept for repeated text (headers, separators, footers)
+  private static final int LINE_CACHE_SIZE = 256;
+
+  private static final int DEFAULT_FONT_SIZE = ReceiptItem.DEFAULT_FONT_SIZE;
+
+  /**
+   * A band failed to print or was never acknowledged
+   */
+  static final class BandPrintException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    final int errorCode;
+
+    BandPrintException(String message, int errorCode) {
+      super(message);
+      this.errorCode = errorCode;
+    }
+  }
+
+  /**
+   * A horizontal strip of the receipt, drawn at a band-relative top
+   */
+  private interface Row {
+    int height();
+
+    void draw(Canvas canvas, int top);
+  }
+
+  /**
+   * Paint plus its metrics, shared by every row with the same font
+   */
+  private static final class TextStyle {
+    final Paint paint;
+    final int ascent;
+    final int lineHeight;
+
+    TextStyle(int fontSize, boolean bold) {
+      // No anti-aliasing: grey edge pixels only blur on a thermal head
+      paint = new Paint();
+      paint.setColor(Color.BLACK);
+      paint.setTextSize(fontSize);
+      paint.setTypeface(bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+      Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+      ascent = metrics.ascent;
+      lineHeight = metrics.descent - metrics.ascent;
+    }
+  }
+
+  private static final class PlacedRow {
+    final Row row;
+    final int top;
+
+    PlacedRow(Row row, int top) {
+      this.row = row;
+      this.top = top;
+    }
+  }
+
+  private final ReceiptCompiler compiler;
+  private final int paperWidth;
+  private final Map<String, TextStyle> styles = new HashMap<>();
+  private final LruCache<String, List<String>> lineCache = new LruCache<>(LINE_CACHE_SIZE);
+
+  RasterReceiptRenderer(ReceiptCompiler compiler, int paperWidth) {
+    this.compiler = compiler;
+    this.paperWidth = paperWidth;
+  }
+
+  /**
+   * Render and send every band, waiting for each acknowledgement before its buffer is reused.
+   * The caller finishes the job with prnStart/printClose. Returns band statistics.
+   * Stops before the next band once stop is set; the caller checks it before finishing.
+   */
+  Map<String, Object> print(AidlPrinter printer, List<Map<String, Object>> items, long ackTimeoutMs,
+      PrintJobScheduler.StopSignal stop) throws RemoteException, InterruptedException, BandPrintException {
+    long start = SystemClock.elapsedRealtime();
+    Iterator<Row> rows = new RowIterator(items);
+    ArrayDeque<PlacedRow> active = new ArrayDeque<>();
+    Bitmap[] buffers = new Bitmap[2];
+    Canvas[] canvases = new Canvas[2];
+    PrintCompletion pending = null;
+    long renderMs = 0;
+    int cursor = 0;
+    int bandTop = 0;
+    int bands = 0;
+
+    while (!stop.isStopRequested()) {
+      int bandBottom = bandTop + BAND_HEIGHT;
+      while (cursor < bandBottom && rows.hasNext()) {
+        Row row = rows.next();
+        active.add(new PlacedRow(row, cursor));
+        cursor += row.height();
+      }
+      if (active.isEmpty()) {
+        break;
+      }
+
+      long renderStart = SystemClock.elapsedRealtime();
+      int slot = bands % 2;
+      int height = Math.min(BAND_HEIGHT, cursor - bandTop);
+      Bitmap out;
+      PrinterTrace.begin("S600 render band");
+      try {
+        if (buffers[slot] == null) {
+          buffers[slot] = Bitmap.createBitmap(paperWidth, BAND_HEIGHT, Bitmap.Config.RGB_565);
+          canvases[slot] = new Canvas(buffers[slot]);
+        }
+        Bitmap band = buffers[slot];
+        band.eraseColor(Color.WHITE);
+        for (PlacedRow placed : active) {
+          placed.row.draw(canvases[slot], placed.top - bandTop);
+        }
+        while (!active.isEmpty() && active.peekFirst().top + active.peekFirst().row.height() <= bandBottom) {
+          active.pollFirst();
+        }
+        out = height == BAND_HEIGHT ? band : Bitmap.createBitmap(band, 0, 0, paperWidth, height);
+      } finally {
+        PrinterTrace.end();
+      }
+      renderMs += SystemClock.elapsedRealtime() - renderStart;
+
+      // This band was drawn while the previous one printed; only now wait for that one
+      awaitBand(pending, bands - 1, ackTimeoutMs);
+      pending = new PrintCompletion();
+      printer.printBmp(0, paperWidth, height, out, pending);
+      bands++;
+      bandTop = bandBottom;
+    }
+    awaitBand(pending, bands - 1, ackTimeoutMs);
+
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("bands", bands);
+    stats.put("heightDots", cursor);
+    stats.put("renderMs", renderMs);
+    stats.put("elapsedMs", SystemClock.elapsedRealtime() - start);
+    return stats;
+  }
+
+  /**
+   * Wait for a printBmp acknowledgement; also used by ImagePrinter for its strips
+   */
+  static void awaitBand(PrintCompletion completion, int band, long timeoutMs)
+      throws InterruptedException, BandPrintException {
+    if (completion == null) {
+      return;
+    }
+    if (!completion.await(timeoutMs)) {
+      throw new BandPrintException("Band " + band + " was not acknowledged within " + timeoutMs + "ms", -1);
+    }
+    if (!completion.isSuccess()) {
+      throw new BandPrintException("Band " + band + " failed", completion.getErrorCode());
+    }
+  }
+
+  private TextStyle style(int fontSize, boolean bold) {
+    String key = fontSize + (bold ? "b" : "r");
+    TextStyle style = styles.get(key);
+    if (style == null) {
+      style = new TextStyle(fontSize, bold);
+      styles.put(key, style);
+    }
+    return style;
+  }
+
+  /**
+   * Wrap a paragraph at the paper edge, reusing the layout of text seen before
+   */
+  private List<String> lines(String text, TextStyle style, int fontSize, boolean bold) {
+    String key = fontSize + (bold ? "b:" : "r:") + text;
+    List<String> lines = lineCache.get(key);
+    if (lines != null) {
+      return lines;
+    }
+
+    lines = new ArrayList<>();
+    for (String paragraph : text.split("\n", -1)) {
+      int start = 0;
+      do {
+        int count = style.paint.breakText(paragraph, start, paragraph.length(), true, paperWidth, null);
+        if (count <= 0) {
+          count = paragraph.length() - start;
+        }
+        lines.add(paragraph.substring(start, start + count));
+        start += count;
+      } while (start < paragraph.length());
+    }
+    lineCache.put(key, lines);
+    return lines;
+  }
+
+  private int alignedX(Paint.Align align, float contentWidth, int left, int width) {
+    if (align == Paint.Align.CENTER) {
+      return left + (int) ((width - contentWidth) / 2);
+    }
+    if (align == Paint.Align.RIGHT) {
+      return left + (int) (width - contentWidth);
+    }
+    return left;
+  }
+
+  private Row textRow(String line, TextStyle style, Paint.Align align) {
+    return new Row() {
+      @Override
+      public int height() {
+        return style.lineHeight;
+      }
+
+      @Override
+      public void draw(Canvas canvas, int top) {
+        int x = alignedX(align, style.paint.measureText(line), 0, paperWidth);
+        canvas.drawText(line, x, top - style.ascent, style.paint);
+      }
+    };
+  }
+
+  private Row bitmapRow(Bitmap bitmap, Paint.Align align) {
+    int x = alignedX(align, bitmap.getWidth(), 0, paperWidth);
+    return new Row() {
+      @Override
+      public int height() {
+        return bitmap.getHeight();
+      }
+
+      @Override
+      public void draw(Canvas canvas, int top) {
+        canvas.drawBitmap(bitmap, x, top, null);
+      }
+    };
+  }
+
+  private Row spaceRow(int height) {
+    return new Row() {
+      @Override
+      public int height() {
+        return height;
+      }
+
+      @Override
+      public void draw(Canvas canvas, int top) {
+        // Blank; the band is already white
+      }
+    };
+  }
+
+  /**
+   * One line of text columns sized by weight; each cell is cut at its column edge
+   */
+  private Row columnsRow(List<Map<String, Object>> columns, TextStyle style) {
+    float totalWeight = 0;
+    for (Map<String, Object> column : columns) {
+      totalWeight += weight(column);
+    }
+
+    int count = columns.size();
+    String[] texts = new String[count];
+    Paint.Align[] aligns = new Paint.Align[count];
+    int[] lefts = new int[count];
+    int[] widths = new int[count];
+    int left = 0;
+    for (int i = 0; i < count; i++) {
+      Map<String, Object> column = columns.get(i);
+      int width = i == count - 1 ? paperWidth - left : (int) (paperWidth * weight(column) / totalWeight);
+      String text = column.get("text") != null ? column.get("text").toString() : "";
+      int fit = style.paint.breakText(text, true, width, null);
+      texts[i] = text.substring(0, fit);
+      aligns[i] = ReceiptCompiler.align((String) column.get("alignment"));
+      lefts[i] = left;
+      widths[i] = width;
+      left += width;
+    }
+
+    return new Row() {
+      @Override
+      public int height() {
+        return style.lineHeight;
+      }
+
+      @Override
+      public void draw(Canvas canvas, int top) {
+        for (int i = 0; i < texts.length; i++) {
+          int x = alignedX(aligns[i], style.paint.measureText(texts[i]), lefts[i], widths[i]);
+          canvas.drawText(texts[i], x, top - style.ascent, style.paint);
+        }
+      }
+    };
+  }
+
+  private static float weight(Map<String, Object> column) {
+    Object weight = column.get("weight");
+    return weight instanceof Number && ((Number) weight).floatValue() > 0 ? ((Number) weight).floatValue() : 1f;
+  }
+
+  /**
+   * Expands items into rows one item at a time, so only the current item's rows and bitmaps are held
+   */
+  private final class RowIterator implements Iterator<Row> {
+    private final List<Map<String, Object>> items;
+    private final ArrayDeque<Row> buffered = new ArrayDeque<>();
+    private int index = 0;
+
+    RowIterator(List<Map<String, Object>> items) {
+      this.items = items;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (buffered.isEmpty() && index < items.size()) {
+        expand(items.get(index), index);
+        index++;
+      }
+      return !buffered.isEmpty();
+    }
+
+    @Override
+    public Row next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return buffered.pollFirst();
+    }
+
+    private void expand(Map<String, Object> raw, int index) {
+      ReceiptItem item = ReceiptItem.parse(raw, index);
+      if (item == null) {
+        return;
+      }
+
+      Paint.Align align = ReceiptCompiler.align(item.alignment);
+
+      switch (item.type) {
+        case TEXT: {
+          String text = item.text;
+          if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+          }
+          TextStyle style = style(item.fontSize, item.bold);
+          for (String line : lines(text, style, item.fontSize, item.bold)) {
+            buffered.add(textRow(line, style, align));
+          }
+          break;
+        }
+        case COLUMNS: {
+          if (item.columns == null || item.columns.isEmpty()) {
+            throw new IllegalArgumentException("Columns at " + index + " has no columns");
+          }
+          buffered.add(columnsRow(item.columns, style(item.fontSize, item.bold)));
+          break;
+        }
+        case FEED_LINE:
+          buffered.add(spaceRow(item.lines * style(DEFAULT_FONT_SIZE, false).lineHeight));
+          break;
+        case QR_CODE:
+          buffered.add(bitmapRow(compiler.qrBitmap(item), symbolAlign(item)));
+          break;
+        case BARCODE: {
+          Bitmap barcode = compiler.barcodeBitmap(item);
+          if (barcode != null) {
+            buffered.add(bitmapRow(barcode, symbolAlign(item)));
+          } else {
+            buffered.add(textRow(item.data, style(DEFAULT_FONT_SIZE, false), Paint.Align.CENTER));
+          }
+          break;
+        }
+        case IMAGE:
+          buffered.add(bitmapRow(compiler.imageBitmap(item), symbolAlign(item)));
+          break;
+      }
+    }
+
+    // Codes and images are centred unless the item says otherwise
+    private Paint.Align symbolAlign(ReceiptItem item) {
+      return item.alignment != null ? ReceiptCompiler.align(item.alignment) : Paint.Align.CENTER;
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.edc.s600.s600;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.printer.PrintItemObj;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * RawChunkSender - sends raw-byte chunks using the strategy memoized in PrinterCapabilities
+ * Only falls back to the other strategies when the remembered one fails, and
+ * remembers whichever one succeeds instead
+ */
+class RawChunkSender {
+  private static final String TAG = "RawChunkSender";
+
+  private final AidlPrinter printer;
+  private final PrinterCapabilities capabilities;
+  private final long ackTimeoutMs;
+
+  RawChunkSender(AidlPrinter printer, PrinterCapabilities capabilities, long ackTimeoutMs) {
+    this.printer = printer;
+    this.capabilities = capabilities;
+    this.ackTimeoutMs = ackTimeoutMs;
+  }
+
+  /**
+   * Send data[offset, offset + length). Returns false if no strategy succeeded.
+   */
+  boolean send(byte[] data, int offset, int length) throws InterruptedException {
+    for (PrinterCapabilities.RawSendStrategy strategy : capabilities.rawStrategies()) {
+      boolean sent;
+      try {
+        sent = send(strategy, data, offset, length);
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        PrinterLog.d(TAG, "%s failed: %s", strategy, e.getMessage());
+        sent = false;
+      }
+
+      if (sent) {
+        capabilities.rememberRawStrategy(strategy);
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Strategy that sent the last chunk, or null before the first success
+   */
+  PrinterCapabilities.RawSendStrategy getStrategy() {
+    return capabilities.getRawStrategy();
+  }
+
+  private boolean send(PrinterCapabilities.RawSendStrategy strategy, byte[] data, int offset, int length)
+      throws Exception {
+    switch (strategy) {
+      case TEXT_LATIN1: {
+        ArrayList<PrintItemObj> items = new ArrayList<>();
+        items.add(new PrintItemObj(new String(data, offset, length, StandardCharsets.ISO_8859_1)));
+        return awaitPrintText(items);
+      }
+
+      case PRINT_ITEM_RAW_BYTES: {
+        PrintItemObj rawItem = new PrintItemObj("");
+        capabilities.setRawBytesMethod.invoke(rawItem, (Object) Arrays.copyOfRange(data, offset, offset + length));
+        ArrayList<PrintItemObj> items = new ArrayList<>();
+        items.add(rawItem);
+        return awaitPrintText(items);
+      }
+
+      case DIRECT_COMMAND: {
+        Object methodResult = capabilities.directCommandMethod.invoke(printer,
+            (Object) Arrays.copyOfRange(data, offset, offset + length));
+        // If the method doesn't return a boolean, assume success if no exception
+        return !(methodResult instanceof Boolean) || (Boolean) methodResult;
+      }
+
+      default:
+        return false;
+    }
+  }
+
+  private boolean awaitPrintText(ArrayList<PrintItemObj> items) throws Exception {
+    PrintCompletion completion = new PrintCompletion();
+    printer.printText(items, completion);
+    return completion.await(ackTimeoutMs) && completion.isSuccess();
+  }
+}
@@ -0,0 +1,32 @@
+package com.edc.s600.s600;
+
+import java.util.List;
+
+/**
+ * RawPayload - decoding of the byte arguments sent over the method channel
+ * Kept free of Android and SDK types so the benchmark module can compile it as is
+ */
+class RawPayload {
+  private RawPayload() {
+  }
+
+  /**
+   * Accept raw bytes as a Uint8List (byte[]), falling back to the legacy List<int> encoding
+   */
+  static byte[] toByteArray(Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      byte[] bytes = new byte[list.size()];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = ((Number) list.get(i)).byteValue();
+      }
+      return bytes;
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,155 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Paint;
+
+import com.kp.ktsdkservice.data.PrinterConstant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReceiptCompiler - turns the item maps sent by Dart's printReceipt into a ReceiptProgram
+ * Left-aligned regular text goes through prnStr; bold or aligned text, QR codes,
+ * barcodes and images become bitmaps for prnBitmap. Symbols come from the shared
+ * SymbolCache. Throws IllegalArgumentException for items it cannot print
+ */
+class ReceiptCompiler {
+  private final SymbolCache symbolCache;
+  private final int paperWidth;
+
+  ReceiptCompiler(SymbolCache symbolCache, int paperWidth) {
+    this.symbolCache = symbolCache;
+    this.paperWidth = paperWidth;
+  }
+
+  ReceiptProgram compile(List<Map<String, Object>> items) {
+    List<ReceiptProgram.Step> steps = new ArrayList<>();
+    PrinterTrace.begin("S600 compile receipt");
+    try {
+      for (int i = 0; i < items.size(); i++) {
+        ReceiptProgram.Step step = compileItem(items.get(i), i);
+        if (step != null) {
+          steps.add(step);
+        }
+      }
+    } finally {
+      PrinterTrace.end();
+    }
+    return new ReceiptProgram(steps);
+  }
+
+  /**
+   * Compile one item; returns null for items without a type, which are skipped
+   */
+  ReceiptProgram.Step compileItem(Map<String, Object> item, int index) {
+    ReceiptItem parsed = ReceiptItem.parse(item, index);
+    return parsed != null ? compile(parsed) : null;
+  }
+
+  ReceiptProgram.Step compile(ReceiptItem item) {
+    switch (item.type) {
+      case TEXT:
+        return text(item.text, item.fontSize, item.bold, align(item.alignment));
+      case FEED_LINE:
+        return ReceiptProgram.feed(item.lines);
+      case QR_CODE:
+        return ReceiptProgram.bitmap(qrBitmap(item));
+      case BARCODE: {
+        Bitmap bitmap = barcodeBitmap(item);
+        // Types ZXing cannot write are printed as their data
+        return bitmap != null ? ReceiptProgram.bitmap(bitmap) : text(item.data, 24, false, Paint.Align.CENTER);
+      }
+      case IMAGE:
+        return ReceiptProgram.bitmap(imageBitmap(item));
+      default:
+        // Columns are laid out by RasterReceiptRenderer only
+        throw new IllegalArgumentException("Columns at " + item.index + " need rasterize: true");
+    }
+  }
+
+  ReceiptProgram.Step text(String text, int fontSize, boolean bold, Paint.Align align) {
+    if (!bold && align == Paint.Align.LEFT) {
+      return ReceiptProgram.text(text, fontFor(fontSize));
+    }
+    // A bitmap is a line of its own already; a trailing newline would add a blank one
+    String line = text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+    return ReceiptProgram.bitmap(TextRasterizer.render(line, fontSize, bold, align, paperWidth));
+  }
+
+  Bitmap qrBitmap(ReceiptItem item) {
+    int size = Math.min(item.size(200), paperWidth);
+    Bitmap bitmap = item.data != null
+        ? symbolCache.qrCode(item.data, size, S600Plugin.errorCorrectionLevel(item.errorCorrection))
+        : null;
+    if (bitmap == null) {
+      throw new IllegalArgumentException("QR code at " + item.index + " could not be encoded");
+    }
+    return bitmap;
+  }
+
+  /**
+   * The rendered barcode, or null if ZXing cannot write its type or content
+   */
+  Bitmap barcodeBitmap(ReceiptItem item) {
+    if (item.data == null) {
+      throw new IllegalArgumentException("Barcode at " + item.index + " has no data");
+    }
+
+    // The firmware's printBarCode cannot join a prnInit/prnStart transaction, so barcodes are rendered here
+    BarcodeSymbology symbology = BarcodeSymbology.from(item.barcodeType);
+    int width = Math.min(item.width(paperWidth), paperWidth);
+    int height = item.height(100);
+    return symbology != null && symbology.zxingFormat != null
+        ? symbolCache.barcode(item.data, symbology.zxingFormat, width, height)
+        : null;
+  }
+
+  Bitmap imageBitmap(ReceiptItem item) {
+    byte[] bytes = item.bytes;
+    Bitmap decoded = bytes != null ? BitmapFactory.decodeByteArray(bytes, 0, bytes.length) : null;
+    if (decoded == null) {
+      throw new IllegalArgumentException("Image at " + item.index + " could not be decoded");
+    }
+
+    int width = Math.min(item.width(decoded.getWidth()), paperWidth);
+    int height = item.hasHeight()
+        ? item.height(decoded.getHeight())
+        : Math.max(1, decoded.getHeight() * width / decoded.getWidth());
+    if (width == decoded.getWidth() && height == decoded.getHeight()) {
+      return decoded;
+    }
+
+    Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+    decoded.recycle();
+    return scaled;
+  }
+
+  static Paint.Align align(String alignment) {
+    if ("center".equals(alignment)) {
+      return Paint.Align.CENTER;
+    }
+    if ("right".equals(alignment)) {
+      return Paint.Align.RIGHT;
+    }
+    return Paint.Align.LEFT;
+  }
+
+  /**
+   * Map a point size to the nearest font prnFontSet understands
+   */
+  static int fontFor(int fontSize) {
+    if (fontSize <= 16) {
+      return PrinterConstant.FontSize.SMALL;
+    }
+    if (fontSize <= 24) {
+      return PrinterConstant.FontSize.NORMAL;
+    }
+    if (fontSize <= 32) {
+      return PrinterConstant.FontSize.LARGE;
+    }
+    return PrinterConstant.FontSize.XLARGE;
+  }
+}
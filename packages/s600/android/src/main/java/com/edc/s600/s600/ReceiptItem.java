@@ -0,0 +1,120 @@
+package com.edc.s600.s600;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReceiptItem - one printReceipt item map, read and validated once
+ * Both ReceiptCompiler and RasterReceiptRenderer work from this instead of the raw
+ * map. It has no Android types, so the benchmark module can parse receipts off-device
+ */
+final class ReceiptItem {
+  static final int DEFAULT_FONT_SIZE = 24;
+
+  enum Type {
+    TEXT,
+    COLUMNS,
+    FEED_LINE,
+    QR_CODE,
+    BARCODE,
+    IMAGE;
+
+    static Type from(String value, int index) {
+      switch (value) {
+        case "text":
+          return TEXT;
+        case "columns":
+          return COLUMNS;
+        case "feedLine":
+          return FEED_LINE;
+        case "qrCode":
+          return QR_CODE;
+        case "barcode":
+          return BARCODE;
+        case "image":
+          return IMAGE;
+        default:
+          throw new IllegalArgumentException("Unknown receipt item type at " + index + ": " + value);
+      }
+    }
+  }
+
+  final Type type;
+  final int index;
+  final String text;
+  final boolean bold;
+  final int fontSize;
+  // "left", "center", "right", or null when the item does not say
+  final String alignment;
+  final int lines;
+  final String data;
+  final String errorCorrection;
+  final String barcodeType;
+  final byte[] bytes;
+  final List<Map<String, Object>> columns;
+  private final Number size;
+  private final Number width;
+  private final Number height;
+
+  @SuppressWarnings("unchecked")
+  private ReceiptItem(Type type, int index, Map<String, Object> item) {
+    this.type = type;
+    this.index = index;
+    this.text = item.get("text") != null ? item.get("text").toString() : "";
+    this.bold = "bold".equals(item.get("style"));
+    this.fontSize = intValue(item.get("fontSize"), DEFAULT_FONT_SIZE);
+    this.alignment = item.get("alignment") instanceof String ? (String) item.get("alignment") : null;
+    this.lines = intValue(item.get("lines"), 1);
+    this.data = (String) item.get("data");
+    this.errorCorrection = (String) item.get("errorCorrection");
+    this.barcodeType = (String) item.get("barcodeType");
+    this.bytes = type == Type.IMAGE ? RawPayload.toByteArray(item.get("bytes")) : null;
+    this.columns = type == Type.COLUMNS ? (List<Map<String, Object>>) item.get("columns") : null;
+    this.size = number(item.get("size"));
+    this.width = number(item.get("width"));
+    this.height = number(item.get("height"));
+  }
+
+  /**
+   * Parse one item; returns null for items without a type, which are skipped.
+   * Throws IllegalArgumentException for a type nothing can print.
+   */
+  static ReceiptItem parse(Map<String, Object> item, int index) {
+    String type = item != null ? (String) item.get("type") : null;
+    if (type == null) {
+      return null;
+    }
+    return new ReceiptItem(Type.from(type, index), index, item);
+  }
+
+  /**
+   * Left-aligned regular text, which prnStr prints without rendering a bitmap
+   */
+  boolean isPlainText() {
+    return type == Type.TEXT && !bold && (alignment == null || "left".equals(alignment));
+  }
+
+  int size(int fallback) {
+    return size != null ? size.intValue() : fallback;
+  }
+
+  int width(int fallback) {
+    return width != null ? width.intValue() : fallback;
+  }
+
+  boolean hasHeight() {
+    return height != null;
+  }
+
+  int height(int fallback) {
+    return height != null ? height.intValue() : fallback;
+  }
+
+  static int intValue(Object value, int fallback) {
+    return value instanceof Number ? ((Number) value).intValue() : fallback;
+  }
+
+  private static Number number(Object value) {
+    return value instanceof Number ? (Number) value : null;
+  }
+}
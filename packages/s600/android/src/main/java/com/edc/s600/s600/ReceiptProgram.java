@@ -0,0 +1,107 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.os.RemoteException;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ReceiptProgram - a receipt reduced to a flat list of prnStr/prnBitmap steps
+ * Running it opens one printer transaction with prnInit, replays the steps and
+ * prints everything with a single prnStart, so a receipt costs one paper cycle
+ * regardless of how many items it has
+ */
+class ReceiptProgram {
+  /**
+   * One printer call inside the transaction
+   */
+  interface Step {
+    void run(Session session) throws RemoteException;
+  }
+
+  /**
+   * Printer plus the font last set, so consecutive text steps skip redundant prnFontSet calls
+   */
+  static final class Session {
+    final AidlPrinter printer;
+    private int font = -1;
+
+    Session(AidlPrinter printer) {
+      this.printer = printer;
+    }
+
+    void font(int size) throws RemoteException {
+      if (size != font) {
+        printer.prnFontSet(size, size);
+        font = size;
+      }
+    }
+  }
+
+  static Step text(String text, int font) {
+    // prnStr does not end the line by itself
+    String line = text.endsWith("\n") ? text : text + "\n";
+    return session -> {
+      session.font(font);
+      session.printer.prnStr(line);
+    };
+  }
+
+  static Step bitmap(Bitmap bitmap) {
+    return session -> session.printer.prnBitmap(bitmap);
+  }
+
+  static Step feed(int lines) {
+    StringBuilder feed = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      feed.append("\n");
+    }
+    String text = feed.toString();
+    return session -> session.printer.prnStr(text);
+  }
+
+  private final List<Step> steps;
+
+  ReceiptProgram(List<Step> steps) {
+    this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+  }
+
+  int size() {
+    return steps.size();
+  }
+
+  /**
+   * Buffer every step and print them in one go. prnStart returns once the paper has moved.
+   */
+  void run(AidlPrinter printer) throws RemoteException {
+    run(printer, false, PrintJobScheduler.StopSignal.NONE);
+  }
+
+  /**
+   * Like run(printer), but checks stop before every step. Returns false without calling
+   * prnStart once it is set, leaving the open transaction for the caller to close.
+   * engineOpen skips prnInit, for a printer session that kept the engine open after the
+   * last job.
+   */
+  boolean run(AidlPrinter printer, boolean engineOpen, PrintJobScheduler.StopSignal stop) throws RemoteException {
+    Session session = new Session(printer);
+    if (!engineOpen) {
+      printer.prnInit();
+    }
+    for (Step step : steps) {
+      if (stop.isStopRequested()) {
+        return false;
+      }
+      step.run(session);
+    }
+    if (stop.isStopRequested()) {
+      return false;
+    }
+    printer.prnStart();
+    return true;
+  }
+}
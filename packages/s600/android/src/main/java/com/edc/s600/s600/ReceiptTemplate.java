@@ -0,0 +1,159 @@
+package com.edc.s600.s600;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ReceiptTemplate - a receipt layout compiled once and printed many times
+ * Items without {{variables}} are compiled to their final prnStr/prnBitmap step at
+ * registration, so headers, logos and legal text are never parsed or rendered
+ * again. Items with variables keep their string fields pre-split into literal and
+ * variable parts and are only compiled with the values of each print
+ */
+class ReceiptTemplate {
+  private static final Pattern VARIABLE = Pattern.compile("\\{\\{\\s*([A-Za-z0-9_.]+)\\s*\\}\\}");
+
+  /**
+   * Produces the step for one item given the values of a print
+   */
+  private interface Slot {
+    ReceiptProgram.Step bind(Map<String, Object> values);
+  }
+
+  /**
+   * A string field split at its variables: literal, variable, literal, ...
+   */
+  private static final class Binding {
+    private final String[] literals;
+    private final String[] variables;
+
+    Binding(String[] literals, String[] variables) {
+      this.literals = literals;
+      this.variables = variables;
+    }
+
+    String render(Map<String, Object> values) {
+      StringBuilder out = new StringBuilder(literals[0]);
+      for (int i = 0; i < variables.length; i++) {
+        Object value = values != null ? values.get(variables[i]) : null;
+        if (value == null) {
+          throw new IllegalArgumentException("Missing template variable: " + variables[i]);
+        }
+        out.append(value).append(literals[i + 1]);
+      }
+      return out.toString();
+    }
+  }
+
+  final String id;
+  private final List<Slot> slots;
+  private final Set<String> variables;
+  private final int staticItems;
+
+  private ReceiptTemplate(String id, List<Slot> slots, Set<String> variables, int staticItems) {
+    this.id = id;
+    this.slots = slots;
+    this.variables = Collections.unmodifiableSet(variables);
+    this.staticItems = staticItems;
+  }
+
+  /**
+   * Compile a template. Throws IllegalArgumentException for items the compiler rejects.
+   */
+  static ReceiptTemplate compile(String id, List<Map<String, Object>> items, ReceiptCompiler compiler) {
+    List<Slot> slots = new ArrayList<>();
+    Set<String> variables = new LinkedHashSet<>();
+    int staticItems = 0;
+
+    for (int i = 0; i < items.size(); i++) {
+      Map<String, Object> item = items.get(i);
+      if (item == null) {
+        continue;
+      }
+
+      Map<String, Binding> bindings = new HashMap<>();
+      for (Map.Entry<String, Object> field : item.entrySet()) {
+        if (field.getValue() instanceof String) {
+          Binding binding = parse((String) field.getValue(), variables);
+          if (binding != null) {
+            bindings.put(field.getKey(), binding);
+          }
+        }
+      }
+
+      final int index = i;
+      if (bindings.isEmpty()) {
+        // Fully static: compile and render now, replay the same step on every print
+        ReceiptProgram.Step step = compiler.compileItem(item, index);
+        if (step != null) {
+          slots.add(values -> step);
+          staticItems++;
+        }
+      } else {
+        final Map<String, Object> base = new HashMap<>(item);
+        slots.add(values -> {
+          Map<String, Object> bound = new HashMap<>(base);
+          for (Map.Entry<String, Binding> field : bindings.entrySet()) {
+            bound.put(field.getKey(), field.getValue().render(values));
+          }
+          return compiler.compileItem(bound, index);
+        });
+      }
+    }
+
+    return new ReceiptTemplate(id, slots, variables, staticItems);
+  }
+
+  /**
+   * Split a string at its {{variables}}, or return null if it has none
+   */
+  private static Binding parse(String value, Set<String> variables) {
+    Matcher matcher = VARIABLE.matcher(value);
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    int last = 0;
+    while (matcher.find()) {
+      literals.add(value.substring(last, matcher.start()));
+      names.add(matcher.group(1));
+      last = matcher.end();
+    }
+
+    if (names.isEmpty()) {
+      return null;
+    }
+
+    literals.add(value.substring(last));
+    variables.addAll(names);
+    return new Binding(literals.toArray(new String[0]), names.toArray(new String[0]));
+  }
+
+  /**
+   * Build the program for one print. Throws IllegalArgumentException if a variable is missing.
+   */
+  ReceiptProgram bind(Map<String, Object> values) {
+    List<ReceiptProgram.Step> steps = new ArrayList<>(slots.size());
+    for (Slot slot : slots) {
+      ReceiptProgram.Step step = slot.bind(values);
+      if (step != null) {
+        steps.add(step);
+      }
+    }
+    return new ReceiptProgram(steps);
+  }
+
+  Map<String, Object> describe() {
+    Map<String, Object> info = new HashMap<>();
+    info.put("templateId", id);
+    info.put("items", slots.size());
+    info.put("staticItems", staticItems);
+    info.put("variables", new ArrayList<>(variables));
+    return info;
+  }
+}
@@ -1,35 +1,48 @@
 package com.edc.s600.s600;
 
-import android.content.ComponentName;
 import android.content.Context;
-import android.content.Intent;
-import android.content.ServiceConnection;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.DeadObjectException;
 import android.os.Handler;
-import android.os.IBinder;
 import android.os.Looper;
 import android.os.RemoteException;
-import android.util.Log;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.kp.ktsdkservice.data.PrinterConstant;
 import com.kp.ktsdkservice.printer.AidlPrinter;
 import com.kp.ktsdkservice.printer.AidlPrinterListener;
 import com.kp.ktsdkservice.printer.PrintItemObj;
 import com.kp.ktsdkservice.service.AidlDeviceService;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler;
 import io.flutter.plugin.common.MethodChannel.Result;
+import io.flutter.plugin.common.StandardMessageCodec;
+import io.flutter.plugin.common.StandardMethodCodec;
 
 /** 
  * S600Plugin - Flutter plugin for S600 thermal printers
@@ -38,35 +51,130 @@ import io.flutter.plugin.common.MethodChannel.Result;
 public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAware {
   private static final String TAG = "S600Plugin";
   
-  // KTP SDK service package and class names
-  private static final String PACKAGE_NAME = "com.kp.ktsdkservice";
-  private static final String CLASS_NAME = "com.kp.ktsdkservice.service.DeviceService";
+  // Manifest meta-data flag that makes the plugin bind to the printer service at engine attach
+  private static final String EAGER_BIND_META_DATA = "com.edc.s600.EAGER_BIND";
+  
+  // How long initPrinter waits for the service to connect unless the caller says otherwise
+  private static final long DEFAULT_INIT_TIMEOUT_MS = 5000;
+  
+  // Upper bound on waiting for the service to acknowledge a raw-byte chunk
+  private static final long CHUNK_ACK_TIMEOUT_MS = 5000;
+  
+  // Adaptive raw printing samples getPrinterState every this many chunks
+  private static final int STATE_SAMPLE_INTERVAL = 16;
+  
+  // Printable width of the 58 mm head in dots
+  private static final int PAPER_WIDTH_DOTS = 384;
+  
+  // Calls written to the spool so they survive process death and paper-out
+  private static final Set<String> SPOOLED_METHODS = new HashSet<>(Arrays.asList(
+      "printText", "printQRCode", "printBarcode", "printReceipt", "printRawBytes", "feedPaper", "printImage"));
+  
+  private static final String SPOOL_FILE = "s600-print-spool.log";
+  
+  // Spooled by reference rather than encoded with the other arguments: the payload of
+  // printRawBytes and printImage, often hundreds of KB
+  private static final String SPOOL_DATA_ARGUMENT = "bytes";
+  
+  // Replaying the spool waits this long for room when the queue is full
+  private static final long SPOOL_RESUME_RETRY_MS = 1000;
+  
+  // A session nobody prints in for this long is closed
+  private static final long DEFAULT_SESSION_IDLE_TIMEOUT_MS = 10000;
   
   // Method channel
   private MethodChannel channel;
+  private EventChannel statusChannel;
   private Context context;
   private ActivityPluginBinding activityBinding;
   
   // Printer related fields
-  private boolean isInitialized = false;
-  private String printerStatus = "unknown";
+  private volatile boolean isInitialized = false;
   private final Handler handler = new Handler(Looper.getMainLooper());
   
+  // All printer access is serialized through this scheduler
+  private final PrintJobScheduler scheduler = new PrintJobScheduler(handler::post);
+  
+  // Cached printer status, pushed to Dart over the status event channel
+  private final PrinterStatusMonitor statusMonitor = new PrinterStatusMonitor(handler, this::sampleStatus);
+  
+  // Rendered QR codes and barcodes, shared by every print method
+  private final SymbolCache symbolCache = new SymbolCache();
+  private final ReceiptCompiler receiptCompiler = new ReceiptCompiler(symbolCache, PAPER_WIDTH_DOTS);
+  private final Map<String, ReceiptTemplate> receiptTemplates = new ConcurrentHashMap<>();
+  private final RasterReceiptRenderer rasterRenderer = new RasterReceiptRenderer(receiptCompiler, PAPER_WIDTH_DOTS);
+  private final ImagePrinter imagePrinter = new ImagePrinter(PAPER_WIDTH_DOTS);
+  
+  // Latency histograms and counters for getPrinterMetrics
+  private final PrinterMetrics metrics = new PrinterMetrics();
+  
+  // Recent printer events for dumpFlightRecorder
+  private final FlightRecorder recorder = new FlightRecorder();
+  
+  // Bursts of printText and feedPaper calls, printed in one cycle when coalescing is on
+  private final PrintCoalescer coalescer = new PrintCoalescer(handler, this::scheduleBatch);
+  
+  // Unfinished print jobs on disk, replayed after a restart or once paper is back
+  private PrintSpool spool;
+  
+  // Spool entry of the job running on the print worker; only touched on that thread
+  private PrintSpool.Entry activeSpoolEntry;
+  
+  // Printer session: while open, jobs leave the engine open instead of closing it after
+  // every print. Written on the print worker only; volatile for getQueueStats.
+  private volatile boolean sessionOpen = false;
+  private volatile boolean engineLeftOpen = false;
+  private volatile long sessionIdleTimeoutMs = DEFAULT_SESSION_IDLE_TIMEOUT_MS;
+  private volatile long lastSessionPrintAt = 0;
+  private final Runnable sessionIdleCheck = this::checkSessionIdle;
+  
   // KTP SDK related fields
-  private AidlDeviceService serviceManager;
-  private AidlPrinter aidlPrinter;
+  private PrinterServiceConnection connection;
+  private volatile AidlDeviceService serviceManager;
+  private volatile AidlPrinter aidlPrinter;
+  private volatile PrinterCapabilities printerCapabilities;
 
   @Override
   public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
-    channel = new MethodChannel(flutterPluginBinding.getBinaryMessenger(), "s600");
+    BinaryMessenger messenger = flutterPluginBinding.getBinaryMessenger();
+    // Calls are decoded and dispatched on a background queue, never on the platform thread
+    BinaryMessenger.TaskQueue taskQueue = messenger.makeBackgroundTaskQueue();
+    channel = new MethodChannel(messenger, "s600", StandardMethodCodec.INSTANCE, taskQueue);
     channel.setMethodCallHandler(this);
+    statusChannel = new EventChannel(flutterPluginBinding.getBinaryMessenger(), "s600/status");
+    statusChannel.setStreamHandler(statusMonitor);
     context = flutterPluginBinding.getApplicationContext();
-    Log.d(TAG, "S600Plugin attached to engine");
+    connection = new PrinterServiceConnection(context, handler, this::lookUpPrinter, connectionListener);
+    spool = new PrintSpool(new File(context.getNoBackupFilesDir(), SPOOL_FILE));
+    spool.open(entries -> {
+      recorder.record("spoolRecovered", entries + " jobs");
+      handler.post(this::resumeSpool);
+    });
+    // A job that never hears back from the service means the service is hung
+    scheduler.setTimeoutListener(job -> {
+      recorder.record("jobTimeout", job.name + " #" + job.id);
+      handler.post(() -> connection.reconnect("job " + job.id + " timed out"));
+    });
+    scheduler.setCompletionListener((job, waitNanos, runNanos, errorCode) -> {
+      metrics.recordJob(job.name, waitNanos, runNanos, errorCode, job.getRequeues());
+      recorder.record("jobEnd", job.name + " #" + job.id + " " + (errorCode != null ? errorCode : "ok")
+          + " " + TimeUnit.NANOSECONDS.toMillis(runNanos) + "ms");
+    });
+    // A cancelled or expired job has stopped mid-transaction; close it so the next job starts clean
+    scheduler.setAbortListener(job -> {
+      recorder.record("jobStopped", job.name + " #" + job.id + " " + job.getStopCode());
+      closeAbortedJob(job);
+    });
+    PrinterLog.d(TAG, "S600Plugin attached to engine");
+    eagerBindIfRequested();
   }
 
   @Override
   public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
-    Log.d(TAG, "Method called: " + call.method);
+    if (PrinterLog.isDebug()) {
+      PrinterLog.d(TAG, "Method called: %s", call.method);
+    }
+    recorder.record("call", call.method);
     
     switch (call.method) {
       case "getPlatformVersion":
@@ -74,11 +182,101 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
         break;
         
       case "initPrinter":
-        initPrinter(result);
+        Number timeoutMs = call.argument("timeoutMs");
+        long initTimeoutMs = timeoutMs != null ? timeoutMs.longValue() : DEFAULT_INIT_TIMEOUT_MS;
+        // The service connection is confined to the main thread; binding itself makes no AIDL call
+        handler.post(() -> initPrinter(initTimeoutMs, result));
         break;
         
       case "getPrinterStatus":
-        getPrinterStatus(result);
+        // Served from the monitor's cached value, no IPC
+        result.success(statusMonitor.get());
+        break;
+        
+      case "getQueueStats":
+        Map<String, Object> queueStats = scheduler.getStats();
+        if (spool != null) {
+          queueStats.put("spool", spool.getStats());
+        }
+        queueStats.put("coalescing", coalescer.getStats());
+        Map<String, Object> sessionStats = new HashMap<>();
+        sessionStats.put("open", sessionOpen);
+        sessionStats.put("engineOpen", engineLeftOpen);
+        sessionStats.put("idleTimeoutMs", sessionIdleTimeoutMs);
+        queueStats.put("session", sessionStats);
+        result.success(queueStats);
+        break;
+        
+      case "cancelJob":
+        String cancelJobId = call.argument("jobId");
+        
+        if (cancelJobId == null) {
+          result.error("INVALID_ARGUMENT", "Job ID cannot be null", null);
+          return;
+        }
+        
+        int cancelled = scheduler.cancel(cancelJobId) + (spool != null ? spool.discard(cancelJobId) : 0);
+        result.success(cancelled > 0);
+        break;
+        
+      case "setCoalescing":
+        Number windowMs = call.argument("windowMs");
+        
+        if (windowMs == null || windowMs.longValue() < 0) {
+          result.error("INVALID_ARGUMENT", "Window must be 0 or more milliseconds", null);
+          return;
+        }
+        
+        coalescer.setWindowMs(windowMs.longValue());
+        result.success(true);
+        break;
+        
+      case "flush":
+        result.success(coalescer.flush());
+        break;
+        
+      case "beginSession":
+        Number idleTimeoutMs = call.argument("idleTimeoutMs");
+        long sessionTimeoutMs = idleTimeoutMs != null ? idleTimeoutMs.longValue() : DEFAULT_SESSION_IDLE_TIMEOUT_MS;
+        
+        if (sessionTimeoutMs <= 0) {
+          result.error("INVALID_ARGUMENT", "Idle timeout must be positive", null);
+          return;
+        }
+        
+        // Queued like a print, so it takes effect after the jobs submitted before it
+        schedule("beginSession", call, result, job -> beginSession(sessionTimeoutMs, job));
+        break;
+        
+      case "endSession":
+        schedule("endSession", call, result, job -> job.success(endSession("endSession")));
+        break;
+        
+      case "getSymbolCacheStats":
+        result.success(symbolCache.getStats());
+        break;
+        
+      case "getPrinterMetrics":
+        Map<String, Object> snapshot = metrics.snapshot();
+        if (Boolean.TRUE.equals(call.argument("reset"))) {
+          metrics.reset();
+        }
+        result.success(snapshot);
+        break;
+        
+      case "dumpFlightRecorder":
+        Integer limit = call.argument("limit");
+        result.success(recorder.dump(limit != null ? limit : 0));
+        break;
+        
+      case "setLogLevel":
+        int level = PrinterLog.levelFrom(call.argument("level"));
+        if (level < 0) {
+          result.error("INVALID_ARGUMENT", "Unknown log level: " + call.argument("level"), null);
+          return;
+        }
+        PrinterLog.setLevel(level);
+        result.success(true);
         break;
         
       case "printText":
@@ -92,24 +290,29 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
           return;
         }
         
-        printText(text, alignment, style, fontSize, result);
+        if (coalesce("printText", call, textItem(text, alignment, style, fontSize), result)) {
+          break;
+        }
+        schedule("printText", call, result, job -> printText(text, alignment, style, fontSize, job));
         break;
         
       case "printQRCode":
         String qrData = call.argument("data");
         Integer size = call.argument("size");
+        ErrorCorrectionLevel ecLevel = errorCorrectionLevel(call.argument("errorCorrection"));
         
         if (qrData == null) {
           result.error("INVALID_ARGUMENT", "QR code data cannot be null", null);
           return;
         }
         
-        printQRCode(qrData, size, result);
+        schedule("printQRCode", call, result, job -> printQRCode(qrData, size, ecLevel, job));
         break;
         
       case "printBarcode":
         String barcodeData = call.argument("data");
         String type = call.argument("type");
+        Integer barcodeWidth = call.argument("width");
         Integer height = call.argument("height");
         
         if (barcodeData == null) {
@@ -117,7 +320,7 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
           return;
         }
         
-        printBarcode(barcodeData, type, height, result);
+        schedule("printBarcode", call, result, job -> printBarcode(barcodeData, type, barcodeWidth, height, job));
         break;
         
       case "printReceipt":
@@ -128,21 +331,82 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
           return;
         }
         
-        printReceipt(items, result);
+        boolean rasterize = Boolean.TRUE.equals(call.argument("rasterize"));
+        schedule("printReceipt", call, result, job -> {
+          if (rasterize) {
+            printReceiptRaster(items, job);
+          } else {
+            printReceipt(items, job);
+          }
+        });
+        break;
+        
+      case "printImage":
+        byte[] imageBytes = RawPayload.toByteArray(call.argument("bytes"));
+        Integer imageWidth = call.argument("width");
+        String imageAlignment = call.argument("alignment");
+        ImageDitherer.Mode dither = ImageDitherer.Mode.from(call.argument("dither"));
+        
+        if (imageBytes == null || imageBytes.length == 0) {
+          result.error("INVALID_ARGUMENT", "Image bytes cannot be empty", null);
+          return;
+        }
+        
+        schedule("printImage", call, result, job -> printImage(imageBytes, imageWidth != null ? imageWidth : 0,
+            imageAlignment, dither, job));
+        break;
+        
+      case "registerReceiptTemplate":
+        String newTemplateId = call.argument("templateId");
+        List<Map<String, Object>> templateItems = call.argument("items");
+        
+        if (newTemplateId == null || templateItems == null) {
+          result.error("INVALID_ARGUMENT", "Template ID and items cannot be null", null);
+          return;
+        }
+        
+        // Compiling renders the static parts, so keep it off the main thread
+        schedule("registerReceiptTemplate", call, result, job -> registerReceiptTemplate(newTemplateId, templateItems, job));
+        break;
+        
+      case "printReceiptTemplate":
+        String templateId = call.argument("templateId");
+        Map<String, Object> values = call.argument("values");
+        
+        if (templateId == null) {
+          result.error("INVALID_ARGUMENT", "Template ID cannot be null", null);
+          return;
+        }
+        
+        schedule("printReceiptTemplate", call, result, job -> printReceiptTemplate(templateId, values, job));
+        break;
+        
+      case "unregisterReceiptTemplate":
+        String oldTemplateId = call.argument("templateId");
+        result.success(oldTemplateId != null && receiptTemplates.remove(oldTemplateId) != null);
         break;
         
       case "printRawBytes":
-        List<Integer> bytes = call.argument("bytes");
+        byte[] bytes = RawPayload.toByteArray(call.argument("bytes"));
         Integer chunkSize = call.argument("chunkSize");
         Integer delayMs = call.argument("delayMs");
+        Boolean adaptive = call.argument("adaptive");
+        String rawMode = call.argument("mode");
         
         if (bytes == null) {
           result.error("INVALID_ARGUMENT", "Bytes cannot be null", null);
           return;
         }
         
-        printRawBytes(bytes, chunkSize != null ? chunkSize : 50, 
-                     delayMs != null ? delayMs : 50, result);
+        int rawChunkSize = chunkSize != null && chunkSize > 0 ? chunkSize : 50;
+        int rawDelayMs = delayMs != null ? delayMs : 0;
+        schedule("printRawBytes", call, result, job -> {
+          if (interpretRawBytes(rawMode)) {
+            printRawBytesInterpreted(bytes, rawChunkSize, job);
+          } else {
+            printRawBytes(bytes, rawChunkSize, rawDelayMs, Boolean.TRUE.equals(adaptive), job);
+          }
+        });
         break;
         
       case "feedPaper":
@@ -153,7 +417,10 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
           return;
         }
         
-        feedPaper(lines, result);
+        if (coalesce("feedPaper", call, feedItem(lines), result)) {
+          break;
+        }
+        schedule("feedPaper", call, result, job -> feedPaper(lines, job));
         break;
         
       case "setPrintDensity":
@@ -164,7 +431,7 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
           return;
         }
         
-        setPrintDensity(density, result);
+        schedule("setPrintDensity", call, result, job -> setPrintDensity(density, job));
         break;
         
       default:
@@ -174,593 +441,1383 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
   }
 
   /**
-   * Initialize the printer by binding to the KTP service
+   * Queue a printer operation in the priority lane requested by the caller, under the
+   * caller's jobId for cancelJob and with its deadlineMs, if given. Print calls are
+   * spooled first, unless this is the spool replaying one.
    */
-  private void initPrinter(Result result) {
-    if (isInitialized && aidlPrinter != null) {
-      result.success(true);
+  private void schedule(String name, MethodCall call, Result result, PrintJobScheduler.Task task) {
+    // Calls held for coalescing go first, so the printer sees everything in call order
+    coalescer.flush();
+    String priority = call.argument("priority");
+    String jobId = call.argument("jobId");
+    Number deadlineMs = call.argument("deadlineMs");
+    long deadline = deadlineMs != null ? deadlineMs.longValue() : 0;
+    
+    SpooledResult spooled = result instanceof SpooledResult ? (SpooledResult) result
+        : SPOOLED_METHODS.contains(name) ? spoolCall(name, jobId, call.arguments, result) : null;
+    if (spooled == null) {
+      schedule(name, PrintJobScheduler.Priority.from(priority), jobId, deadline, result, task);
       return;
     }
     
-    Log.d(TAG, "Initializing printer via KTP SDK...");
-    
-    try {
-      // Bind to the KTP service
-      Intent intent = new Intent();
-      intent.setClassName(PACKAGE_NAME, CLASS_NAME);
-      boolean bindSuccess = context.bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
-      
-      if (bindSuccess) {
-        Log.d(TAG, "Service binding initiated successfully");
-        
-        // Use a handler to wait for service connection
-        handler.postDelayed(() -> {
-          if (aidlPrinter != null) {
-            isInitialized = true;
-            printerStatus = "ready";
-            Log.d(TAG, "Printer initialized successfully");
-            result.success(true);
-          } else {
-            Log.e(TAG, "Failed to get printer interface after timeout");
-            result.error("INITIALIZATION_ERROR", "Failed to get printer interface", null);
+    // Whoever set a deadline on a replayed job has long been answered
+    schedule(name, PrintJobScheduler.Priority.from(priority), jobId, spooled.caller != null ? deadline : 0, spooled,
+        job -> {
+          activeSpoolEntry = spooled.entry;
+          try {
+            task.run(job);
+          } finally {
+            activeSpoolEntry = null;
           }
-        }, 2000); // Wait for 2 seconds for the service to connect
-      } else {
-        Log.e(TAG, "Failed to bind to service");
-        result.error("SERVICE_BINDING_FAILED", "Failed to bind to printer service", null);
-      }
-    } catch (Exception e) {
-      Log.e(TAG, "Error initializing printer: " + e.getMessage());
-      result.error("INITIALIZATION_ERROR", "Error initializing printer", e.getMessage());
-    }
+        });
   }
   
   /**
-   * Service connection for binding to the KTP service
+   * Hold a printText or feedPaper call for the next coalesced batch; false if it has to be
+   * printed on its own: coalescing is off, the spool is replaying it, or the caller gave it
+   * a jobId or deadlineMs of its own
    */
-  private final ServiceConnection serviceConnection = new ServiceConnection() {
-    @Override
-    public void onServiceConnected(ComponentName name, IBinder serviceBinder) {
-      Log.d(TAG, "Service connected");
-      
-      try {
-        serviceManager = AidlDeviceService.Stub.asInterface(serviceBinder);
-        aidlPrinter = AidlPrinter.Stub.asInterface(serviceManager.getPrinter());
-        Log.d(TAG, "Printer service retrieved successfully");
-      } catch (RemoteException e) {
-        Log.e(TAG, "RemoteException in service connection: " + e.getMessage());
-        e.printStackTrace();
-      }
+  private boolean coalesce(String name, MethodCall call, PrintItemObj item, Result result) {
+    if (!coalescer.isEnabled() || result instanceof SpooledResult
+        || call.argument("jobId") != null || call.argument("deadlineMs") != null) {
+      return false;
     }
     
-    @Override
-    public void onServiceDisconnected(ComponentName name) {
-      Log.d(TAG, "Service disconnected");
-      serviceManager = null;
-      aidlPrinter = null;
-      isInitialized = false;
-    }
-  };
+    SpooledResult spooled = spoolCall(name, null, call.arguments, result);
+    return coalescer.add(PrintJobScheduler.Priority.from(call.argument("priority")), name, item,
+        spooled != null ? spooled : result);
+  }
+  
+  /**
+   * Queue a coalesced batch as one job; called with the coalescer locked
+   */
+  private void scheduleBatch(PrintCoalescer.Batch batch) {
+    recorder.record("batch", batch.describe());
+    schedule("printBatch", batch.priority, batch, job -> printBatch(batch, job));
+  }
   
   /**
-   * Get the current printer status
+   * Write a call to the spool; null if there is no usable spool and the job runs unspooled.
+   * Only the small arguments are encoded here; a byte array payload goes to the spool as is.
    */
-  private void getPrinterStatus(Result result) {
-    Log.d(TAG, "Getting printer status");
+  private SpooledResult spoolCall(String name, String jobId, Object arguments, Result caller) {
+    if (spool == null) {
+      return null;
+    }
+    byte[] data = null;
+    Object rest = arguments;
+    if (arguments instanceof Map && ((Map<?, ?>) arguments).get(SPOOL_DATA_ARGUMENT) instanceof byte[]) {
+      Map<Object, Object> others = new HashMap<>((Map<?, ?>) arguments);
+      data = (byte[]) others.remove(SPOOL_DATA_ARGUMENT);
+      rest = others;
+    }
+    ByteBuffer encoded = StandardMessageCodec.INSTANCE.encodeMessage(rest);
+    if (encoded == null) {
+      return null;
+    }
+    if (encoded.position() != 0) {
+      encoded.flip();
+    }
+    byte[] payload = new byte[encoded.remaining()];
+    encoded.get(payload);
     
-    if (!isInitialized || aidlPrinter == null) {
-      result.success("unknown");
+    PrintSpool.Entry entry = spool.append(name, jobId, payload, data);
+    return entry != null ? new SpooledResult(entry, caller) : null;
+  }
+  
+  /**
+   * Run every spooled job that is waiting: left over from before a restart, or parked
+   * when the printer ran out of paper. Only once the printer is connected. Payloads of
+   * raw jobs can be large, so they are decoded and dispatched on the print worker rather
+   * than the calling (usually main) thread.
+   */
+  private void resumeSpool() {
+    if (!isInitialized || spool == null) {
       return;
     }
     
-    try {
-      int statusCode = aidlPrinter.getPrinterState();
-      Log.d(TAG, "Printer status code: " + statusCode);
-      
-      // Map the numeric status code to our string representation
-      switch (statusCode) {
-        case 0:
-          printerStatus = "ready";
-          break;
-        case 1:
-          printerStatus = "busy";
-          break;
-        case 2:
-          printerStatus = "outOfPaper";
-          break;
-        case 3:
-          printerStatus = "overheated";
-          break;
-        default:
-          printerStatus = "error";
-          break;
-      }
-      
-      result.success(printerStatus);
-    } catch (RemoteException e) {
-      Log.e(TAG, "Error getting printer status: " + e.getMessage());
-      result.error("STATUS_ERROR", "Error getting printer status", e.getMessage());
+    PrintJobScheduler.PrintJob replay = scheduler.submit("resumeSpool", PrintJobScheduler.Priority.URGENT,
+        internalJobResult, job -> {
+          replaySpool();
+          job.success(null);
+        });
+    if (replay == null) {
+      handler.postDelayed(this::resumeSpool, SPOOL_RESUME_RETRY_MS);
     }
   }
   
   /**
-   * Print text with specified formatting options
+   * Queue the waiting spooled jobs again, each in its own lane. Print worker only.
    */
-  private void printText(String text, String alignment, String style, Integer fontSize, Result result) {
-    if (!isInitialized || aidlPrinter == null) {
-      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+  private void replaySpool() {
+    if (!isInitialized) {
       return;
     }
     
-    Log.d(TAG, "Printing text: " + text);
-    printerStatus = "busy";
-    
-    try {
-      // Convert alignment to PrintItemObj.ALIGN
-      PrintItemObj.ALIGN alignValue = PrintItemObj.ALIGN.LEFT; // Default
-      if (alignment != null) {
-        switch (alignment) {
-          case "center":
-            alignValue = PrintItemObj.ALIGN.CENTER;
-            break;
-          case "right":
-            alignValue = PrintItemObj.ALIGN.RIGHT;
-            break;
-        }
+    for (PrintSpool.Entry entry : spool.takePending()) {
+      PrinterLog.d(TAG, "Resuming spooled %s #%s at %s", entry.method, entry.id, entry.getProgress());
+      recorder.record("spoolResume", entry.method + " #" + entry.id + " at " + entry.getProgress());
+      Object arguments = StandardMessageCodec.INSTANCE.decodeMessage(ByteBuffer.wrap(entry.getPayload()));
+      if (entry.getData() != null && arguments instanceof Map) {
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> decoded = (Map<Object, Object>) arguments;
+        decoded.put(SPOOL_DATA_ARGUMENT, entry.getData());
       }
-      
-      // Convert style to boolean bold
-      boolean isBold = style != null && style.equals("bold");
-      
-      // Convert fontSize to a size the printer can use (default to 24 if not specified)
-      int size = fontSize != null ? fontSize : 24;
-      
-      // Create a list with a single text item
-      ArrayList<PrintItemObj> items = new ArrayList<>();
-      items.add(new PrintItemObj(text, size, isBold, alignValue));
-      
-      // Print the text
-      aidlPrinter.printText(items, new AidlPrinterListener.Stub() {
-        @Override
-        public void onPrintFinish() throws RemoteException {
-          aidlPrinter.prnStart();
-          aidlPrinter.printClose();
-          printerStatus = "ready";
-          Log.d(TAG, "Text printed successfully");
-          handler.post(() -> result.success(true));
-        }
-        
-        @Override
-        public void onError(int errorCode) throws RemoteException {
-          printerStatus = "error";
-          Log.e(TAG, "Error printing text: " + errorCode);
-          handler.post(() -> result.error("PRINT_ERROR", "Error printing text", "Code: " + errorCode));
-        }
-      });
-    } catch (RemoteException e) {
-      printerStatus = "error";
-      Log.e(TAG, "RemoteException printing text: " + e.getMessage());
-      result.error("REMOTE_EXCEPTION", "Error printing text", e.getMessage());
+      onMethodCall(new MethodCall(entry.method, arguments), new SpooledResult(entry, null));
     }
   }
   
   /**
-   * Print a QR code with specified size
+   * Park the running spooled job if the printer cannot print right now, so it carries on
+   * once the status sampler sees the printer ready again. Print worker only.
    */
-  private void printQRCode(String data, Integer size, Result result) {
-    if (!isInitialized || aidlPrinter == null) {
-      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
-      return;
+  private boolean parkSpooledJob(String state) {
+    PrintSpool.Entry entry = activeSpoolEntry;
+    if (entry == null || !("outOfPaper".equals(state) || "overheated".equals(state))) {
+      return false;
     }
     
-    Log.d(TAG, "Printing QR code: " + data);
-    printerStatus = "busy";
-    
-    try {
-      // Create QR code bitmap
-      int qrSize = size != null ? size : 200;
-      android.graphics.Bitmap qrBitmap = QRCodeUtil.createQRImage(data, qrSize, qrSize, null);
-      
-      // Print the QR code bitmap
-      aidlPrinter.printBmp(0, qrBitmap.getWidth(), qrBitmap.getHeight(), qrBitmap, new AidlPrinterListener.Stub() {
-        @Override
-        public void onPrintFinish() throws RemoteException {
-          aidlPrinter.prnStart();
-          aidlPrinter.printClose();
-          printerStatus = "ready";
-          Log.d(TAG, "QR code printed successfully");
-          handler.post(() -> result.success(true));
-        }
-        
-        @Override
-        public void onError(int errorCode) throws RemoteException {
-          printerStatus = "error";
-          Log.e(TAG, "Error printing QR code: " + errorCode);
-          handler.post(() -> result.error("PRINT_ERROR", "Error printing QR code", "Code: " + errorCode));
-        }
-      });
-    } catch (Exception e) {
-      printerStatus = "error";
-      Log.e(TAG, "Exception printing QR code: " + e.getMessage());
-      result.error("PRINT_EXCEPTION", "Error printing QR code", e.getMessage());
-    }
+    entry.park();
+    recorder.record("spoolParked", entry.method + " #" + entry.id + " " + state);
+    return true;
   }
   
   /**
-   * Print a barcode with specified type and height
+   * Answers a spooled call and settles its spool entry: finished for good, or kept to run again
    */
-  private void printBarcode(String data, String type, Integer height, Result result) {
-    if (!isInitialized || aidlPrinter == null) {
-      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
-      return;
+  private final class SpooledResult implements Result {
+    final PrintSpool.Entry entry;
+    // The Dart call being answered, or null when the spool replays the job
+    final Result caller;
+    
+    SpooledResult(PrintSpool.Entry entry, Result caller) {
+      this.entry = entry;
+      this.caller = caller;
     }
     
-    Log.d(TAG, "Printing barcode: " + data);
-    printerStatus = "busy";
+    @Override
+    public void success(Object value) {
+      spool.complete(entry);
+      if (caller != null) {
+        caller.success(value);
+      } else {
+        recorder.record("spoolDone", entry.method + " #" + entry.id);
+      }
+    }
     
-    try {
-      // We would need a more complete SDK-based barcode implementation here
-      // For now, we'll print the barcode data as text as a fallback
-      ArrayList<PrintItemObj> items = new ArrayList<>();
-      items.add(new PrintItemObj(data, 24, false, PrintItemObj.ALIGN.CENTER));
-      
-      aidlPrinter.printText(items, new AidlPrinterListener.Stub() {
-        @Override
-        public void onPrintFinish() throws RemoteException {
-          aidlPrinter.prnStart();
-          aidlPrinter.printClose();
-          printerStatus = "ready";
-          Log.d(TAG, "Barcode printed as text successfully");
-          handler.post(() -> result.success(true));
-        }
-        
-        @Override
-        public void onError(int errorCode) throws RemoteException {
-          printerStatus = "error";
-          Log.e(TAG, "Error printing barcode: " + errorCode);
-          handler.post(() -> result.error("PRINT_ERROR", "Error printing barcode", "Code: " + errorCode));
-        }
-      });
-    } catch (RemoteException e) {
-      printerStatus = "error";
-      Log.e(TAG, "RemoteException printing barcode: " + e.getMessage());
-      result.error("REMOTE_EXCEPTION", "Error printing barcode", e.getMessage());
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      if (keep(errorCode)) {
+        spool.release(entry);
+      } else {
+        spool.complete(entry);
+      }
+      if (caller != null) {
+        caller.error(errorCode, errorMessage, errorDetails);
+      } else {
+        recorder.record("spoolFailed", entry.method + " #" + entry.id + " " + errorCode);
+      }
+    }
+    
+    @Override
+    public void notImplemented() {
+      spool.complete(entry);
+      if (caller != null) {
+        caller.notImplemented();
+      }
+    }
+    
+    /**
+     * Parked jobs and jobs cut off by the engine going away run again; a replayed job also
+     * waits out a printer that is not there yet or a full queue
+     */
+    private boolean keep(String errorCode) {
+      if (entry.isParked() || "DETACHED".equals(errorCode)) {
+        return true;
+      }
+      return caller == null && ("NOT_INITIALIZED".equals(errorCode) || "QUEUE_FULL".equals(errorCode));
     }
   }
   
   /**
-   * Print a receipt with multiple item types
+   * Queue a printer operation; rejects it when the queue is full
    */
-  private void printReceipt(List<Map<String, Object>> items, Result result) {
-    if (!isInitialized || aidlPrinter == null) {
-      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+  private void schedule(String name, PrintJobScheduler.Priority priority, Result result, PrintJobScheduler.Task task) {
+    schedule(name, priority, null, 0, result, task);
+  }
+  
+  private void schedule(String name, PrintJobScheduler.Priority priority, String jobId, long deadlineMs, Result result,
+      PrintJobScheduler.Task task) {
+    if (scheduler.submit(name, priority, jobId, deadlineMs, result, task) == null) {
+      PrinterLog.e(TAG, "Print queue full, rejecting %s", name);
+      result.error("QUEUE_FULL", "Print queue is full", scheduler.getQueueDepth());
+    }
+  }
+
+  /**
+   * Initialize the printer by binding to the KTP service
+   * Answers as soon as the service connects, or with an error after timeoutMs
+   */
+  private void initPrinter(long timeoutMs, Result result) {
+    if (isInitialized && aidlPrinter != null) {
+      result.success(true);
       return;
     }
     
-    Log.d(TAG, "Printing receipt with " + items.size() + " items");
-    printerStatus = "busy";
+    PrinterLog.d(TAG, "Initializing printer via KTP SDK...");
     
     try {
-      ArrayList<PrintItemObj> printItems = new ArrayList<>();
-      
-      // Process each receipt item
-      for (Map<String, Object> item : items) {
-        String type = (String) item.get("type");
-        
-        if (type == null) {
-          continue;
-        }
-        
-        switch (type) {
-          case "text":
-            String text = (String) item.get("text");
-            String alignment = (String) item.get("alignment");
-            String style = (String) item.get("style");
-            int fontSize = item.get("fontSize") != null ? (int) item.get("fontSize") : 24;
-            
-            // Convert alignment to PrintItemObj.ALIGN
-            PrintItemObj.ALIGN alignValue = PrintItemObj.ALIGN.LEFT; // Default
-            if (alignment != null) {
-              switch (alignment) {
-                case "center":
-                  alignValue = PrintItemObj.ALIGN.CENTER;
-                  break;
-                case "right":
-                  alignValue = PrintItemObj.ALIGN.RIGHT;
-                  break;
-              }
-            }
-            
-            // Convert style to boolean bold
-            boolean isBold = style != null && style.equals("bold");
-            
-            printItems.add(new PrintItemObj(text, fontSize, isBold, alignValue));
-            break;
-            
-          case "feedLine":
-            int lines = item.get("lines") != null ? (int) item.get("lines") : 1;
-            StringBuilder lineFeed = new StringBuilder();
-            for (int i = 0; i < lines; i++) {
-              lineFeed.append("\n");
-            }
-            printItems.add(new PrintItemObj(lineFeed.toString()));
-            break;
-            
-          // For future implementation: barcode and QR code items
-        }
+      if (!connection.bind()) {
+        PrinterLog.e(TAG, "Failed to bind to service");
+        result.error("SERVICE_BINDING_FAILED", "Failed to bind to printer service", null);
+        return;
       }
       
-      // Print all items
-      aidlPrinter.printText(printItems, new AidlPrinterListener.Stub() {
-        @Override
-        public void onPrintFinish() throws RemoteException {
-          aidlPrinter.prnStart();
-          aidlPrinter.printClose();
-          printerStatus = "ready";
-          Log.d(TAG, "Receipt printed successfully");
-          handler.post(() -> result.success(true));
-        }
-        
-        @Override
-        public void onError(int errorCode) throws RemoteException {
-          printerStatus = "error";
-          Log.e(TAG, "Error printing receipt: " + errorCode);
-          handler.post(() -> result.error("PRINT_ERROR", "Error printing receipt", "Code: " + errorCode));
+      connection.awaitConnected(timeoutMs, connected -> {
+        if (connected && aidlPrinter != null) {
+          PrinterLog.d(TAG, "Printer initialized successfully");
+          result.success(true);
+        } else {
+          PrinterLog.e(TAG, "Failed to get printer interface after %sms", timeoutMs);
+          result.error("INITIALIZATION_ERROR", "Failed to get printer interface", null);
         }
       });
-    } catch (RemoteException e) {
-      printerStatus = "error";
-      Log.e(TAG, "RemoteException printing receipt: " + e.getMessage());
-      result.error("REMOTE_EXCEPTION", "Error printing receipt", e.getMessage());
+    } catch (Exception e) {
+      PrinterLog.e(TAG, "Error initializing printer: %s", e.getMessage());
+      result.error("INITIALIZATION_ERROR", "Error initializing printer", e.getMessage());
     }
   }
   
   /**
-   * Print raw bytes directly to the printer with simplified chunking support
+   * Run the connection's getPrinter() lookup on the print worker, ahead of the jobs held
+   * while the service was away; they only resume once the printer is connected
    */
-  private void printRawBytes(List<Integer> bytesList, int chunkSize, int delayMs, Result result) {
-    if (!isInitialized || aidlPrinter == null) {
-      Map<String, Object> response = new HashMap<>();
-      response.put("success", false);
-      response.put("message", "Printer is not initialized");
-      result.error("NOT_INITIALIZED", "Printer is not initialized", response);
-      return;
-    }
-    
-    Log.d(TAG, "Printing raw bytes: " + bytesList.size() + " bytes (chunk size: " + chunkSize + ", delay: " + delayMs + "ms)");
-    printerStatus = "busy";
-    
-    try {
-      // Convert full List<Integer> to byte[]
-      byte[] rawData = new byte[bytesList.size()];
-      for (int i = 0; i < bytesList.size(); i++) {
-        rawData[i] = bytesList.get(i).byteValue();
-      }
-      
-      // Create chunks for better reliability
-      final List<byte[]> chunks = new ArrayList<>();
-      for (int i = 0; i < rawData.length; i += chunkSize) {
-        int end = Math.min(i + chunkSize, rawData.length);
-        byte[] chunk = Arrays.copyOfRange(rawData, i, end);
-        chunks.add(chunk);
+  private void lookUpPrinter(Runnable lookup) {
+    scheduler.submitIgnoringPause("lookUpPrinter", internalJobResult, job -> {
+      lookup.run();
+      job.success(null);
+    });
+  }
+  
+  /**
+   * Connection state changes from the KTP service binding
+   */
+  final PrinterServiceConnection.Listener connectionListener = new PrinterServiceConnection.Listener() {
+    @Override
+    public void onPrinterConnected(AidlDeviceService service, AidlPrinter printer) {
+      serviceManager = service;
+      aidlPrinter = printer != null ? InstrumentedPrinter.wrap(printer, metrics, recorder) : null;
+      recorder.record("connected", null);
+      if (connection != null && connection.getLastBindNanos() >= 0) {
+        metrics.recordBind(connection.getLastBindNanos());
       }
+      printerCapabilities = null;
+      statusMonitor.update("ready");
+      isInitialized = true;
+      statusMonitor.start();
       
-      Log.d(TAG, "Split into " + chunks.size() + " chunks");
+      // Probing talks to the service, so it runs on the print worker ahead of any held job
+      scheduler.submit("probePrinter", PrintJobScheduler.Priority.URGENT, statusSampleResult, job -> {
+        capabilities();
+        job.success(readPrinterState());
+      });
       
-      // Create a background thread for printing to avoid blocking the main thread
-      new Thread(() -> {
-        try {
-          boolean success = true;
-          final StringBuilder errorBuilder = new StringBuilder();
+      // Replay whatever queued up while the service was away
+      scheduler.resume();
+      resumeSpool();
+    }
+    
+    @Override
+    public void onPrinterDisconnected() {
+      recorder.record("disconnected", null);
+      serviceManager = null;
+      aidlPrinter = null;
+      printerCapabilities = null;
+      isInitialized = false;
+      statusMonitor.stop();
+      statusMonitor.update("disconnected");
+      
+      // The rebound service starts with its engine closed, so a session cannot outlive it
+      handler.removeCallbacks(sessionIdleCheck);
+      engineLeftOpen = false;
+      if (sessionOpen) {
+        sessionOpen = false;
+        recorder.record("sessionEnd", "disconnected");
+      }
+      
+      // Hold jobs that have not started until the service is back
+      scheduler.pause();
+    }
+    
+    @Override
+    public void onReconnectFailed() {
+      recorder.record("reconnectFailed", null);
+      // Let held jobs run so they fail with NOT_INITIALIZED instead of waiting forever
+      statusMonitor.update("error");
+      scheduler.resume();
+    }
+  };
+  
+  /**
+   * Put a job back in the queue when the printer service died under it, so it runs
+   * again once the service is rebound. Only used where nothing has been printed yet.
+   */
+  private boolean requeueIfServiceDied(Exception e, Result result) {
+    if (!(e instanceof DeadObjectException) || !(result instanceof PrintJobScheduler.PrintJob)) {
+      return false;
+    }
+    
+    if (!((PrintJobScheduler.PrintJob) result).requeue()) {
+      return false;
+    }
+    
+    PrinterLog.e(TAG, "Printer service died, job will run again after reconnect");
+    recorder.record("serviceDied", ((PrintJobScheduler.PrintJob) result).name);
+    scheduler.pause();
+    handler.post(() -> connection.reconnect("dead object"));
+    return true;
+  }
+  
+  /**
+   * The job's stop flag when result is a scheduled job, for loops that check it between chunks
+   */
+  private static PrintJobScheduler.StopSignal stopSignal(Result result) {
+    return result instanceof PrintJobScheduler.StopSignal ? (PrintJobScheduler.StopSignal) result
+        : PrintJobScheduler.StopSignal.NONE;
+  }
+  
+  /**
+   * One AIDL print call, sent with the listener that acknowledges it
+   */
+  private interface PrintCall {
+    void send(AidlPrinterListener listener) throws RemoteException;
+  }
+  
+  /**
+   * Send a print call and block the print worker until the service acknowledges it. The
+   * listener only releases a latch, so prnStart, printClose and the answer all happen on the
+   * worker, never on the binder thread. Returns null if the job was cancelled, missed its
+   * deadline or ran out of time first; the scheduler answers it and closes the printer, and
+   * the late acknowledgement is ignored.
+   */
+  private static PrintCompletion sendAndAwait(PrintCall call, Result result) throws RemoteException {
+    PrintCompletion completion = new PrintCompletion();
+    call.send(completion);
+    long timeoutMs = result instanceof PrintJobScheduler.PrintJob
+        ? ((PrintJobScheduler.PrintJob) result).getRemainingRunMs() : PrintJobScheduler.JOB_TIMEOUT_MS;
+    try {
+      return completion.await(timeoutMs) ? completion : null;
+    } catch (InterruptedException e) {
+      // stop() has answered the job
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+  
+  /**
+   * Close whatever transaction a cancelled or expired job left open and report the printer
+   * ready again. Runs on the print worker before the next job.
+   */
+  private void closeAbortedJob(PrintJobScheduler.PrintJob job) {
+    AidlPrinter printer = aidlPrinter;
+    if (printer != null) {
+      try {
+        printer.printClose();
+      } catch (RemoteException e) {
+        PrinterLog.e(TAG, "printClose after stopping job %s failed: %s", job.id, e.getMessage());
+      }
+    }
+    engineLeftOpen = false;
+    statusMonitor.update("ready");
+  }
+  
+  /**
+   * Print what the job buffered and end its transaction. Print worker only.
+   */
+  private void finishPrint() throws RemoteException {
+    aidlPrinter.prnStart();
+    closeUnlessInSession();
+  }
+  
+  /**
+   * Close the printer engine after a job, unless a session keeps it open for the next one
+   */
+  private void closeUnlessInSession() throws RemoteException {
+    if (!sessionOpen) {
+      aidlPrinter.printClose();
+      return;
+    }
+    
+    engineLeftOpen = true;
+    lastSessionPrintAt = SystemClock.elapsedRealtime();
+  }
+  
+  /**
+   * Keep the engine open between jobs until endSession, or until nothing has printed for
+   * idleTimeoutMs. Print worker only.
+   */
+  private void beginSession(long idleTimeoutMs, Result result) {
+    sessionIdleTimeoutMs = idleTimeoutMs;
+    lastSessionPrintAt = SystemClock.elapsedRealtime();
+    if (!sessionOpen) {
+      sessionOpen = true;
+      recorder.record("sessionBegin", idleTimeoutMs + "ms idle timeout");
+    }
+    handler.removeCallbacks(sessionIdleCheck);
+    handler.postDelayed(sessionIdleCheck, idleTimeoutMs);
+    result.success(true);
+  }
+  
+  /**
+   * Close the session and the engine it kept open; false if no session was open. Print worker only.
+   */
+  private boolean endSession(String reason) {
+    if (!sessionOpen) {
+      return false;
+    }
+    
+    sessionOpen = false;
+    handler.removeCallbacks(sessionIdleCheck);
+    AidlPrinter printer = aidlPrinter;
+    if (engineLeftOpen && printer != null) {
+      try {
+        printer.printClose();
+      } catch (RemoteException e) {
+        PrinterLog.e(TAG, "printClose ending session failed: %s", e.getMessage());
+      }
+    }
+    engineLeftOpen = false;
+    recorder.record("sessionEnd", reason);
+    return true;
+  }
+  
+  /**
+   * Main thread, once the idle timeout may have passed: end the session on the print worker
+   * if nothing printed since, otherwise look again when it could next expire
+   */
+  private void checkSessionIdle() {
+    PrintJobScheduler.PrintJob check = scheduler.submit("sessionIdle", PrintJobScheduler.Priority.REPORT,
+        internalJobResult, job -> {
+          if (sessionOpen) {
+            long idleMs = SystemClock.elapsedRealtime() - lastSessionPrintAt;
+            if (idleMs >= sessionIdleTimeoutMs) {
+              endSession("idle " + idleMs + "ms");
+            } else {
+              handler.removeCallbacks(sessionIdleCheck);
+              handler.postDelayed(sessionIdleCheck, sessionIdleTimeoutMs - idleMs);
+            }
+          }
+          job.success(null);
+        });
+    // A full queue is anything but idle; look again later
+    if (check == null) {
+      handler.postDelayed(sessionIdleCheck, sessionIdleTimeoutMs);
+    }
+  }
+  
+  // Internal jobs, such as the idle check and the spool replay, answer nobody
+  private final Result internalJobResult = new Result() {
+    @Override
+    public void success(Object result) {
+    }
+    
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+    }
+    
+    @Override
+    public void notImplemented() {
+    }
+  };
+  
+  /**
+   * Bind and warm up ZXing at engine attach when the host app opts in via manifest meta-data
+   */
+  private void eagerBindIfRequested() {
+    try {
+      ApplicationInfo info = context.getPackageManager()
+          .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+      if (info.metaData == null || !info.metaData.getBoolean(EAGER_BIND_META_DATA, false)) {
+        return;
+      }
+    } catch (Exception e) {
+      PrinterLog.e(TAG, "Unable to read plugin meta-data: %s", e.getMessage());
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Eager bind requested, connecting to printer service");
+    connection.bind();
+    
+    // Load and JIT the QR encoder off the main thread so the first receipt does not pay for it
+    Thread warmUp = new Thread(QRCodeUtil::warmUp, "S600-WarmUp");
+    warmUp.setDaemon(true);
+    warmUp.start();
+  }
+  
+  /**
+   * Capabilities of the connected printer, probed on the print worker the first time they are needed
+   */
+  private PrinterCapabilities capabilities() {
+    PrinterCapabilities capabilities = printerCapabilities;
+    if (capabilities == null) {
+      capabilities = PrinterCapabilities.probe(aidlPrinter, context);
+      printerCapabilities = capabilities;
+    }
+    return capabilities;
+  }
+  
+  /**
+   * Sample the printer state for the status monitor
+   * Runs through the scheduler so it never overlaps a print; skipped while jobs are
+   * queued or running, since those report their own status
+   */
+  private void sampleStatus() {
+    if (!isInitialized || aidlPrinter == null || scheduler.isBusy()) {
+      return;
+    }
+    
+    scheduler.submit("sampleStatus", PrintJobScheduler.Priority.URGENT, statusSampleResult, job -> {
+      AidlPrinter printer = aidlPrinter;
+      if (printer == null) {
+        job.success(null);
+        return;
+      }
+      
+      try {
+        job.success(statusName(printer.getPrinterState()));
+      } catch (RemoteException e) {
+        PrinterLog.e(TAG, "Error getting printer status: %s", e.getMessage());
+        job.success("error");
+      }
+    });
+  }
+  
+  /**
+   * Receives sampled states on the main thread
+   */
+  private final Result statusSampleResult = new Result() {
+    @Override
+    public void success(Object status) {
+      if (status != null) {
+        String previous = statusMonitor.get();
+        statusMonitor.update((String) status);
+        // Paper loaded or the head cooled down: parked jobs can carry on
+        if ("ready".equals(status) && !"ready".equals(previous)) {
+          resumeSpool();
+        }
+      }
+    }
+    
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      PrinterLog.e(TAG, "Status sample failed: %s", errorMessage);
+    }
+    
+    @Override
+    public void notImplemented() {
+    }
+  };
+  
+  /**
+   * Map the SDK's PrinterConstant.PrinterState code to our string representation
+   */
+  static String statusName(int statusCode) {
+    // The SDK's state codes are plain statics, not constants, so they cannot be case labels
+    if (statusCode == PrinterConstant.PrinterState.PRINTER_STATE_NORMAL) {
+      return "ready";
+    }
+    if (statusCode == PrinterConstant.PrinterState.PRINTER_STATE_NOPAPER) {
+      return "outOfPaper";
+    }
+    if (statusCode == PrinterConstant.PrinterState.PRINTER_STATE_HIGHTEMP) {
+      return "overheated";
+    }
+    return "error";
+  }
+  
+  /**
+   * Query the printer state from the print worker; null if it cannot be read
+   */
+  private String readPrinterState() {
+    try {
+      return statusName(aidlPrinter.getPrinterState());
+    } catch (Exception e) {
+      PrinterLog.e(TAG, "Error reading printer state: %s", e.getMessage());
+      return null;
+    }
+  }
+  
+  /**
+   * Print text with specified formatting options
+   */
+  private void printText(String text, String alignment, String style, Integer fontSize, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    if (PrinterLog.isDebug()) {
+      PrinterLog.d(TAG, "Printing text (%s chars)", text.length());
+    }
+    statusMonitor.update("busy");
+    
+    try {
+      // Create a list with a single text item
+      ArrayList<PrintItemObj> items = new ArrayList<>();
+      items.add(textItem(text, alignment, style, fontSize));
+      
+      // Print the text
+      PrintCompletion completion = sendAndAwait(listener -> aidlPrinter.printText(items, listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing text: %s", completion.getErrorCode());
+        result.error("PRINT_ERROR", "Error printing text", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Text printed successfully");
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing text: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing text", e.getMessage());
+    }
+  }
+  
+  /**
+   * The item printText sends for these options
+   */
+  private static PrintItemObj textItem(String text, String alignment, String style, Integer fontSize) {
+    // Convert alignment to PrintItemObj.ALIGN
+    PrintItemObj.ALIGN alignValue = PrintItemObj.ALIGN.LEFT; // Default
+    if (alignment != null) {
+      switch (alignment) {
+        case "center":
+          alignValue = PrintItemObj.ALIGN.CENTER;
+          break;
+        case "right":
+          alignValue = PrintItemObj.ALIGN.RIGHT;
+          break;
+      }
+    }
+    
+    // Convert style to boolean bold
+    boolean isBold = style != null && style.equals("bold");
+    
+    // Convert fontSize to a size the printer can use (default to 24 if not specified)
+    int size = fontSize != null ? fontSize : 24;
+    
+    return new PrintItemObj(text, size, isBold, alignValue);
+  }
+  
+  /**
+   * Print coalesced printText and feedPaper calls as one item list and one print cycle
+   */
+  private void printBatch(PrintCoalescer.Batch batch, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    if (PrinterLog.isDebug()) {
+      PrinterLog.d(TAG, "Printing %s coalesced calls", batch.size());
+    }
+    statusMonitor.update("busy");
+    
+    try {
+      PrintCompletion completion = sendAndAwait(listener -> aidlPrinter.printText(batch.getItems(), listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing coalesced calls: %s", completion.getErrorCode());
+        result.error("PRINT_ERROR", "Error printing coalesced calls", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Coalesced calls printed successfully");
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing coalesced calls: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing coalesced calls", e.getMessage());
+    }
+  }
+  
+  /**
+   * Print a QR code with specified size
+   */
+  private void printQRCode(String data, Integer size, ErrorCorrectionLevel ecLevel, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Printing QR code (%s chars)", data.length());
+    statusMonitor.update("busy");
+    
+    try {
+      // Reuse the rendered bitmap when the same code was printed before
+      int qrSize = size != null ? size : 200;
+      android.graphics.Bitmap qrBitmap = symbolCache.qrCode(data, qrSize, ecLevel);
+      if (qrBitmap == null) {
+        statusMonitor.update("ready");
+        result.error("INVALID_ARGUMENT", "QR code could not be encoded", null);
+        return;
+      }
+      
+      // Print the QR code bitmap
+      PrintCompletion completion = sendAndAwait(
+          listener -> aidlPrinter.printBmp(0, qrBitmap.getWidth(), qrBitmap.getHeight(), qrBitmap, listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing QR code: %s", completion.getErrorCode());
+        result.error("PRINT_ERROR", "Error printing QR code", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "QR code printed successfully");
+      result.success(true);
+    } catch (Exception e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "Exception printing QR code: %s", e.getMessage());
+      result.error("PRINT_EXCEPTION", "Error printing QR code", e.getMessage());
+    }
+  }
+  
+  /**
+   * Map the Dart errorCorrection argument to a ZXing level, defaulting to H
+   */
+  static ErrorCorrectionLevel errorCorrectionLevel(String value) {
+    if (value == null) {
+      return ErrorCorrectionLevel.H;
+    }
+    
+    switch (value.toUpperCase(Locale.ROOT)) {
+      case "L":
+        return ErrorCorrectionLevel.L;
+      case "M":
+        return ErrorCorrectionLevel.M;
+      case "Q":
+        return ErrorCorrectionLevel.Q;
+      default:
+        return ErrorCorrectionLevel.H;
+    }
+  }
+  
+  /**
+   * Print a barcode with specified type and height
+   * Uses the firmware's printBarCode where it handles the symbology, otherwise a
+   * ZXing-rendered bitmap, and prints the data as text as a last resort
+   */
+  private void printBarcode(String data, String type, Integer width, Integer height, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Printing barcode (%s chars)", data.length());
+    statusMonitor.update("busy");
+    
+    BarcodeSymbology symbology = BarcodeSymbology.from(type);
+    int barcodeWidth = width != null && width > 0 ? Math.min(width, PAPER_WIDTH_DOTS) : PAPER_WIDTH_DOTS;
+    int barcodeHeight = height != null && height > 0 ? height : 100;
+    
+    if (symbology == null) {
+      PrinterLog.d(TAG, "Unknown barcode type %s, printing as text", type);
+      printBarcodeAsText(data, result);
+    } else if (capabilities().supportsNativeBarcode(symbology)) {
+      printNativeBarcode(data, symbology, barcodeWidth, barcodeHeight, result);
+    } else {
+      printRenderedBarcode(data, symbology, barcodeWidth, barcodeHeight, result);
+    }
+  }
+  
+  private void printNativeBarcode(String data, BarcodeSymbology symbology, int width, int height, Result result) {
+    try {
+      PrintCompletion completion;
+      try {
+        completion = sendAndAwait(
+            listener -> aidlPrinter.printBarCode(symbology.nativeType, width, height, data, listener), result);
+      } catch (RuntimeException e) {
+        // Older service builds throw instead of reporting an error for unknown types
+        PrinterLog.d(TAG, "printBarCode unavailable for %s: %s", symbology, e.getMessage());
+        onNativeBarcodeRejected(data, symbology, width, height, e.getMessage(), result);
+        return;
+      }
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        int errorCode = completion.getErrorCode();
+        // A printer that is still ready rejected the barcode itself, not the print
+        if ("ready".equals(readPrinterState())) {
+          onNativeBarcodeRejected(data, symbology, width, height, "Code: " + errorCode, result);
+          return;
+        }
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing barcode: %s", errorCode);
+        result.error("PRINT_ERROR", "Error printing barcode", "Code: " + errorCode);
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Barcode printed successfully");
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing barcode: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing barcode", e.getMessage());
+    }
+  }
+  
+  /**
+   * The firmware refused a barcode. The error does not say whether it was the symbology or
+   * the data, so ZXing decides: data it can draw is valid, and the symbology is rendered for
+   * the rest of the connection. Data it cannot draw goes back to the caller.
+   */
+  private void onNativeBarcodeRejected(String data, BarcodeSymbology symbology, int width, int height,
+      String details, Result result) {
+    if (symbology.zxingFormat != null && symbolCache.barcode(data, symbology.zxingFormat, width, height) != null) {
+      PrinterLog.d(TAG, "Firmware rejected %s (%s), rendering it instead", symbology, details);
+      capabilities().rememberNativeBarcodeUnsupported(symbology);
+      printRenderedBarcode(data, symbology, width, height, result);
+      return;
+    }
+    
+    statusMonitor.update("ready");
+    PrinterLog.e(TAG, "Firmware rejected %s data: %s", symbology, details);
+    result.error("PRINT_ERROR", "Invalid barcode data", details);
+  }
+  
+  private void printRenderedBarcode(String data, BarcodeSymbology symbology, int width, int height, Result result) {
+    if (symbology.zxingFormat == null) {
+      // ZXing cannot write the type
+      PrinterLog.d(TAG, "Barcode %s not rendered, printing as text", symbology);
+      printBarcodeAsText(data, result);
+      return;
+    }
+    
+    android.graphics.Bitmap barcodeBitmap = symbolCache.barcode(data, symbology.zxingFormat, width, height);
+    if (barcodeBitmap == null) {
+      statusMonitor.update("ready");
+      PrinterLog.e(TAG, "Barcode %s data could not be encoded", symbology);
+      result.error("PRINT_ERROR", "Invalid barcode data", null);
+      return;
+    }
+    
+    try {
+      PrintCompletion completion = sendAndAwait(listener -> aidlPrinter.printBmp(0, barcodeBitmap.getWidth(),
+          barcodeBitmap.getHeight(), barcodeBitmap, listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing barcode: %s", completion.getErrorCode());
+        result.error("PRINT_ERROR", "Error printing barcode", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Barcode printed as bitmap successfully");
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing barcode: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing barcode", e.getMessage());
+    }
+  }
+  
+  private void printBarcodeAsText(String data, Result result) {
+    try {
+      ArrayList<PrintItemObj> items = new ArrayList<>();
+      items.add(new PrintItemObj(data, 24, false, PrintItemObj.ALIGN.CENTER));
+      
+      PrintCompletion completion = sendAndAwait(listener -> aidlPrinter.printText(items, listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Error printing barcode: %s", completion.getErrorCode());
+        result.error("PRINT_ERROR", "Error printing barcode", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Barcode printed as text successfully");
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing barcode: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing barcode", e.getMessage());
+    }
+  }
+  
+  /**
+   * Print a receipt with multiple item types as a single printer transaction
+   */
+  private void printReceipt(List<Map<String, Object>> items, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Printing receipt with %s items", items.size());
+    
+    ReceiptProgram program;
+    try {
+      program = receiptCompiler.compile(items);
+    } catch (IllegalArgumentException | ClassCastException e) {
+      PrinterLog.e(TAG, "Invalid receipt: %s", e.getMessage());
+      result.error("INVALID_ARGUMENT", "Invalid receipt item", e.getMessage());
+      return;
+    }
+    
+    runReceiptProgram(program, result);
+  }
+  
+  /**
+   * Print a receipt laid out natively with Canvas and streamed to printBmp in bands
+   */
+  private void printReceiptRaster(List<Map<String, Object>> items, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Rasterizing receipt with %s items", items.size());
+    statusMonitor.update("busy");
+    
+    try {
+      PrintJobScheduler.StopSignal stop = stopSignal(result);
+      Map<String, Object> stats = rasterRenderer.print(aidlPrinter, items, CHUNK_ACK_TIMEOUT_MS, stop);
+      if (stop.isStopRequested()) {
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Rasterized receipt printed: %s", stats);
+      result.success(true);
+    } catch (IllegalArgumentException | ClassCastException e) {
+      statusMonitor.update("ready");
+      PrinterLog.e(TAG, "Invalid receipt: %s", e.getMessage());
+      result.error("INVALID_ARGUMENT", "Invalid receipt item", e.getMessage());
+    } catch (RasterReceiptRenderer.BandPrintException e) {
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "Error printing rasterized receipt: %s", e.getMessage());
+      result.error("PRINT_ERROR", "Error printing receipt", "Code: " + e.errorCode);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.error("PRINT_EXCEPTION", "Interrupted while printing receipt", null);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing receipt: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing receipt", e.getMessage());
+    }
+  }
+  
+  /**
+   * Decode, scale and dither an encoded image and print it in strips
+   */
+  private void printImage(byte[] bytes, int width, String alignment, ImageDitherer.Mode dither, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Printing image (%s bytes, %s)", bytes.length, dither);
+    statusMonitor.update("busy");
+    
+    try {
+      PrintJobScheduler.StopSignal stop = stopSignal(result);
+      Map<String, Object> stats = imagePrinter.print(aidlPrinter, bytes, width,
+          alignment != null ? ReceiptCompiler.align(alignment) : android.graphics.Paint.Align.CENTER, dither,
+          CHUNK_ACK_TIMEOUT_MS, stop);
+      if (stop.isStopRequested()) {
+        return;
+      }
+      finishPrint();
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Image printed: %s", stats);
+      result.success(true);
+    } catch (IllegalArgumentException e) {
+      statusMonitor.update("ready");
+      PrinterLog.e(TAG, "Invalid image: %s", e.getMessage());
+      result.error("INVALID_ARGUMENT", "Invalid image", e.getMessage());
+    } catch (RasterReceiptRenderer.BandPrintException e) {
+      String state = readPrinterState();
+      statusMonitor.update(state != null && !"ready".equals(state) ? state : "error");
+      PrinterLog.e(TAG, "Error printing image: %s", e.getMessage());
+      // Reprinted whole once the printer is ready again
+      String spooled = parkSpooledJob(state) ? ", will print when ready" : "";
+      result.error("PRINT_ERROR", "Error printing image", "Code: " + e.errorCode + spooled);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.error("PRINT_EXCEPTION", "Interrupted while printing image", null);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing image: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing image", e.getMessage());
+    }
+  }
+  
+  /**
+   * Compile a receipt template and keep it for printReceiptTemplate, replacing any with the same ID
+   */
+  private void registerReceiptTemplate(String templateId, List<Map<String, Object>> items, Result result) {
+    try {
+      ReceiptTemplate template = ReceiptTemplate.compile(templateId, items, receiptCompiler);
+      receiptTemplates.put(templateId, template);
+      PrinterLog.d(TAG, "Registered receipt template %s: %s", templateId, template.describe());
+      result.success(template.describe());
+    } catch (IllegalArgumentException | ClassCastException e) {
+      PrinterLog.e(TAG, "Invalid receipt template %s: %s", templateId, e.getMessage());
+      result.error("INVALID_ARGUMENT", "Invalid receipt template", e.getMessage());
+    }
+  }
+  
+  /**
+   * Print a registered template with this print's variable values
+   */
+  private void printReceiptTemplate(String templateId, Map<String, Object> values, Result result) {
+    ReceiptTemplate template = receiptTemplates.get(templateId);
+    if (template == null) {
+      result.error("TEMPLATE_NOT_FOUND", "No receipt template registered as " + templateId, null);
+      return;
+    }
+    
+    if (!isInitialized || aidlPrinter == null) {
+      result.error("NOT_INITIALIZED", "Printer is not initialized", null);
+      return;
+    }
+    
+    ReceiptProgram program;
+    try {
+      program = template.bind(values);
+    } catch (IllegalArgumentException | ClassCastException e) {
+      PrinterLog.e(TAG, "Cannot bind receipt template %s: %s", templateId, e.getMessage());
+      result.error("INVALID_ARGUMENT", "Invalid template values", e.getMessage());
+      return;
+    }
+    
+    runReceiptProgram(program, result);
+  }
+  
+  /**
+   * Run a compiled receipt: prnInit, every step, one prnStart, then check the printer is still fine.
+   * Inside a session that left the engine open, the receipt goes straight into it without prnInit.
+   */
+  private void runReceiptProgram(ReceiptProgram program, Result result) {
+    statusMonitor.update("busy");
+    
+    try {
+      if (!program.run(aidlPrinter, engineLeftOpen, stopSignal(result))) {
+        return;
+      }
+      closeUnlessInSession();
+      
+      String state = readPrinterState();
+      if ("outOfPaper".equals(state) || "overheated".equals(state)) {
+        statusMonitor.update(state);
+        PrinterLog.e(TAG, "Receipt not printed, printer is %s", state);
+        // Reprinted whole once the printer is ready; nothing reaches paper before prnStart
+        String spooled = parkSpooledJob(state) ? ", will print when ready" : "";
+        result.error("PRINT_ERROR", "Error printing receipt", "Printer is " + state + spooled);
+        return;
+      }
+      
+      statusMonitor.update("ready");
+      PrinterLog.d(TAG, "Receipt printed successfully (%s steps)", program.size());
+      result.success(true);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException printing receipt: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing receipt", e.getMessage());
+    }
+  }
+  
+  /**
+   * Whether printRawBytes should interpret the stream: "interpret" always, "raw" never,
+   * and "auto" (the default) unless the service exposes a real byte-level command
+   */
+  private boolean interpretRawBytes(String mode) {
+    if ("interpret".equals(mode)) {
+      return true;
+    }
+    if ("raw".equals(mode)) {
+      return false;
+    }
+    return aidlPrinter == null || !capabilities().supports(PrinterCapabilities.RawSendStrategy.DIRECT_COMMAND);
+  }
+  
+  /**
+   * Print an ESC/POS stream by interpreting it into SDK calls
+   * The bytes are fed to the interpreter chunk by chunk, the same way they would
+   * arrive from a socket, so commands split across chunks are handled the same.
+   * A spooled stream records its acknowledged printer calls; one that was cut off is
+   * interpreted again from the start and skips the calls that already printed.
+   */
+  private void printRawBytesInterpreted(byte[] rawData, int chunkSize, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      Map<String, Object> response = new HashMap<>();
+      response.put("success", false);
+      response.put("message", "Printer is not initialized");
+      result.error("NOT_INITIALIZED", "Printer is not initialized", response);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Interpreting raw bytes: %s bytes", rawData.length);
+    statusMonitor.update("busy");
+    
+    EscPosPrinterSink sink = new EscPosPrinterSink(aidlPrinter, capabilities(), symbolCache, PAPER_WIDTH_DOTS, CHUNK_ACK_TIMEOUT_MS);
+    EscPosInterpreter interpreter = new EscPosInterpreter(sink, StandardCharsets.ISO_8859_1);
+    PrintJobScheduler.StopSignal stop = stopSignal(result);
+    PrintSpool.Entry spooled = activeSpoolEntry;
+    if (spooled != null) {
+      if (spooled.getProgress() > 0) {
+        PrinterLog.d(TAG, "Resuming interpreted raw bytes after %s printer calls", spooled.getProgress());
+        sink.resumeAfter(spooled.getProgress());
+      }
+      sink.setProgressListener(operations -> spool.progress(spooled, operations));
+    }
+    try {
+      for (int offset = 0; offset < rawData.length; offset += chunkSize) {
+        if (stop.isStopRequested()) {
+          return;
+        }
+        interpreter.feed(rawData, offset, Math.min(chunkSize, rawData.length - offset));
+      }
+      interpreter.finish();
+      sink.flush();
+      if (stop.isStopRequested()) {
+        return;
+      }
+      finishPrint();
+      
+      statusMonitor.update("ready");
+      Map<String, Object> response = new HashMap<>();
+      response.put("success", true);
+      response.put("message", "Print completed successfully");
+      response.put("strategy", "INTERPRETED");
+      response.put("commands", interpreter.getCommandCount());
+      response.put("unsupportedCommands", interpreter.getUnsupportedCount());
+      response.putAll(sink.report());
+      result.success(response);
+    } catch (RemoteException e) {
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "RemoteException interpreting raw bytes: %s", e.getMessage());
+      result.error("REMOTE_EXCEPTION", "Error printing raw bytes", e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.error("PRINT_EXCEPTION", "Interrupted while printing raw bytes", null);
+    } catch (Exception e) {
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "Error interpreting raw bytes: %s", e.getMessage());
+      
+      Map<String, Object> errorResponse = new HashMap<>();
+      errorResponse.put("success", false);
+      errorResponse.put("message", e.getMessage());
+      if (e instanceof EscPosPrinterSink.OperationFailedException) {
+        errorResponse.put("errorCode", ((EscPosPrinterSink.OperationFailedException) e).errorCode);
+        // The rest prints by itself once the printer is ready again
+        if (parkSpooledJob(readPrinterState())) {
+          errorResponse.put("spooled", true);
+          errorResponse.put("resumeOperation", sink.getOperations());
+        }
+      }
+      errorResponse.putAll(sink.report());
+      result.error("PRINT_ERROR", "Error printing raw bytes", errorResponse);
+    } finally {
+      metrics.recordTransfer("printRawBytes", rawData.length, sink.getPrinterCalls(), 0);
+    }
+  }
+  
+  /**
+   * Print raw bytes directly to the printer with simplified chunking support
+   */
+  private void printRawBytes(byte[] rawData, int chunkSize, int delayMs, boolean adaptive, Result result) {
+    if (!isInitialized || aidlPrinter == null) {
+      Map<String, Object> response = new HashMap<>();
+      response.put("success", false);
+      response.put("message", "Printer is not initialized");
+      result.error("NOT_INITIALIZED", "Printer is not initialized", response);
+      return;
+    }
+    
+    PrinterLog.d(TAG, "Printing raw bytes: %s bytes (chunk size: %s, delay: %sms%s)", rawData.length, chunkSize, delayMs, (adaptive ? ", adaptive" : ""));
+    statusMonitor.update("busy");
+    
+    try {
+      // Chunks are windows over rawData; bytes are only copied when a strategy needs its own array
+      final RawChunkSender sender = new RawChunkSender(aidlPrinter, capabilities(), CHUNK_ACK_TIMEOUT_MS);
+      final ChunkFlowControl flow = new ChunkFlowControl(chunkSize, delayMs, adaptive);
+      final PrintJobScheduler.StopSignal stop = stopSignal(result);
+      final PrintSpool.Entry spooled = activeSpoolEntry;
+      
+      // Already on the print worker, so chunks are sent inline
+      boolean success = true;
+      boolean parked = false;
+      final StringBuilder errorBuilder = new StringBuilder();
+      // A spooled job that was cut off carries on after its last acknowledged chunk
+      int offset = spooled != null ? Math.min(spooled.getProgress(), rawData.length) : 0;
+      int chunkIndex = 0;
+      if (offset > 0) {
+        PrinterLog.d(TAG, "Resuming raw bytes at %s/%s", offset, rawData.length);
+      }
+      
+      while (offset < rawData.length && !stop.isStopRequested()) {
+        final int length = Math.min(flow.chunkSize(), rawData.length - offset);
+        if (PrinterLog.isDebug()) {
+          PrinterLog.d(TAG, "Printing chunk %s at %s/%s (%s bytes)", (chunkIndex + 1), offset, rawData.length, length);
+        }
+        
+        try {
+          long sentAt = System.nanoTime();
+          boolean chunkSuccess;
+          PrinterTrace.begin("S600 raw chunk");
+          try {
+            chunkSuccess = sender.send(rawData, offset, length);
+          } finally {
+            PrinterTrace.end();
+          }
           
-          // Print each chunk with delay between chunks
-          for (int i = 0; i < chunks.size() && success; i++) {
-            byte[] chunk = chunks.get(i);
-            Log.d(TAG, "Printing chunk " + (i + 1) + "/" + chunks.size() + " (" + chunk.length + " bytes)");
-            
-            try {
-              // Try multiple approaches to send raw bytes directly to the printer
-              boolean chunkSuccess = false;
-              
-              // Approach 1: Try using ISO-8859-1 encoding which preserves byte values 0-255
-              try {
-                ArrayList<PrintItemObj> items = new ArrayList<>();
-                // Use ISO-8859-1 encoding to preserve binary data
-                String chunkText = new String(chunk, "ISO-8859-1");
-                items.add(new PrintItemObj(chunkText));
-                
-                final boolean[] printFinished = {false};
-                final boolean[] printSuccess = {false};
-                
-                aidlPrinter.printText(items, new AidlPrinterListener.Stub() {
-                  @Override
-                  public void onPrintFinish() throws RemoteException {
-                    printSuccess[0] = true;
-                    printFinished[0] = true;
-                  }
-                  
-                  @Override
-                  public void onError(int errorCode) throws RemoteException {
-                    printSuccess[0] = false;
-                    printFinished[0] = true;
-                  }
-                });
-                
-                // Wait for print to finish with timeout
-                long startTime = System.currentTimeMillis();
-                while (!printFinished[0] && System.currentTimeMillis() - startTime < 5000) {
-                  Thread.sleep(100);
-                }
-                
-                chunkSuccess = printSuccess[0];
-                
-                if (!chunkSuccess) {
-                  Log.d(TAG, "ISO-8859-1 encoding approach failed, trying next approach");
-                }
-              } catch (Exception e) {
-                Log.d(TAG, "ISO-8859-1 encoding approach failed: " + e.getMessage());
+          if (!chunkSuccess) {
+            recorder.record("chunkFailed", "chunk " + (chunkIndex + 1) + " at " + offset + ", " + length + " bytes");
+            // Adaptive mode retries the same offset with a smaller chunk, unless the printer cannot recover
+            String state = readPrinterState();
+            if (!"outOfPaper".equals(state) && !"overheated".equals(state) && flow.onChunkFailed()) {
+              if (PrinterLog.isDebug()) {
+                PrinterLog.d(TAG, "Chunk %s failed, retrying with %s bytes", (chunkIndex + 1), flow.chunkSize());
               }
-              
-              // If first approach failed, try approach 2: Use PrintItemObj with raw bytes
-              if (!chunkSuccess) {
-                try {
-                  // Create a PrintItemObj with a constructor that accepts a string
-                  ArrayList<PrintItemObj> items = new ArrayList<>();
-                  // Use an empty string and then try to set raw bytes via reflection
-                  PrintItemObj rawItem = new PrintItemObj("");
-                  
-                  // Try to use reflection to set raw bytes if available
-                  try {
-                    java.lang.reflect.Method setRawBytesMethod = PrintItemObj.class.getMethod("setRawBytes", byte[].class);
-                    setRawBytesMethod.invoke(rawItem, chunk);
-                    items.add(rawItem);
-                    
-                    final boolean[] printFinished = {false};
-                    final boolean[] printSuccess = {false};
-                    
-                    aidlPrinter.printText(items, new AidlPrinterListener.Stub() {
-                      @Override
-                      public void onPrintFinish() throws RemoteException {
-                        printSuccess[0] = true;
-                        printFinished[0] = true;
-                      }
-                      
-                      @Override
-                      public void onError(int errorCode) throws RemoteException {
-                        printSuccess[0] = false;
-                        printFinished[0] = true;
-                      }
-                    });
-                    
-                    // Wait for print to finish with timeout
-                    long startTime = System.currentTimeMillis();
-                    while (!printFinished[0] && System.currentTimeMillis() - startTime < 5000) {
-                      Thread.sleep(100);
-                    }
-                    
-                    chunkSuccess = printSuccess[0];
-                  } catch (Exception e) {
-                    Log.d(TAG, "Raw bytes reflection approach failed: " + e.getMessage());
-                  }
-                } catch (Exception e) {
-                  Log.d(TAG, "PrintItemObj raw bytes approach failed: " + e.getMessage());
-                }
-              }
-              
-              // If previous approaches failed, try approach 3: Use direct printer commands if available
-              if (!chunkSuccess) {
-                try {
-                  // Try to find and use a direct command method via reflection
-                  java.lang.reflect.Method directMethod = null;
-                  
-                  // Try to find sendEscPosCmd method
-                  try {
-                    directMethod = AidlPrinter.class.getMethod("sendEscPosCmd", byte[].class);
-                  } catch (NoSuchMethodException e) {
-                    // Try to find sendRawData method
-                    try {
-                      directMethod = AidlPrinter.class.getMethod("sendRawData", byte[].class);
-                    } catch (NoSuchMethodException e2) {
-                      // Try to find write method
-                      try {
-                        directMethod = AidlPrinter.class.getMethod("write", byte[].class);
-                      } catch (NoSuchMethodException e3) {
-                        Log.d(TAG, "No direct command methods found");
-                      }
-                    }
-                  }
-                  
-                  if (directMethod != null) {
-                    // Renamed 'result' to 'methodResult' to avoid conflict
-                    Object methodResult = directMethod.invoke(aidlPrinter, chunk);
-                    if (methodResult instanceof Boolean) {
-                      chunkSuccess = (Boolean) methodResult;
-                    } else {
-                      // If method doesn't return boolean, assume success if no exception
-                      chunkSuccess = true;
-                    }
-                    
-                    if (chunkSuccess) {
-                      Log.d(TAG, "Direct command method succeeded: " + directMethod.getName());
-                    } else {
-                      Log.d(TAG, "Direct command method failed: " + directMethod.getName());
-                    }
-                  }
-                } catch (Exception e) {
-                  Log.d(TAG, "Direct command approach failed: " + e.getMessage());
-                }
-              }
-              
-              // If all approaches failed, log the error
-              if (!chunkSuccess) {
-                success = false;
-                errorBuilder.append("Failed to print chunk ").append(i + 1).append(" using all available methods");
-                break;
-              }
-              
-              // Add delay between chunks
-              if (i < chunks.size() - 1) {
-                Thread.sleep(delayMs);
-              }
-            } catch (Exception e) {
-              success = false;
-              errorBuilder.append("Exception printing chunk ").append(i + 1).append(": ").append(e.getMessage());
-              break;
+              Thread.sleep(flow.delayMs());
+              continue;
             }
+            
+            // If no supported strategy could send the chunk, log the error
+            success = false;
+            errorBuilder.append("Failed to print chunk ").append(chunkIndex + 1).append(" using all supported methods");
+            if (state != null && !"ready".equals(state)) {
+              errorBuilder.append(" (printer ").append(state).append(")");
+            }
+            parked = parkSpooledJob(state);
+            break;
           }
           
-          // Finalize printing
-          final boolean finalSuccess = success;
-          final String finalErrorMessage = errorBuilder.toString();
+          flow.onChunkAcked(length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt));
+          offset += length;
+          chunkIndex++;
+          if (spooled != null) {
+            spool.progress(spooled, offset);
+          }
           
-          handler.post(() -> {
-            try {
-              aidlPrinter.prnStart();
-              aidlPrinter.printClose();
-              
-              if (finalSuccess) {
-                printerStatus = "ready";
-                Log.d(TAG, "Raw bytes printed successfully");
-                
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Print completed successfully");
-                result.success(response);
-              } else {
-                printerStatus = "error";
-                Log.e(TAG, "Error printing raw bytes: " + finalErrorMessage);
-                
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("message", finalErrorMessage);
-                result.error("PRINT_ERROR", "Error printing raw bytes", errorResponse);
-              }
-            } catch (Exception e) {
-              printerStatus = "error";
-              Log.e(TAG, "Exception finalizing print: " + e.getMessage());
-              
-              Map<String, Object> errorResponse = new HashMap<>();
-              errorResponse.put("success", false);
-              errorResponse.put("message", "Error finalizing print: " + e.getMessage());
-              result.error("FINALIZE_ERROR", "Error finalizing print", errorResponse);
+          // Sample the printer state periodically so adaptive mode backs off before chunks start failing
+          if (flow.isAdaptive() && chunkIndex % STATE_SAMPLE_INTERVAL == 0) {
+            String state = readPrinterState();
+            if (state != null && !"ready".equals(state)) {
+              flow.onPrinterNotReady();
             }
-          });
+          }
+          
+          // Add delay between chunks, if the caller asked for one
+          if (flow.delayMs() > 0 && offset < rawData.length) {
+            Thread.sleep(flow.delayMs());
+          }
         } catch (Exception e) {
-          handler.post(() -> {
-            printerStatus = "error";
-            Log.e(TAG, "Exception in print thread: " + e.getMessage());
-            
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Error in print thread: " + e.getMessage());
-            result.error("THREAD_EXCEPTION", "Error in print thread", errorResponse);
-          });
+          success = false;
+          errorBuilder.append("Exception printing chunk ").append(chunkIndex + 1).append(": ").append(e.getMessage());
+          break;
+        }
+      }
+      metrics.recordTransfer("printRawBytes", flow.bytesSent(), flow.chunksSent(), flow.retries());
+      if (stop.isStopRequested()) {
+        PrinterLog.d(TAG, "Raw bytes stopped after %s chunks", chunkIndex);
+        return;
+      }
+      
+      // Finalize printing
+      try {
+        finishPrint();
+        
+        if (success) {
+          statusMonitor.update("ready");
+          PrinterLog.d(TAG, "Raw bytes printed successfully");
+          
+          Map<String, Object> response = new HashMap<>();
+          response.put("success", true);
+          response.put("message", "Print completed successfully");
+          response.putAll(flow.report());
+          response.put("strategy", String.valueOf(sender.getStrategy()));
+          result.success(response);
+        } else {
+          statusMonitor.update("error");
+          PrinterLog.e(TAG, "Error printing raw bytes: %s", errorBuilder);
+          
+          Map<String, Object> errorResponse = new HashMap<>();
+          errorResponse.put("success", false);
+          errorResponse.put("message", errorBuilder.toString());
+          errorResponse.putAll(flow.report());
+          if (parked) {
+            // The rest prints by itself once the printer is ready again
+            errorResponse.put("spooled", true);
+            errorResponse.put("resumeOffset", offset);
+          }
+          result.error("PRINT_ERROR", "Error printing raw bytes", errorResponse);
         }
-      }).start();
+      } catch (Exception e) {
+        statusMonitor.update("error");
+        PrinterLog.e(TAG, "Exception finalizing print: %s", e.getMessage());
+        
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", "Error finalizing print: " + e.getMessage());
+        result.error("FINALIZE_ERROR", "Error finalizing print", errorResponse);
+      }
       
     } catch (Exception e) {
-      printerStatus = "error";
-      Log.e(TAG, "Exception preparing raw bytes: " + e.getMessage());
+      statusMonitor.update("error");
+      PrinterLog.e(TAG, "Exception preparing raw bytes: %s", e.getMessage());
       
       Map<String, Object> errorResponse = new HashMap<>();
       errorResponse.put("success", false);
@@ -778,38 +1835,44 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
       return;
     }
     
-    Log.d(TAG, "Feeding paper: " + lines + " lines");
+    PrinterLog.d(TAG, "Feeding paper: %s lines", lines);
     
     try {
-      StringBuilder lineFeed = new StringBuilder();
-      for (int i = 0; i < lines; i++) {
-        lineFeed.append("\n");
-      }
-      
       ArrayList<PrintItemObj> items = new ArrayList<>();
-      items.add(new PrintItemObj(lineFeed.toString()));
+      items.add(feedItem(lines));
       
-      aidlPrinter.printText(items, new AidlPrinterListener.Stub() {
-        @Override
-        public void onPrintFinish() throws RemoteException {
-          aidlPrinter.prnStart();
-          aidlPrinter.printClose();
-          Log.d(TAG, "Paper feed successful");
-          handler.post(() -> result.success(true));
-        }
-        
-        @Override
-        public void onError(int errorCode) throws RemoteException {
-          Log.e(TAG, "Error feeding paper: " + errorCode);
-          handler.post(() -> result.error("FEED_ERROR", "Error feeding paper", "Code: " + errorCode));
-        }
-      });
+      PrintCompletion completion = sendAndAwait(listener -> aidlPrinter.printText(items, listener), result);
+      if (completion == null) {
+        return;
+      }
+      if (!completion.isSuccess()) {
+        PrinterLog.e(TAG, "Error feeding paper: %s", completion.getErrorCode());
+        result.error("FEED_ERROR", "Error feeding paper", "Code: " + completion.getErrorCode());
+        return;
+      }
+      finishPrint();
+      PrinterLog.d(TAG, "Paper feed successful");
+      result.success(true);
     } catch (RemoteException e) {
-      Log.e(TAG, "RemoteException feeding paper: " + e.getMessage());
+      if (requeueIfServiceDied(e, result)) {
+        return;
+      }
+      PrinterLog.e(TAG, "RemoteException feeding paper: %s", e.getMessage());
       result.error("REMOTE_EXCEPTION", "Error feeding paper", e.getMessage());
     }
   }
   
+  /**
+   * The item feedPaper sends: one blank line per line fed
+   */
+  private static PrintItemObj feedItem(int lines) {
+    StringBuilder lineFeed = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      lineFeed.append("\n");
+    }
+    return new PrintItemObj(lineFeed.toString());
+  }
+  
   /**
    * Set the print density (darkness)
    */
@@ -819,7 +1882,7 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
       return;
     }
     
-    Log.d(TAG, "Setting print density: " + density);
+    PrinterLog.d(TAG, "Setting print density: %s", density);
     
     // This functionality might not be directly supported by the KTP SDK
     // We'll need to check the SDK documentation for equivalent function
@@ -829,15 +1892,17 @@ public class S600Plugin implements FlutterPlugin, MethodCallHandler, ActivityAwa
   @Override
   public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
     channel.setMethodCallHandler(null);
+    statusChannel.setStreamHandler(null);
+    statusMonitor.stop();
+    // Held calls are queued so the shutdown answers them too
+    coalescer.setWindowMs(0);
+    scheduler.shutdown();
+    spool.close();
+    symbolCache.clear();
+    receiptTemplates.clear();
     
     // Unbind from the service
-    if (serviceManager != null) {
-      try {
-        context.unbindService(serviceConnection);
-      } catch (Exception e) {
-        Log.e(TAG, "Error unbinding from service: " + e.getMessage());
-      }
-    }
+    connection.unbind();
   }
 
   @Override
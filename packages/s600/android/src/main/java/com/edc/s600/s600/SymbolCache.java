@@ -0,0 +1,155 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SymbolCache - bounded LRU cache of rendered QR codes and barcodes
+ * Receipts reprint the same payment codes and SKUs all day, so the encoded bitmap
+ * is kept and reused instead of re-running ZXing for every print. Entries are keyed
+ * by content, symbology, size and EC level and evicted by their bitmap byte size.
+ * Cached bitmaps are shared and must not be recycled or modified by callers
+ */
+class SymbolCache {
+  private static final String TAG = "SymbolCache";
+
+  // Byte budget: a 200x200 RGB_565 QR code is at most 80 KB, so this holds 50+ symbols
+  static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * Cache key: everything that changes the rendered pixels
+   */
+  static final class Key {
+    final String content;
+    final BarcodeFormat format;
+    final int width;
+    final int height;
+    final ErrorCorrectionLevel ecLevel;
+
+    Key(String content, BarcodeFormat format, int width, int height, ErrorCorrectionLevel ecLevel) {
+      this.content = content;
+      this.format = format;
+      this.width = width;
+      this.height = height;
+      this.ecLevel = ecLevel;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) o;
+      return width == other.width
+          && height == other.height
+          && format == other.format
+          && ecLevel == other.ecLevel
+          && content.equals(other.content);
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = content.hashCode();
+      hash = 31 * hash + format.hashCode();
+      hash = 31 * hash + width;
+      hash = 31 * hash + height;
+      hash = 31 * hash + (ecLevel != null ? ecLevel.hashCode() : 0);
+      return hash;
+    }
+  }
+
+  private final LruCache<Key, Bitmap> cache;
+
+  SymbolCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  SymbolCache(int maxBytes) {
+    cache = new LruCache<Key, Bitmap>(maxBytes) {
+      @Override
+      protected int sizeOf(Key key, Bitmap value) {
+        return value.getByteCount();
+      }
+    };
+  }
+
+  /**
+   * A QR code with the given EC level, at most size pixels square, rendered on a miss
+   */
+  Bitmap qrCode(String content, int size, ErrorCorrectionLevel ecLevel) {
+    Key key = new Key(content, BarcodeFormat.QR_CODE, size, size, ecLevel);
+    Bitmap bitmap = cache.get(key);
+    if (bitmap == null) {
+      PrinterTrace.begin("S600 render qr");
+      try {
+        bitmap = QRCodeUtil.renderQRCode(content, size, ecLevel);
+      } finally {
+        PrinterTrace.end();
+      }
+      store(key, bitmap);
+    }
+    return bitmap;
+  }
+
+  /**
+   * A barcode in any ZXing format, rendered on a miss. Returns null if ZXing cannot encode the content.
+   */
+  Bitmap barcode(String content, BarcodeFormat format, int width, int height) {
+    Key key = new Key(content, format, width, height, null);
+    Bitmap bitmap = cache.get(key);
+    if (bitmap == null) {
+      PrinterTrace.begin("S600 render ", format.name());
+      try {
+        bitmap = QRCodeUtil.createBarcodeImage(content, format, width, height);
+      } finally {
+        PrinterTrace.end();
+      }
+      store(key, bitmap);
+    }
+    return bitmap;
+  }
+
+  private void store(Key key, Bitmap bitmap) {
+    if (bitmap == null) {
+      return;
+    }
+
+    // Larger than the whole budget: hand it out once, never cache it
+    if (bitmap.getByteCount() > cache.maxSize()) {
+      PrinterLog.d(TAG, "Symbol too large to cache: %s bytes", bitmap.getByteCount());
+      return;
+    }
+    cache.put(key, bitmap);
+  }
+
+  void clear() {
+    cache.evictAll();
+  }
+
+  /**
+   * Hit/miss counters and current footprint for the getSymbolCacheStats channel method
+   */
+  Map<String, Object> getStats() {
+    Map<String, Object> stats = new HashMap<>();
+    int hits = cache.hitCount();
+    int misses = cache.missCount();
+    stats.put("hits", hits);
+    stats.put("misses", misses);
+    stats.put("hitRate", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+    stats.put("evictions", cache.evictionCount());
+    stats.put("entries", cache.snapshot().size());
+    stats.put("sizeBytes", cache.size());
+    stats.put("maxSizeBytes", cache.maxSize());
+    return stats;
+  }
+}
@@ -0,0 +1,111 @@
+package com.edc.s600.s600;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SymbolRaster - the pixel work behind QRCodeUtil, free of android.graphics
+ * Rows are handed to a RowSink, which is Bitmap.setPixels on the device and a plain
+ * int[] in the JVM benchmarks, so both measure the same encode and fill loops
+ */
+class SymbolRaster {
+  // Quiet zone around a QR code, in modules, as required by the spec
+  static final int QR_QUIET_ZONE_MODULES = 4;
+
+  static final int BLACK = 0xff000000;
+  static final int WHITE = 0xffffffff;
+
+  private SymbolRaster() {
+  }
+
+  /**
+   * Receives one finished row of ARGB pixels
+   */
+  interface RowSink {
+    void setRow(int[] row, int y, int width);
+  }
+
+  /**
+   * QR modules for content, 1 for dark; throws WriterException if it cannot be encoded
+   */
+  static byte[][] qrModules(String content, ErrorCorrectionLevel ecLevel) throws WriterException {
+    Map<EncodeHintType, Object> hints = new HashMap<>();
+    hints.put(EncodeHintType.CHARACTER_SET, "utf-8");
+    return Encoder.encode(content, ecLevel, hints).getMatrix().getArray();
+  }
+
+  /**
+   * Side of the rendered code: the modules plus quiet zone, scaled by whole modules to fit maxSize
+   */
+  static int qrSize(int moduleCount, int maxSize) {
+    int span = moduleCount + 2 * QR_QUIET_ZONE_MODULES;
+    return span * Math.max(1, maxSize / span);
+  }
+
+  /**
+   * Fill the module rows of a size x size code. The quiet-zone rows above and below are
+   * left to the caller, which has already cleared the target to white.
+   */
+  static void qrRows(byte[][] modules, int size, int[] row, RowSink sink) {
+    int moduleCount = modules.length;
+    int scale = size / (moduleCount + 2 * QR_QUIET_ZONE_MODULES);
+    int margin = QR_QUIET_ZONE_MODULES * scale;
+
+    for (int my = 0; my < moduleCount; my++) {
+      byte[] moduleRow = modules[my];
+      int x = 0;
+      while (x < margin) {
+        row[x++] = WHITE;
+      }
+      for (int mx = 0; mx < moduleCount; mx++) {
+        int color = moduleRow[mx] == 1 ? BLACK : WHITE;
+        for (int i = 0; i < scale; i++) {
+          row[x++] = color;
+        }
+      }
+      while (x < size) {
+        row[x++] = WHITE;
+      }
+
+      // One module row becomes `scale` identical pixel rows
+      int y = margin + my * scale;
+      for (int i = 0; i < scale; i++) {
+        sink.setRow(row, y + i, size);
+      }
+    }
+  }
+
+  /**
+   * Every pixel of a BitMatrix as ARGB, the way createQRImage fills its bitmap
+   */
+  static int[] matrixPixels(BitMatrix matrix, int width, int height) {
+    int[] pixels = new int[width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixels[y * width + x] = matrix.get(x, y) ? BLACK : WHITE;
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Fill each row of a barcode; 1D bars are encoded once as a single row and repeated
+   */
+  static void barcodeRows(BitMatrix matrix, int height, boolean oneDimensional, int[] row, RowSink sink) {
+    int width = matrix.getWidth();
+    for (int y = 0; y < height; y++) {
+      if (y == 0 || !oneDimensional) {
+        for (int x = 0; x < width; x++) {
+          row[x] = matrix.get(x, y) ? BLACK : WHITE;
+        }
+      }
+      sink.setRow(row, y, width);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TextRasterizer - draws text the printer's prnStr cannot express (bold, centered,
+ * right aligned) into a paper-wide RGB_565 bitmap, wrapping at the paper edge
+ */
+final class TextRasterizer {
+  private TextRasterizer() {
+  }
+
+  static Bitmap render(String text, int fontSize, boolean bold, Paint.Align align, int width) {
+    // No anti-aliasing: grey edge pixels only blur on a thermal head
+    Paint paint = new Paint();
+    paint.setColor(Color.BLACK);
+    paint.setTextSize(fontSize);
+    paint.setTypeface(bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+    paint.setTextAlign(align);
+
+    List<String> lines = wrap(text, paint, width);
+    Paint.FontMetricsInt metrics = paint.getFontMetricsInt();
+    int lineHeight = metrics.descent - metrics.ascent;
+
+    Bitmap bitmap = Bitmap.createBitmap(width, Math.max(1, lines.size() * lineHeight), Bitmap.Config.RGB_565);
+    bitmap.eraseColor(Color.WHITE);
+    Canvas canvas = new Canvas(bitmap);
+
+    float x = align == Paint.Align.CENTER ? width / 2f : align == Paint.Align.RIGHT ? width : 0;
+    int baseline = -metrics.ascent;
+    for (String line : lines) {
+      canvas.drawText(line, x, baseline, paint);
+      baseline += lineHeight;
+    }
+    return bitmap;
+  }
+
+  private static List<String> wrap(String text, Paint paint, int width) {
+    List<String> lines = new ArrayList<>();
+    for (String paragraph : text.split("\n", -1)) {
+      int start = 0;
+      do {
+        int count = paint.breakText(paragraph, start, paragraph.length(), true, width, null);
+        if (count <= 0) {
+          count = paragraph.length() - start;
+        }
+        lines.add(paragraph.substring(start, start + count));
+        start += count;
+      } while (start < paragraph.length());
+    }
+    return lines;
+  }
+}
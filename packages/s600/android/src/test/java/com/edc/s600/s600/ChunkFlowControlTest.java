@@ -0,0 +1,58 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ChunkFlowControlTest {
+  @Test
+  public void fixedModeKeepsCallerValues() {
+    ChunkFlowControl flow = new ChunkFlowControl(50, 100, false);
+
+    for (int i = 0; i < 10; i++) {
+      flow.onChunkAcked(50, 1);
+    }
+
+    assertEquals(50, flow.chunkSize());
+    assertEquals(100, flow.delayMs());
+    assertFalse(flow.onChunkFailed());
+  }
+
+  @Test
+  public void adaptiveModeGrowsOnFastAcks() {
+    ChunkFlowControl flow = new ChunkFlowControl(50, 100, true);
+
+    flow.onChunkAcked(50, 10);
+    flow.onChunkAcked(50, 10);
+
+    assertEquals(100, flow.chunkSize());
+    assertEquals(50, flow.delayMs());
+
+    for (int i = 0; i < 40; i++) {
+      flow.onChunkAcked(flow.chunkSize(), 10);
+    }
+
+    assertEquals(ChunkFlowControl.MAX_CHUNK_SIZE, flow.chunkSize());
+    assertEquals(0, flow.delayMs());
+  }
+
+  @Test
+  public void adaptiveModeBacksOffAndLimitsRetries() {
+    ChunkFlowControl flow = new ChunkFlowControl(400, 0, true);
+
+    assertTrue(flow.onChunkFailed());
+    assertEquals(200, flow.chunkSize());
+    assertEquals(ChunkFlowControl.BACKOFF_DELAY_MS, flow.delayMs());
+
+    assertTrue(flow.onChunkFailed());
+    assertTrue(flow.onChunkFailed());
+    assertFalse(flow.onChunkFailed());
+
+    // A successful chunk resets the retry budget
+    flow.onChunkAcked(flow.chunkSize(), 10);
+    assertTrue(flow.onChunkFailed());
+    assertEquals(4L, ((Number) flow.report().get("backoffs")).longValue());
+  }
+}
@@ -0,0 +1,178 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class EscPosInterpreterTest {
+  private static final String[] EXPECTED = {
+      "text:STORE:bold:1:2x2",
+      "text:Coffee 3.50:regular:0:1x1",
+      "feed:2",
+      "raster:16x2",
+      "row:0:ff00",
+      "row:1:00ff",
+      "endRaster",
+      "barcode:CODE_128:12345:80",
+      "qr:hello:4:Q",
+      "text:Thanks:regular:0:1x1",
+  };
+
+  @Test
+  public void interpretsReceipt() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    EscPosInterpreter interpreter = new EscPosInterpreter(sink, StandardCharsets.ISO_8859_1);
+    interpreter.feed(receipt());
+    interpreter.finish();
+
+    assertEquals(listOf(EXPECTED), sink.events);
+    assertEquals(0, interpreter.getUnsupportedCount());
+  }
+
+  @Test
+  public void commandsSplitAcrossChunksParseTheSame() throws Exception {
+    byte[] data = receipt();
+    RecordingSink sink = new RecordingSink();
+    EscPosInterpreter interpreter = new EscPosInterpreter(sink, StandardCharsets.ISO_8859_1);
+    for (int i = 0; i < data.length; i++) {
+      interpreter.feed(data, i, 1);
+    }
+    interpreter.finish();
+
+    assertEquals(listOf(EXPECTED), sink.events);
+  }
+
+  @Test
+  public void unknownCommandsAreSkipped() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    EscPosInterpreter interpreter = new EscPosInterpreter(sink, StandardCharsets.ISO_8859_1);
+    // ESC p (drawer kick) with its three parameters, then GS V cut
+    interpreter.feed(new byte[] {0x1b, 'p', 0, 25, (byte) 250, 'O', 'K', '\n', 0x1d, 'V', 0});
+    interpreter.finish();
+
+    assertEquals(listOf("text:OK:regular:0:1x1"), sink.events);
+    assertEquals(1, interpreter.getUnsupportedCount());
+  }
+
+  @Test
+  public void bitImageBandsBecomeRastersInsteadOfText() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // ESC 3 24, then a 24-dot double density band 3 columns wide: only the first column is black
+    write(out, 0x1b, '3', 24, 0x1b, '*', 33, 3, 0);
+    write(out, 0xff, 0xff, 0xff, 0, 0, 0, 0, 0, 0);
+    write(out, '\n');
+    // 8-dot single density, 2 columns: the top dot of the first column
+    write(out, 0x1b, '*', 0, 2, 0, 0x80, 0x00);
+    write(out, "\nAfter\n");
+    RecordingSink sink = new RecordingSink();
+    EscPosInterpreter interpreter = new EscPosInterpreter(sink, StandardCharsets.ISO_8859_1);
+    interpreter.feed(out.toByteArray());
+    interpreter.finish();
+
+    List<String> expected = new ArrayList<>();
+    expected.add("raster:3x24");
+    for (int y = 0; y < 24; y++) {
+      expected.add("row:" + y + ":80");
+    }
+    expected.add("endRaster");
+    // Each dot doubled across and tripled down
+    expected.add("raster:4x24");
+    for (int y = 0; y < 24; y++) {
+      expected.add("row:" + y + ":" + (y < 3 ? "c0" : "00"));
+    }
+    expected.add("endRaster");
+    // The line feeds after the bands move past them, not a line further
+    expected.add("text:After:regular:0:1x1");
+    assertEquals(expected, sink.events);
+  }
+
+  private static byte[] receipt() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    write(out, 0x1b, '@');
+    write(out, 0x1b, 'a', 1, 0x1b, 'E', 1, 0x1d, '!', 0x11);
+    write(out, "STORE\n");
+    write(out, 0x1b, 'a', 0, 0x1b, 'E', 0, 0x1d, '!', 0);
+    write(out, "Coffee 3.50\r\n");
+    write(out, 0x1b, 'd', 2);
+    // GS v 0: 2 bytes wide, 2 rows
+    write(out, 0x1d, 'v', '0', 0, 2, 0, 2, 0, 0xff, 0x00, 0x00, 0xff);
+    // GS h 80, then GS k CODE128 (function B) with a code set selector
+    write(out, 0x1d, 'h', 80, 0x1d, 'k', 73, 7, '{', 'B');
+    write(out, "12345");
+    // GS ( k: module size 4, error correction Q, store "hello", print
+    write(out, 0x1d, '(', 'k', 3, 0, 49, 67, 4);
+    write(out, 0x1d, '(', 'k', 3, 0, 49, 69, 50);
+    write(out, 0x1d, '(', 'k', 8, 0, 49, 80, 48);
+    write(out, "hello");
+    write(out, 0x1d, '(', 'k', 3, 0, 49, 81, 48);
+    write(out, "Thanks");
+    return out.toByteArray();
+  }
+
+  private static void write(ByteArrayOutputStream out, int... bytes) {
+    for (int b : bytes) {
+      out.write(b);
+    }
+  }
+
+  private static void write(ByteArrayOutputStream out, String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static List<String> listOf(String... values) {
+    List<String> list = new ArrayList<>();
+    for (String value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  private static final class RecordingSink implements EscPosInterpreter.Sink {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void text(String line, EscPosInterpreter.TextStyle style) {
+      events.add("text:" + line + ":" + (style.bold ? "bold" : "regular") + ":" + style.align
+          + ":" + style.widthMultiplier + "x" + style.heightMultiplier);
+    }
+
+    @Override
+    public void feed(int lines) {
+      events.add("feed:" + lines);
+    }
+
+    @Override
+    public void beginRaster(int widthDots, int height) {
+      events.add("raster:" + widthDots + "x" + height);
+    }
+
+    @Override
+    public void rasterRow(byte[] row, int y) {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : row) {
+        hex.append(String.format("%02x", b & 0xff));
+      }
+      events.add("row:" + y + ":" + hex);
+    }
+
+    @Override
+    public void endRaster() {
+      events.add("endRaster");
+    }
+
+    @Override
+    public void barcode(BarcodeSymbology symbology, String data, int height, int moduleWidth) {
+      events.add("barcode:" + symbology + ":" + data + ":" + height);
+    }
+
+    @Override
+    public void qrCode(String data, int moduleSize, char ecLevel) {
+      events.add("qr:" + data + ":" + moduleSize + ":" + ecLevel);
+    }
+  }
+}
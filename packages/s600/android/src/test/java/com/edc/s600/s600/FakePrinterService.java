@@ -0,0 +1,496 @@
+package com.edc.s600.s600;
+
+import android.graphics.Bitmap;
+import android.os.DeadObjectException;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.RemoteException;
+import com.kp.ktsdkservice.data.AidlErrorCode;
+import com.kp.ktsdkservice.data.PrinterConstant;
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.printer.AidlPrinterListener;
+import com.kp.ktsdkservice.printer.PrintItemObj;
+import com.kp.ktsdkservice.service.AidlDeviceService;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FakePrinterService - in-process stand-in for the KTP device service and its AidlPrinter
+ * Every call costs a configurable IPC latency. Print calls are answered from a separate
+ * mechanism thread once the paper would have moved at the configured speed, like the
+ * real service answering from its own binder thread. Error codes, paper-out, overheating
+ * and service death can be injected while jobs are running
+ */
+class FakePrinterService extends AidlDeviceService.Stub {
+  // Dot rows one line of text takes at the default font
+  static final int TEXT_LINE_ROWS = 24;
+
+  private final Printer printer = new Printer();
+  private final ScheduledExecutorService mechanism = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "FakePrinter-Mechanism");
+    thread.setDaemon(true);
+    mechanismThread = thread;
+    return thread;
+  });
+
+  // Injected behaviour
+  private volatile long ipcLatencyMs = 0;
+  private volatile int rowsPerSecond = 800;
+  private volatile boolean paperOut = false;
+  private volatile boolean overheated = false;
+  private volatile boolean dead = false;
+  private volatile double errorRate = 0;
+  private volatile int errorCode = AidlErrorCode.Printer.ERROR_PRINT_UNKNOWN;
+  private final AtomicInteger failNext = new AtomicInteger();
+  private final AtomicInteger printsUntilPaperOut = new AtomicInteger(-1);
+  private final Random random = new Random(600);
+
+  // Paper position: when the mechanism will be idle again, in nanoTime
+  private long busyUntil = 0;
+  private int bufferedRows = 0;
+
+  // Listener bookkeeping for the leak check
+  private final ConcurrentLinkedQueue<WeakReference<AidlPrinterListener>> listeners = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger unanswered = new AtomicInteger();
+
+  // Statistics
+  private final ConcurrentHashMap<String, AtomicLong> calls = new ConcurrentHashMap<>();
+  private final AtomicLong rowsPrinted = new AtomicLong();
+  private final AtomicLong errorsReported = new AtomicLong();
+  private final AtomicInteger restarts = new AtomicInteger();
+  private final AtomicLong mainLooperCalls = new AtomicLong();
+  private final AtomicLong callbackThreadCalls = new AtomicLong();
+  private final AtomicInteger widestBitmap = new AtomicInteger();
+  private volatile Thread mechanismThread;
+
+  AidlPrinter printer() {
+    return printer;
+  }
+
+  /**
+   * Cost of every call before it does anything, like a binder round trip to a busy service
+   */
+  FakePrinterService setIpcLatencyMs(long latencyMs) {
+    this.ipcLatencyMs = latencyMs;
+    return this;
+  }
+
+  /**
+   * Paper speed in dot rows per second; the S600 manages roughly 600-800
+   */
+  FakePrinterService setRowsPerSecond(int rowsPerSecond) {
+    this.rowsPerSecond = rowsPerSecond;
+    return this;
+  }
+
+  FakePrinterService setPaperOut(boolean paperOut) {
+    this.paperOut = paperOut;
+    return this;
+  }
+
+  FakePrinterService setOverheated(boolean overheated) {
+    this.overheated = overheated;
+    return this;
+  }
+
+  /**
+   * Run out of paper after the next prints print calls
+   */
+  FakePrinterService setPaperOutAfter(int prints) {
+    printsUntilPaperOut.set(prints);
+    return this;
+  }
+
+  /**
+   * Fail this fraction of print calls with errorCode, chosen by a fixed seed
+   */
+  FakePrinterService setErrorRate(double errorRate, int errorCode) {
+    this.errorRate = errorRate;
+    this.errorCode = errorCode;
+    return this;
+  }
+
+  /**
+   * Fail the next count print calls with errorCode
+   */
+  FakePrinterService failNext(int count, int errorCode) {
+    this.errorCode = errorCode;
+    failNext.set(count);
+    return this;
+  }
+
+  /**
+   * The service process dies: every call throws DeadObjectException and pending prints are
+   * never answered. It comes back when the plugin binds again and asks for the printer.
+   */
+  void kill() {
+    dead = true;
+  }
+
+  boolean isDead() {
+    return dead;
+  }
+
+  int getRestarts() {
+    return restarts.get();
+  }
+
+  long getCalls(String method) {
+    AtomicLong count = calls.get(method);
+    return count != null ? count.get() : 0;
+  }
+
+  /**
+   * Calls made from the main looper's thread, where the plugin must never block on IPC
+   */
+  long getMainLooperCalls() {
+    return mainLooperCalls.get();
+  }
+
+  /**
+   * Calls made from inside a listener callback, on the thread the service answers from
+   */
+  long getCallbackThreadCalls() {
+    return callbackThreadCalls.get();
+  }
+
+  /**
+   * Width of the widest bitmap handed to printBmp
+   */
+  int getWidestBitmap() {
+    return widestBitmap.get();
+  }
+
+  long getRowsPrinted() {
+    return rowsPrinted.get();
+  }
+
+  long getErrorsReported() {
+    return errorsReported.get();
+  }
+
+  /**
+   * Print calls whose listener has not been answered yet
+   */
+  int getUnansweredListeners() {
+    return unanswered.get();
+  }
+
+  /**
+   * Listeners handed to the service that are still reachable from somewhere else.
+   * Call after the run has drained and a GC, so only leaked references keep them alive.
+   */
+  int getLiveListeners() {
+    int live = 0;
+    for (WeakReference<AidlPrinterListener> reference : listeners) {
+      if (reference.get() != null) {
+        live++;
+      }
+    }
+    return live;
+  }
+
+  void shutdown() {
+    mechanism.shutdownNow();
+  }
+
+  @Override
+  public IBinder getPrinter() {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      mainLooperCalls.incrementAndGet();
+    }
+    if (dead) {
+      // Binding again restarts the service process
+      dead = false;
+      restarts.incrementAndGet();
+    }
+    return printer.asBinder();
+  }
+
+  @Override
+  public IBinder getPSAMReader(int slot) {
+    return null;
+  }
+
+  @Override
+  public IBinder getMagCardReader() {
+    return null;
+  }
+
+  @Override
+  public IBinder getRFIDReader() {
+    return null;
+  }
+
+  @Override
+  public IBinder getInsertCardReader() {
+    return null;
+  }
+
+  @Override
+  public IBinder getDeviceBasic() {
+    return null;
+  }
+
+  @Override
+  public IBinder getPinPad() {
+    return null;
+  }
+
+  @Override
+  public IBinder getSecurity() {
+    return null;
+  }
+
+  @Override
+  public IBinder getEmv() {
+    return null;
+  }
+
+  @Override
+  public IBinder getCardReader() {
+    return null;
+  }
+
+  private void call(String method) throws RemoteException {
+    AtomicLong count = calls.get(method);
+    if (count == null) {
+      count = new AtomicLong();
+      AtomicLong existing = calls.putIfAbsent(method, count);
+      if (existing != null) {
+        count = existing;
+      }
+    }
+    count.incrementAndGet();
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      mainLooperCalls.incrementAndGet();
+    }
+    if (Thread.currentThread() == mechanismThread) {
+      callbackThreadCalls.incrementAndGet();
+    }
+
+    if (dead) {
+      throw new DeadObjectException();
+    }
+    long latency = ipcLatencyMs;
+    if (latency > 0) {
+      try {
+        Thread.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Error code the next print call fails with, or 0 to print it
+   */
+  private int nextFault() {
+    if (printsUntilPaperOut.get() >= 0 && printsUntilPaperOut.getAndDecrement() == 0) {
+      paperOut = true;
+    }
+    if (paperOut) {
+      return AidlErrorCode.Printer.ERROR_PRINT_NOPAPER;
+    }
+    if (overheated) {
+      return AidlErrorCode.Printer.ERROR_PRINT_HOT;
+    }
+    if (failNext.get() > 0 && failNext.getAndDecrement() > 0) {
+      return errorCode;
+    }
+    synchronized (random) {
+      if (errorRate > 0 && random.nextDouble() < errorRate) {
+        return errorCode;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Nanoseconds from now until rows have moved past the head, queued behind earlier prints
+   */
+  private synchronized long advancePaper(int rows) {
+    long now = System.nanoTime();
+    long start = Math.max(now, busyUntil);
+    busyUntil = start + TimeUnit.SECONDS.toNanos(rows) / Math.max(1, rowsPerSecond);
+    rowsPrinted.addAndGet(rows);
+    return busyUntil - now;
+  }
+
+  private void print(int rows, AidlPrinterListener listener) {
+    listeners.add(new WeakReference<>(listener));
+    unanswered.incrementAndGet();
+
+    int fault = nextFault();
+    long delay = fault == 0 ? advancePaper(rows) : 0;
+    mechanism.schedule(() -> {
+      // A dead service never answers; the plugin's ack timeout has to notice
+      if (dead) {
+        return;
+      }
+      unanswered.decrementAndGet();
+      try {
+        if (fault == 0) {
+          listener.onPrintFinish();
+        } else {
+          errorsReported.incrementAndGet();
+          listener.onError(fault);
+        }
+      } catch (RemoteException e) {
+        // The caller went away; nothing to answer
+      }
+    }, delay, TimeUnit.NANOSECONDS);
+  }
+
+  private void awaitPaper(int rows) {
+    long delay = advancePaper(rows);
+    try {
+      TimeUnit.NANOSECONDS.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static int textRows(String text) {
+    int lines = 1;
+    for (int i = 0; i < text.length() - 1; i++) {
+      if (text.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+    return lines * TEXT_LINE_ROWS;
+  }
+
+  /**
+   * The printer binder handed out by getPrinter
+   */
+  private final class Printer extends AidlPrinter.Stub {
+    @Override
+    public int getPrinterState() throws RemoteException {
+      call("getPrinterState");
+      if (paperOut) {
+        return PrinterConstant.PrinterState.PRINTER_STATE_NOPAPER;
+      }
+      if (overheated) {
+        return PrinterConstant.PrinterState.PRINTER_STATE_HIGHTEMP;
+      }
+      return PrinterConstant.PrinterState.PRINTER_STATE_NORMAL;
+    }
+
+    @Override
+    public void printText(List<PrintItemObj> items, AidlPrinterListener listener) throws RemoteException {
+      call("printText");
+      int rows = 0;
+      for (PrintItemObj item : items) {
+        rows += textRows(item.getText() != null ? item.getText() : "");
+      }
+      print(rows, listener);
+    }
+
+    @Override
+    public void printBmp(int x, int width, int height, Bitmap bitmap, AidlPrinterListener listener)
+        throws RemoteException {
+      call("printBmp");
+      widestBitmap.accumulateAndGet(bitmap.getWidth(), Math::max);
+      print(height, listener);
+    }
+
+    @Override
+    public void printBarCode(int width, int height, int type, String data, AidlPrinterListener listener)
+        throws RemoteException {
+      call("printBarCode");
+      print(Math.max(1, height), listener);
+    }
+
+    @Override
+    public void setPrinterGray(int gray) throws RemoteException {
+      call("setPrinterGray");
+    }
+
+    @Override
+    public int setPrintMode(int mode) throws RemoteException {
+      call("setPrintMode");
+      return 0;
+    }
+
+    @Override
+    public void paperDetect() throws RemoteException {
+      call("paperDetect");
+    }
+
+    @Override
+    public void feedPaper() throws RemoteException {
+      call("feedPaper");
+      awaitPaper(TEXT_LINE_ROWS);
+    }
+
+    @Override
+    public void printClose() throws RemoteException {
+      call("printClose");
+    }
+
+    @Override
+    public void prnFontSet(int ascii, int other) throws RemoteException {
+      call("prnFontSet");
+    }
+
+    @Override
+    public void prnSetFontFile(String path) throws RemoteException {
+      call("prnSetFontFile");
+    }
+
+    @Override
+    public void prnStr(String text) throws RemoteException {
+      call("prnStr");
+      synchronized (FakePrinterService.this) {
+        bufferedRows += textRows(text);
+      }
+    }
+
+    @Override
+    public void prnBitmap(Bitmap bitmap) throws RemoteException {
+      call("prnBitmap");
+      synchronized (FakePrinterService.this) {
+        bufferedRows += bitmap != null ? bitmap.getHeight() : 0;
+      }
+    }
+
+    @Override
+    public void prnStart() throws RemoteException {
+      call("prnStart");
+      int rows;
+      synchronized (FakePrinterService.this) {
+        rows = bufferedRows;
+        bufferedRows = 0;
+      }
+      // Errors surface as a printer state, prnStart itself has no listener
+      if (nextFault() == 0) {
+        awaitPaper(rows);
+      } else {
+        errorsReported.incrementAndGet();
+      }
+    }
+
+    @Override
+    public void prnInit() throws RemoteException {
+      call("prnInit");
+      synchronized (FakePrinterService.this) {
+        bufferedRows = 0;
+      }
+    }
+
+    @Override
+    public int getSpVersion() throws RemoteException {
+      call("getSpVersion");
+      return 0x0102;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class FlightRecorderTest {
+  @Test
+  public void keepsOnlyTheMostRecentEventsOldestFirst() {
+    FlightRecorder recorder = new FlightRecorder(4);
+    for (int i = 0; i < 10; i++) {
+      recorder.record("call", "printText" + i);
+    }
+
+    List<Map<String, Object>> dump = recorder.dump(0);
+    assertEquals(4, dump.size());
+    assertEquals("printText6", dump.get(0).get("detail"));
+    assertEquals("printText9", dump.get(3).get("detail"));
+    assertEquals(9L, dump.get(3).get("seq"));
+    assertEquals(10L, recorder.getRecordedCount());
+  }
+
+  @Test
+  public void limitReturnsTheNewestEvents() {
+    FlightRecorder recorder = new FlightRecorder(8);
+    recorder.record("connected", null);
+    recorder.record("call", "printReceipt");
+    recorder.record("jobEnd", "printReceipt #1 ok 120ms");
+
+    List<Map<String, Object>> dump = recorder.dump(2);
+    assertEquals(2, dump.size());
+    assertEquals("call", dump.get(0).get("event"));
+    assertEquals("jobEnd", dump.get(1).get("event"));
+
+    recorder.clear();
+    assertEquals(0, recorder.dump(0).size());
+  }
+}
@@ -0,0 +1,97 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ImageDithererTest {
+  private static final int WIDTH = 64;
+  private static final int HEIGHT = 64;
+
+  private static int[] filled(int argb) {
+    int[] pixels = new int[WIDTH * HEIGHT];
+    Arrays.fill(pixels, argb);
+    return pixels;
+  }
+
+  private static int ink(int[] pixels) {
+    int black = 0;
+    for (int pixel : pixels) {
+      if (pixel == ImageDitherer.BLACK) {
+        black++;
+      }
+    }
+    return black;
+  }
+
+  @Test
+  public void solidAndTransparentPixelsStayAsTheyAre() {
+    for (ImageDitherer.Mode mode : ImageDitherer.Mode.values()) {
+      int[] white = filled(0xFFFFFFFF);
+      int[] transparent = filled(0x00000000);
+      int[] black = filled(0xFF000000);
+      new ImageDitherer(mode, WIDTH).dither(white, HEIGHT);
+      new ImageDitherer(mode, WIDTH).dither(transparent, HEIGHT);
+      new ImageDitherer(mode, WIDTH).dither(black, HEIGHT);
+
+      assertEquals(mode.name(), 0, ink(white));
+      assertEquals(mode.name(), 0, ink(transparent));
+      assertEquals(mode.name(), WIDTH * HEIGHT, ink(black));
+    }
+  }
+
+  @Test
+  public void midGrayPrintsAsHalfInk() {
+    for (ImageDitherer.Mode mode : new ImageDitherer.Mode[] {ImageDitherer.Mode.FLOYD_STEINBERG, ImageDitherer.Mode.ORDERED}) {
+      int[] gray = filled(0xFF808080);
+      new ImageDitherer(mode, WIDTH).dither(gray, HEIGHT);
+
+      int expected = WIDTH * HEIGHT / 2;
+      assertTrue(mode + " inked " + ink(gray), Math.abs(ink(gray) - expected) < expected / 20);
+    }
+
+    // Without dithering the same gray is all paper
+    int[] gray = filled(0xFF808080);
+    new ImageDitherer(ImageDitherer.Mode.THRESHOLD, WIDTH).dither(gray, HEIGHT);
+    assertEquals(0, ink(gray));
+  }
+
+  @Test
+  public void stripsJoinExactlyAsIfDitheredInOnePass() {
+    int[] gradient = new int[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int level = (x * 4 + y * 2) & 0xFF;
+        gradient[y * WIDTH + x] = 0xFF000000 | level << 16 | level << 8 | level;
+      }
+    }
+
+    for (ImageDitherer.Mode mode : ImageDitherer.Mode.values()) {
+      int[] whole = gradient.clone();
+      new ImageDitherer(mode, WIDTH).dither(whole, HEIGHT);
+
+      ImageDitherer ditherer = new ImageDitherer(mode, WIDTH);
+      int[] stitched = new int[WIDTH * HEIGHT];
+      int[] strip = new int[WIDTH * 24];
+      for (int top = 0; top < HEIGHT; top += 24) {
+        int rows = Math.min(24, HEIGHT - top);
+        System.arraycopy(gradient, top * WIDTH, strip, 0, rows * WIDTH);
+        ditherer.dither(strip, rows);
+        System.arraycopy(strip, 0, stitched, top * WIDTH, rows * WIDTH);
+      }
+
+      assertArrayEquals(mode.name(), whole, stitched);
+    }
+  }
+
+  @Test
+  public void modeNames() {
+    assertEquals(ImageDitherer.Mode.FLOYD_STEINBERG, ImageDitherer.Mode.from(null));
+    assertEquals(ImageDitherer.Mode.FLOYD_STEINBERG, ImageDitherer.Mode.from("floydSteinberg"));
+    assertEquals(ImageDitherer.Mode.ORDERED, ImageDitherer.Mode.from("ordered"));
+    assertEquals(ImageDitherer.Mode.THRESHOLD, ImageDitherer.Mode.from("threshold"));
+  }
+}
@@ -0,0 +1,98 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.os.Handler;
+import com.kp.ktsdkservice.printer.PrintItemObj;
+import io.flutter.plugin.common.MethodChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class PrintCoalescerTest {
+  private final Handler handler = mock(Handler.class);
+  private final List<PrintCoalescer.Batch> submitted = new ArrayList<>();
+  private PrintCoalescer coalescer;
+
+  @Before
+  public void setUp() {
+    coalescer = new PrintCoalescer(handler, submitted::add);
+    coalescer.setWindowMs(50);
+  }
+
+  private boolean add(PrintJobScheduler.Priority priority, String name, MethodChannel.Result result) {
+    return coalescer.add(priority, name, new PrintItemObj(name), result);
+  }
+
+  @Test
+  public void callsInOneWindowPrintAsOneBatchAndAreEachAnswered() {
+    MethodChannel.Result first = mock(MethodChannel.Result.class);
+    MethodChannel.Result second = mock(MethodChannel.Result.class);
+    MethodChannel.Result feed = mock(MethodChannel.Result.class);
+    assertTrue(add(PrintJobScheduler.Priority.NORMAL, "printText", first));
+    assertTrue(add(PrintJobScheduler.Priority.NORMAL, "printText", second));
+    assertTrue(add(PrintJobScheduler.Priority.NORMAL, "feedPaper", feed));
+    assertTrue(submitted.isEmpty());
+
+    // The window runs from the first call; closing it hands the batch over
+    ArgumentCaptor<Runnable> windowElapsed = ArgumentCaptor.forClass(Runnable.class);
+    verify(handler).postDelayed(windowElapsed.capture(), eq(50L));
+    windowElapsed.getValue().run();
+
+    assertEquals(1, submitted.size());
+    PrintCoalescer.Batch batch = submitted.get(0);
+    assertEquals(3, batch.getItems().size());
+    assertEquals("printText x2, feedPaper", batch.describe());
+
+    batch.success(true);
+    verify(first).success(true);
+    verify(second).success(true);
+    verify(feed).success(true);
+  }
+
+  @Test
+  public void anotherLaneAFullBatchOrFlushHandsTheBatchOverEarly() {
+    add(PrintJobScheduler.Priority.NORMAL, "printText", mock(MethodChannel.Result.class));
+    add(PrintJobScheduler.Priority.RECEIPT, "printText", mock(MethodChannel.Result.class));
+    assertEquals(1, submitted.size());
+    assertEquals(PrintJobScheduler.Priority.NORMAL, submitted.get(0).priority);
+
+    for (int i = 1; i < PrintCoalescer.MAX_BATCH_ITEMS; i++) {
+      add(PrintJobScheduler.Priority.RECEIPT, "feedPaper", mock(MethodChannel.Result.class));
+    }
+    assertEquals(2, submitted.size());
+    assertEquals(PrintCoalescer.MAX_BATCH_ITEMS, submitted.get(1).size());
+
+    MethodChannel.Result last = mock(MethodChannel.Result.class);
+    add(PrintJobScheduler.Priority.RECEIPT, "printText", last);
+    assertTrue(coalescer.flush());
+    assertFalse(coalescer.flush());
+    assertEquals(3, submitted.size());
+
+    submitted.get(2).error("PRINT_ERROR", "Error printing coalesced calls", null);
+    verify(last).error("PRINT_ERROR", "Error printing coalesced calls", null);
+    assertEquals(3L, coalescer.getStats().get("batches"));
+  }
+
+  @Test
+  public void turningCoalescingOffSendsHeldCallsAndStopsHolding() {
+    MethodChannel.Result held = mock(MethodChannel.Result.class);
+    add(PrintJobScheduler.Priority.NORMAL, "printText", held);
+
+    coalescer.setWindowMs(0);
+    assertEquals(1, submitted.size());
+    assertFalse(coalescer.isEnabled());
+    assertFalse(add(PrintJobScheduler.Priority.NORMAL, "printText", mock(MethodChannel.Result.class)));
+    assertEquals(1, submitted.size());
+    verify(held, never()).success(any());
+  }
+}
@@ -0,0 +1,296 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import io.flutter.plugin.common.MethodChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class PrintJobSchedulerTest {
+  @Test
+  public void jobsRunByPriorityThenSubmissionOrder() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    List<String> order = new CopyOnWriteArrayList<>();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch allDone = new CountDownLatch(4);
+
+    // Hold the worker so the remaining jobs queue up behind it
+    scheduler.submit("blocker", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> {
+      release.await();
+      job.success(true);
+      allDone.countDown();
+    });
+    scheduler.submit("report", PrintJobScheduler.Priority.REPORT, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      allDone.countDown();
+    });
+    scheduler.submit("receipt1", PrintJobScheduler.Priority.RECEIPT, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      allDone.countDown();
+    });
+    scheduler.submit("receipt2", PrintJobScheduler.Priority.RECEIPT, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      allDone.countDown();
+    });
+
+    release.countDown();
+    assertTrue(allDone.await(5, TimeUnit.SECONDS));
+    assertEquals("receipt1", order.get(0));
+    assertEquals("receipt2", order.get(1));
+    assertEquals("report", order.get(2));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void submitRejectsWhenQueueIsFull() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    assertNotNull(scheduler.submit("active", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> {
+      started.countDown();
+      release.await();
+      job.success(true);
+    }));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertNotNull(scheduler.submit("queued", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> job.success(true)));
+    assertNull(scheduler.submit("overflow", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> job.success(true)));
+    assertEquals(1L, scheduler.getStats().get("rejected"));
+
+    release.countDown();
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void pausedJobsRunAfterResume() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    CountDownLatch ran = new CountDownLatch(1);
+
+    scheduler.pause();
+    scheduler.submit("held", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> {
+      ran.countDown();
+      job.success(true);
+    });
+
+    assertFalse(ran.await(200, TimeUnit.MILLISECONDS));
+    scheduler.resume();
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void heldJobsCanBeCancelledAndOvertakenWhilePaused() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    MethodChannel.Result heldResult = mock(MethodChannel.Result.class);
+    List<String> order = new CopyOnWriteArrayList<>();
+    CountDownLatch ran = new CountDownLatch(2);
+
+    scheduler.pause();
+    scheduler.submit("held", PrintJobScheduler.Priority.NORMAL, "job-1", 0, heldResult, job -> {
+      order.add(job.name);
+      job.success(true);
+    });
+    scheduler.submit("normal", PrintJobScheduler.Priority.NORMAL, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      ran.countDown();
+    });
+    scheduler.submit("urgent", PrintJobScheduler.Priority.URGENT, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      ran.countDown();
+    });
+    // Give the worker time to reach the pause with jobs queued
+    Thread.sleep(100);
+
+    assertEquals(1, scheduler.cancel("job-1"));
+    verify(heldResult, timeout(5000)).error(eq("CANCELLED"), anyString(), eq("job-1"));
+    assertEquals(2, scheduler.getQueueDepth());
+
+    scheduler.resume();
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    assertEquals("urgent", order.get(0));
+    assertEquals("normal", order.get(1));
+    assertEquals(2, order.size());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void jobIgnoringPauseRunsAheadOfHeldJobs() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    List<String> order = new CopyOnWriteArrayList<>();
+    CountDownLatch connected = new CountDownLatch(1);
+
+    scheduler.pause();
+    scheduler.submit("held", PrintJobScheduler.Priority.URGENT, mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+    });
+    // Give the worker time to reach the pause with a job queued
+    Thread.sleep(100);
+    scheduler.submitIgnoringPause("connect", mock(MethodChannel.Result.class), job -> {
+      order.add(job.name);
+      job.success(true);
+      connected.countDown();
+    });
+
+    assertTrue(connected.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(1, order.size());
+    assertEquals(1, scheduler.getQueueDepth());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void requeuedJobRunsAgainOnce() {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+    AtomicInteger runs = new AtomicInteger();
+
+    scheduler.submit("flaky", PrintJobScheduler.Priority.NORMAL, result, job -> {
+      runs.incrementAndGet();
+      if (!job.requeue()) {
+        job.error("PRINT_ERROR", "gave up", null);
+      }
+    });
+
+    verify(result, timeout(5000)).error("PRINT_ERROR", "gave up", null);
+    assertEquals(2, runs.get());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void cancelDropsQueuedJobAndStopsRunningOne() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    MethodChannel.Result runningResult = mock(MethodChannel.Result.class);
+    MethodChannel.Result queuedResult = mock(MethodChannel.Result.class);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch aborted = new CountDownLatch(1);
+    AtomicInteger chunks = new AtomicInteger();
+    AtomicInteger queuedRuns = new AtomicInteger();
+    scheduler.setAbortListener(job -> aborted.countDown());
+
+    // Sends a chunk every 10 ms until told to stop, like printRawBytes
+    scheduler.submit("stuck", PrintJobScheduler.Priority.NORMAL, "job-1", 0, runningResult, job -> {
+      started.countDown();
+      try {
+        while (!job.isStopRequested()) {
+          chunks.incrementAndGet();
+          Thread.sleep(10);
+        }
+      } catch (InterruptedException e) {
+        // Woken by cancel
+      }
+    });
+    scheduler.submit("next", PrintJobScheduler.Priority.NORMAL, "job-2", 0, queuedResult, job -> {
+      queuedRuns.incrementAndGet();
+      job.success(true);
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    assertEquals(1, scheduler.cancel("job-2"));
+    assertEquals(1, scheduler.cancel("job-1"));
+    assertEquals(0, scheduler.cancel("job-1"));
+
+    verify(runningResult, timeout(5000)).error(eq("CANCELLED"), anyString(), eq("job-1"));
+    verify(queuedResult, timeout(5000)).error(eq("CANCELLED"), anyString(), eq("job-2"));
+    assertTrue(aborted.await(5, TimeUnit.SECONDS));
+    assertEquals(0, queuedRuns.get());
+    assertEquals(2L, scheduler.getStats().get("cancelled"));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void deadlineExpiresQueuedAndRunningJobs() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    MethodChannel.Result runningResult = mock(MethodChannel.Result.class);
+    MethodChannel.Result queuedResult = mock(MethodChannel.Result.class);
+    CountDownLatch aborted = new CountDownLatch(1);
+    scheduler.setAbortListener(job -> aborted.countDown());
+
+    // Never answers on its own; only the deadline releases the worker
+    scheduler.submit("hung", PrintJobScheduler.Priority.NORMAL, null, 100, runningResult, job -> {
+    });
+    scheduler.submit("waiting", PrintJobScheduler.Priority.NORMAL, null, 50, queuedResult, job -> job.success(true));
+
+    verify(queuedResult, timeout(5000)).error(eq("DEADLINE_EXCEEDED"), anyString(), isNull());
+    verify(runningResult, timeout(5000)).error(eq("DEADLINE_EXCEEDED"), anyString(), isNull());
+    assertTrue(aborted.await(5, TimeUnit.SECONDS));
+    verify(queuedResult, never()).success(any());
+    assertEquals(2L, scheduler.getStats().get("deadlineExceeded"));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void jobThatNeverAnswersFailsWithTimeout() throws Exception {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    scheduler.setJobTimeoutMs(100);
+    MethodChannel.Result hungResult = mock(MethodChannel.Result.class);
+    MethodChannel.Result nextResult = mock(MethodChannel.Result.class);
+    CountDownLatch timedOut = new CountDownLatch(1);
+    CountDownLatch aborted = new CountDownLatch(1);
+    scheduler.setTimeoutListener(job -> timedOut.countDown());
+    scheduler.setAbortListener(job -> aborted.countDown());
+
+    // Like a listener the service never calls back
+    scheduler.submit("hung", PrintJobScheduler.Priority.NORMAL, "job-1", 0, hungResult, job -> {
+    });
+    scheduler.submit("next", PrintJobScheduler.Priority.NORMAL, nextResult, job -> job.success(true));
+
+    verify(hungResult, timeout(5000)).error(eq("TIMEOUT"), anyString(), eq("job-1"));
+    verify(nextResult, timeout(5000)).success(true);
+    assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+    assertTrue(aborted.await(5, TimeUnit.SECONDS));
+    assertEquals(1L, scheduler.getStats().get("timedOut"));
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void timeoutIncludesTheTimeTheTaskSpentBlocked() {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    scheduler.setJobTimeoutMs(300);
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+    long startedAt = System.nanoTime();
+
+    // Like a task waiting on the printer for as long as the job may run
+    scheduler.submit("blocked", PrintJobScheduler.Priority.NORMAL, result, job -> Thread.sleep(job.getRemainingRunMs()));
+
+    verify(result, timeout(5000)).error(eq("TIMEOUT"), anyString(), isNull());
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    assertTrue("timed out after " + elapsedMs + "ms", elapsedMs < 550);
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void taskExceptionIsReportedAsError() {
+    PrintJobScheduler scheduler = new PrintJobScheduler(Runnable::run);
+    MethodChannel.Result result = mock(MethodChannel.Result.class);
+
+    scheduler.submit("broken", PrintJobScheduler.Priority.NORMAL, result, job -> {
+      throw new IllegalStateException("boom");
+    });
+
+    verify(result, timeout(5000)).error("JOB_EXCEPTION", "Error running broken", "boom");
+    scheduler.shutdown();
+  }
+}
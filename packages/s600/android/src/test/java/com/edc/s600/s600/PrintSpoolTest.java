@@ -0,0 +1,134 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrintSpoolTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static byte[] payload(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void unfinishedJobsAndProgressSurviveRestart() throws Exception {
+    File file = new File(folder.getRoot(), "spool.log");
+    PrintSpool spool = new PrintSpool(file);
+    spool.open(null);
+
+    PrintSpool.Entry done = spool.append("printText", null, payload("done"), null);
+    byte[] data = payload("raw bytes");
+    PrintSpool.Entry partial = spool.append("printRawBytes", "sale-1", payload("partial"), data);
+    // The data is kept by reference, not copied
+    assertSame(data, partial.getData());
+    spool.progress(partial, 512);
+    spool.complete(done);
+    spool.close();
+
+    PrintSpool reopened = new PrintSpool(file);
+    CountDownLatch recovered = new CountDownLatch(1);
+    reopened.open(entries -> {
+      assertEquals(1, entries);
+      recovered.countDown();
+    });
+    assertTrue(recovered.await(5, TimeUnit.SECONDS));
+    List<PrintSpool.Entry> pending = awaitPending(reopened);
+
+    assertEquals(1, pending.size());
+    assertEquals("printRawBytes", pending.get(0).method);
+    assertEquals("sale-1", pending.get(0).tag);
+    assertEquals(512, pending.get(0).getProgress());
+    assertArrayEquals(payload("partial"), pending.get(0).getPayload());
+    assertArrayEquals(data, pending.get(0).getData());
+
+    // New jobs never reuse a recovered job's ID
+    assertTrue(reopened.append("feedPaper", null, payload("next"), null).id > pending.get(0).id);
+    reopened.close();
+  }
+
+  @Test
+  public void tornTailIsDroppedOnReplay() throws Exception {
+    File file = new File(folder.getRoot(), "spool.log");
+    PrintSpool spool = new PrintSpool(file);
+    spool.open(null);
+    spool.append("printText", null, payload("kept"), null);
+    spool.append("printText", null, payload("torn"), null);
+    spool.close();
+
+    // Cut the last record short, as a process killed mid-write would
+    try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+      raw.setLength(raw.length() - 3);
+    }
+
+    PrintSpool reopened = new PrintSpool(file);
+    reopened.open(null);
+    List<PrintSpool.Entry> pending = awaitPending(reopened);
+    assertEquals(1, pending.size());
+    assertArrayEquals(payload("kept"), pending.get(0).getPayload());
+    assertTrue((long) reopened.getStats().get("tornBytes") > 0);
+    reopened.close();
+  }
+
+  @Test
+  public void finishedJobsAreCompactedAway() throws Exception {
+    File file = new File(folder.getRoot(), "spool.log");
+    PrintSpool spool = new PrintSpool(file);
+    spool.open(null);
+    byte[] body = new byte[4096];
+
+    PrintSpool.Entry live = spool.append("printRawBytes", null, payload("args"), body);
+    for (int i = 0; i < 200; i++) {
+      spool.complete(spool.append("printRawBytes", null, payload("args"), body));
+    }
+    spool.close();
+
+    // Whether or not the writer got to it between batches, reading back rewrites the file
+    PrintSpool reopened = new PrintSpool(file);
+    reopened.open(null);
+    List<PrintSpool.Entry> pending = awaitPending(reopened);
+    assertEquals(1, pending.size());
+    assertEquals(live.id, pending.get(0).id);
+    assertTrue(file.length() < 2 * body.length);
+    reopened.close();
+  }
+
+  @Test
+  public void discardDropsWaitingJobsOnly() {
+    PrintSpool spool = new PrintSpool(new File(folder.getRoot(), "spool.log"));
+    spool.open(null);
+    PrintSpool.Entry waiting = spool.append("printReceipt", "sale-2", payload("a"), null);
+    PrintSpool.Entry running = spool.append("printReceipt", "sale-2", payload("b"), null);
+    assertNotNull(waiting);
+    spool.release(waiting);
+
+    assertEquals(1, spool.discard("sale-2"));
+    assertTrue(spool.takePending().isEmpty());
+    spool.complete(running);
+    assertEquals(0, spool.getStats().get("entries"));
+    spool.close();
+  }
+
+  /**
+   * Entries recovered from disk, waiting for the writer to finish reading them back
+   */
+  private static List<PrintSpool.Entry> awaitPending(PrintSpool spool) {
+    // append waits for the replay; use a throwaway entry as the barrier
+    PrintSpool.Entry barrier = spool.append("barrier", null, new byte[0], null);
+    spool.complete(barrier);
+    return spool.takePending();
+  }
+}
@@ -0,0 +1,395 @@
+package com.edc.s600.s600;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.Looper;
+import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * PrinterLoadHarness - drives mixed print traffic through S600Plugin.onMethodCall against
+ * a FakePrinterService under Robolectric and reports latency, throughput and leaks
+ * Calls are issued from one thread, as the channel's background task queue does, with a
+ * bounded number awaiting an answer like a Dart app awaiting its futures. Answers arrive
+ * on the main looper, which the calling test thread pumps while it waits
+ */
+class PrinterLoadHarness {
+  static final ComponentName SERVICE =
+      new ComponentName(PrinterServiceConnection.PACKAGE_NAME, PrinterServiceConnection.CLASS_NAME);
+
+  // Main looper time advanced per pump; reconnect backoff and status sampling run on it
+  private static final long PUMP_STEP_MS = 10;
+
+  /**
+   * Called on the calling thread before job index is submitted, to inject faults mid-run
+   */
+  interface Hook {
+    void beforeJob(int index) throws Exception;
+  }
+
+  static final class Report {
+    int jobs;
+    int succeeded;
+    int unanswered;
+    final Map<String, Integer> errors = new TreeMap<>();
+    final Map<String, Integer> byMethod = new TreeMap<>();
+    final LatencyHistogram latency = new LatencyHistogram();
+    long wallNanos;
+    int leakedListeners;
+    long heapGrowthBytes;
+
+    double throughput() {
+      return wallNanos > 0 ? jobs * 1e9 / wallNanos : 0;
+    }
+
+    int failed() {
+      int failed = 0;
+      for (int count : errors.values()) {
+        failed += count;
+      }
+      return failed;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d jobs in %.2f s (%.0f/s): %d ok, %d failed %s, %d unanswered; "
+              + "latency p50 %.1f ms, p99 %.1f ms, max %.1f ms; %d leaked listeners; heap %+d KB; mix %s",
+          jobs, wallNanos / 1e9, throughput(), succeeded, failed(), errors, unanswered,
+          latency.percentileMs(0.50), latency.percentileMs(0.99), latency.toMap().get("maxMs"),
+          leakedListeners, heapGrowthBytes / 1024, byMethod);
+    }
+  }
+
+  private final FakePrinterService service;
+  private final ShadowApplication shadowApplication;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final S600Plugin plugin = new S600Plugin();
+  private final FlutterPlugin.FlutterPluginBinding binding;
+  private final Random random = new Random(600);
+  private Semaphore inFlight;
+  private int inFlightLimit;
+
+  PrinterLoadHarness(FakePrinterService service) {
+    this.service = service;
+    Application application = RuntimeEnvironment.getApplication();
+    shadowApplication = Shadows.shadowOf(application);
+    shadowApplication.setComponentNameAndServiceForBindService(SERVICE, service.asBinder());
+    // Like Android: unbinding does not report a disconnect
+    shadowApplication.setUnbindServiceCallsOnServiceDisconnected(false);
+
+    BinaryMessenger messenger = mock(BinaryMessenger.class);
+    when(messenger.makeBackgroundTaskQueue()).thenReturn(mock(BinaryMessenger.TaskQueue.class));
+    binding = mock(FlutterPlugin.FlutterPluginBinding.class);
+    when(binding.getBinaryMessenger()).thenReturn(messenger);
+    when(binding.getApplicationContext()).thenReturn(application);
+    plugin.onAttachedToEngine(binding);
+  }
+
+  S600Plugin plugin() {
+    return plugin;
+  }
+
+  /**
+   * Bind to the fake service through initPrinter; returns whether the plugin reported success
+   */
+  boolean initPrinter() {
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("timeoutMs", 5000);
+    return Boolean.TRUE.equals(call("initPrinter", arguments));
+  }
+
+  /**
+   * Make one call and pump until it is answered: the result on success, the error details
+   * (or the code when there are none) on failure, null if unanswered after 10 s
+   */
+  Object call(String method, Map<String, Object> arguments) {
+    Object[] answer = new Object[1];
+    plugin.onMethodCall(new MethodCall(method, arguments), new MethodChannel.Result() {
+      @Override
+      public void success(Object result) {
+        answer[0] = result;
+      }
+
+      @Override
+      public void error(String errorCode, String errorMessage, Object errorDetails) {
+        answer[0] = errorDetails != null ? errorDetails : errorCode;
+      }
+
+      @Override
+      public void notImplemented() {
+        answer[0] = "notImplemented";
+      }
+    });
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (answer[0] == null && System.nanoTime() < deadline) {
+      pump();
+    }
+    return answer[0];
+  }
+
+  /**
+   * Pump the main looper until done says so or timeoutMs passes; returns done's last answer
+   */
+  boolean pumpUntil(Condition done, long timeoutMs) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (!done.met() && System.nanoTime() < deadline) {
+      pump();
+    }
+    return done.met();
+  }
+
+  interface Condition {
+    boolean met();
+  }
+
+  /**
+   * Kill the service process once the jobs already submitted have been answered, then
+   * report the disconnect the way Android does. The plugin rebinds with its usual backoff.
+   * A print lost mid-paper is not simulated: it would hold the worker for the scheduler's
+   * full job timeout.
+   */
+  void killService() throws InterruptedException {
+    // Outside run every call has already been answered
+    if (inFlight == null) {
+      killNow();
+      return;
+    }
+    inFlight.acquire(inFlightLimit);
+    try {
+      killNow();
+    } finally {
+      inFlight.release(inFlightLimit);
+    }
+  }
+
+  private void killNow() {
+    service.kill();
+    mainHandler.post(() -> {
+      for (ServiceConnection connection : new ArrayList<>(shadowApplication.getBoundServiceConnections())) {
+        connection.onServiceDisconnected(SERVICE);
+      }
+    });
+  }
+
+  /**
+   * Submit jobs mixed calls, at most inFlightLimit unanswered at a time, and wait up to
+   * timeoutMs for every answer
+   */
+  Report run(int jobs, int inFlightLimit, long timeoutMs, Hook hook) throws InterruptedException {
+    this.inFlightLimit = inFlightLimit;
+    inFlight = new Semaphore(inFlightLimit);
+    Report report = new Report();
+    report.jobs = jobs;
+    AtomicInteger answered = new AtomicInteger();
+    long heapBefore = usedHeap();
+
+    ExecutorService caller = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "S600-TaskQueue"));
+    long startedAt = System.nanoTime();
+    caller.execute(() -> {
+      try {
+        for (int i = 0; i < jobs; i++) {
+          if (hook != null) {
+            hook.beforeJob(i);
+          }
+          inFlight.acquire();
+          MethodCall call = nextCall(i);
+          count(report.byMethod, call.method);
+          plugin.onMethodCall(call, new Answer(report, answered, System.nanoTime()));
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException("Load run aborted", e);
+      }
+    });
+
+    long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (answered.get() < jobs && System.nanoTime() < deadline) {
+      pump();
+    }
+    report.wallNanos = System.nanoTime() - startedAt;
+    caller.shutdownNow();
+
+    synchronized (report) {
+      report.unanswered = jobs - answered.get();
+    }
+    report.leakedListeners = countLiveListeners();
+    report.heapGrowthBytes = usedHeap() - heapBefore;
+    return report;
+  }
+
+  @SuppressWarnings("unchecked")
+  Map<String, Object> spoolStats() {
+    Map<String, Object> stats = (Map<String, Object>) call("getQueueStats", null);
+    return (Map<String, Object>) stats.get("spool");
+  }
+
+  void detach() {
+    plugin.onDetachedFromEngine(binding);
+    pump();
+  }
+
+  private void pump() {
+    ShadowLooper.idleMainLooper(PUMP_STEP_MS, TimeUnit.MILLISECONDS);
+    try {
+      Thread.sleep(1);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The mix a busy point-of-sale app sends: mostly text and receipts, some codes, raw
+   * ESC/POS and status polls. QR contents repeat so the symbol cache sees hits and misses.
+   */
+  private MethodCall nextCall(int index) {
+    Map<String, Object> arguments = new HashMap<>();
+    int pick = random.nextInt(100);
+    if (pick < 35) {
+      arguments.put("text", "Flat white x" + (index % 3 + 1) + "      " + (350 + index % 200) / 100.0);
+      arguments.put("fontSize", 24);
+      return new MethodCall("printText", arguments);
+    }
+    if (pick < 45) {
+      arguments.put("data", "https://pay.example.com/r/" + (index % 50));
+      arguments.put("size", 200);
+      return new MethodCall("printQRCode", arguments);
+    }
+    if (pick < 55) {
+      arguments.put("data", "SKU" + (100000 + index % 500));
+      arguments.put("type", "CODE128");
+      arguments.put("width", 384);
+      arguments.put("height", 80);
+      return new MethodCall("printBarcode", arguments);
+    }
+    if (pick < 70) {
+      arguments.put("items", receipt(index));
+      return new MethodCall("printReceipt", arguments);
+    }
+    if (pick < 80) {
+      arguments.put("bytes", escPos(index));
+      arguments.put("chunkSize", 256);
+      arguments.put("mode", "raw");
+      return new MethodCall("printRawBytes", arguments);
+    }
+    if (pick < 95) {
+      return new MethodCall("getPrinterStatus", null);
+    }
+    arguments.put("lines", 2);
+    return new MethodCall("feedPaper", arguments);
+  }
+
+  private static List<Map<String, Object>> receipt(int index) {
+    List<Map<String, Object>> items = new ArrayList<>();
+    items.add(item("type", "text", "text", "SPROUT COFFEE", "style", "bold", "alignment", "center", "fontSize", 32));
+    for (int line = 0; line < 6; line++) {
+      items.add(item("type", "text", "text", "Item " + line + "          " + (line + 1) * 1.25, "fontSize", 24));
+    }
+    items.add(item("type", "text", "text", "TOTAL " + (index % 90 + 10) + ".00", "alignment", "right", "fontSize", 24));
+    items.add(item("type", "qrCode", "data", "https://pay.example.com/r/" + (index % 50), "size", 160));
+    items.add(item("type", "feedLine", "lines", 3));
+    return items;
+  }
+
+  private static byte[] escPos(int index) {
+    StringBuilder text = new StringBuilder("\u001b@");
+    for (int line = 0; line < 64; line++) {
+      text.append("Order ").append(index).append(" line ").append(line).append("                 \n");
+    }
+    return text.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private static Map<String, Object> item(Object... keyValues) {
+    Map<String, Object> item = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      item.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return item;
+  }
+
+  private static void count(Map<String, Integer> counts, String key) {
+    Integer count = counts.get(key);
+    counts.put(key, count == null ? 1 : count + 1);
+  }
+
+  private int countLiveListeners() {
+    // Weakly held listeners only survive a few collections if something still references them
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      pump();
+    }
+    return service.getLiveListeners();
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * Result for one call; records its latency on the main thread and frees its in-flight slot
+   */
+  private final class Answer implements MethodChannel.Result {
+    private final Report report;
+    private final AtomicInteger answered;
+    private final long submittedAt;
+
+    Answer(Report report, AtomicInteger answered, long submittedAt) {
+      this.report = report;
+      this.answered = answered;
+      this.submittedAt = submittedAt;
+    }
+
+    @Override
+    public void success(Object result) {
+      synchronized (report) {
+        report.succeeded++;
+      }
+      finish();
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+      synchronized (report) {
+        count(report.errors, errorCode);
+      }
+      finish();
+    }
+
+    @Override
+    public void notImplemented() {
+      error("NOT_IMPLEMENTED", null, null);
+    }
+
+    private void finish() {
+      report.latency.record(System.nanoTime() - submittedAt);
+      answered.incrementAndGet();
+      inFlight.release();
+    }
+  }
+}
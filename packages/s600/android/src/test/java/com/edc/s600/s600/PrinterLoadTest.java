@@ -0,0 +1,375 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import com.kp.ktsdkservice.data.AidlErrorCode;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+/**
+ * Load and soak runs against FakePrinterService. The default size keeps CI fast; a soak
+ * run is `./gradlew testDebugUnitTest --tests '*PrinterLoadTest' -Ps600.load.jobs=50000`
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
+public class PrinterLoadTest {
+  private static final int JOBS = Integer.getInteger("s600.load.jobs", 2000);
+  private static final int IN_FLIGHT = 16;
+
+  // Generous: the paper is simulated at 100x real speed, so a run takes seconds
+  private static final long TIMEOUT_MS = 120000 + JOBS * 20L;
+  private static final long MAX_HEAP_GROWTH_BYTES = 32L * 1024 * 1024;
+
+  private FakePrinterService service;
+  private PrinterLoadHarness harness;
+
+  @Before
+  public void setUp() {
+    service = new FakePrinterService().setRowsPerSecond(80000);
+    harness = new PrinterLoadHarness(service);
+    assertTrue("initPrinter", harness.initPrinter());
+  }
+
+  @After
+  public void tearDown() {
+    harness.detach();
+    service.shutdown();
+  }
+
+  @Test
+  public void mixedLoadIsAnsweredWithoutLeaks() throws Exception {
+    PrinterLoadHarness.Report report = harness.run(JOBS, IN_FLIGHT, TIMEOUT_MS, null);
+
+    assertEquals(report.toString(), 0, report.unanswered);
+    assertEquals(report.errors.toString(), JOBS, report.succeeded);
+    assertEquals(report.toString(), 0, report.leakedListeners);
+    assertEquals(0, service.getUnansweredListeners());
+    assertEquals(0, service.getMainLooperCalls());
+    assertEquals(0, service.getCallbackThreadCalls());
+    // Every job was answered, so the spool holds nothing
+    assertEquals(0, harness.spoolStats().get("entries"));
+    assertTrue("heap grew " + report.heapGrowthBytes, report.heapGrowthBytes < MAX_HEAP_GROWTH_BYTES);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void rawJobCutOffByPaperOutFinishesFromSpool() {
+    StringBuilder text = new StringBuilder();
+    for (int line = 0; line < 40; line++) {
+      text.append("Spooled line ").append(line).append('\n');
+    }
+    byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("bytes", bytes);
+    arguments.put("chunkSize", 64);
+    arguments.put("mode", "raw");
+
+    // Paper runs out after a few chunks
+    service.setPaperOutAfter(4);
+    Map<String, Object> failed = (Map<String, Object>) harness.call("printRawBytes", arguments);
+    assertEquals(failed.toString(), true, failed.get("spooled"));
+    int resumeOffset = (int) failed.get("resumeOffset");
+    assertTrue(resumeOffset > 0 && resumeOffset < bytes.length);
+
+    // Once the status sampler sees paper again the rest prints by itself, once
+    long printedBefore = service.getCalls("printText");
+    service.setPaperOut(false);
+    assertTrue(harness.pumpUntil(() -> (int) harness.spoolStats().get("entries") == 0, 10000));
+    int remainingChunks = (bytes.length - resumeOffset + 63) / 64;
+    assertEquals(remainingChunks, service.getCalls("printText") - printedBefore);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void interpretedJobCutOffByPaperOutSkipsWhatPrinted() {
+    StringBuilder text = new StringBuilder("\u001b@");
+    for (int line = 0; line < 200; line++) {
+      text.append("Interpreted line ").append(line).append('\n');
+    }
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("bytes", text.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+    // The default mode interprets the stream here; the paper runs out after three calls
+    service.setPaperOutAfter(3);
+    Map<String, Object> failed = (Map<String, Object>) harness.call("printRawBytes", arguments);
+    assertEquals(failed.toString(), true, failed.get("spooled"));
+    assertEquals(3, failed.get("resumeOperation"));
+
+    long printedBefore = service.getCalls("printText");
+    service.setPaperOut(false);
+    assertTrue(harness.pumpUntil(() -> (int) harness.spoolStats().get("entries") == 0, 10000));
+    long resumedCalls = service.getCalls("printText") - printedBefore;
+
+    // Printed whole, the same stream takes three calls more than the resumed job did
+    long wholeBefore = service.getCalls("printText");
+    Map<String, Object> whole = (Map<String, Object>) harness.call("printRawBytes", arguments);
+    assertEquals(whole.toString(), true, whole.get("success"));
+    assertEquals(service.getCalls("printText") - wholeBefore - 3, resumedCalls);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void wideRasterIsCroppedToThePaperAndPrintedInStrips() {
+    // GS v 0 for 1600 dots by 600 rows, four times wider than the head
+    int widthBytes = 200;
+    int height = 600;
+    byte[] bytes = new byte[8 + widthBytes * height];
+    System.arraycopy(new byte[] {0x1d, 'v', '0', 0, (byte) widthBytes, 0, (byte) height, (byte) (height >> 8)},
+        0, bytes, 0, 8);
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("bytes", bytes);
+    arguments.put("mode", "interpret");
+
+    long stripsBefore = service.getCalls("printBmp");
+    Map<String, Object> printed = (Map<String, Object>) harness.call("printRawBytes", arguments);
+    assertEquals(printed.toString(), true, printed.get("success"));
+    // 256, 256 and 88 rows, none wider than the paper
+    assertEquals(3, service.getCalls("printBmp") - stripsBefore);
+    assertEquals(384, service.getWidestBitmap());
+  }
+
+  @Test
+  public void burstOfSmallCallsPrintsInOneCycle() {
+    Map<String, Object> window = new HashMap<>();
+    window.put("windowMs", 20);
+    assertEquals(true, harness.call("setCoalescing", window));
+    long printsBefore = service.getCalls("printText");
+    long startsBefore = service.getCalls("prnStart");
+
+    AtomicInteger succeeded = new AtomicInteger();
+    MethodChannel.Result counter = new MethodChannel.Result() {
+      @Override
+      public void success(Object result) {
+        succeeded.incrementAndGet();
+      }
+
+      @Override
+      public void error(String errorCode, String errorMessage, Object errorDetails) {
+      }
+
+      @Override
+      public void notImplemented() {
+      }
+    };
+    for (int i = 0; i < 10; i++) {
+      Map<String, Object> arguments = new HashMap<>();
+      arguments.put("text", "Line " + i);
+      arguments.put("lines", 1);
+      harness.plugin().onMethodCall(new MethodCall(i % 5 == 4 ? "feedPaper" : "printText", arguments), counter);
+    }
+
+    assertTrue(harness.pumpUntil(() -> succeeded.get() == 10, 10000));
+    assertEquals(1, service.getCalls("printText") - printsBefore);
+    assertEquals(1, service.getCalls("prnStart") - startsBefore);
+  }
+
+  @Test
+  public void lateCallbackOfCancelledJobLeavesTheNextJobAlone() {
+    // Slow paper, so the cancelled job's listener fires while the next job is printing
+    service.setRowsPerSecond(2400);
+    StringBuilder longText = new StringBuilder();
+    for (int line = 0; line < 40; line++) {
+      longText.append("Cancelled line ").append(line).append('\n');
+    }
+    Map<String, Object> cancelled = new HashMap<>();
+    cancelled.put("text", longText.toString());
+    cancelled.put("jobId", "slow");
+    Map<String, Object> next = new HashMap<>();
+    next.put("text", "Next job");
+    Map<String, Object> cancel = new HashMap<>();
+    cancel.put("jobId", "slow");
+
+    long printsBefore = service.getCalls("printText");
+    long startsBefore = service.getCalls("prnStart");
+    long closesBefore = service.getCalls("printClose");
+    Object[] answer = new Object[1];
+    harness.plugin().onMethodCall(new MethodCall("printText", cancelled), new MethodChannel.Result() {
+      @Override
+      public void success(Object result) {
+        answer[0] = result;
+      }
+
+      @Override
+      public void error(String errorCode, String errorMessage, Object errorDetails) {
+        answer[0] = errorCode;
+      }
+
+      @Override
+      public void notImplemented() {
+      }
+    });
+    assertTrue(harness.pumpUntil(() -> service.getCalls("printText") == printsBefore + 1, 5000));
+
+    assertEquals(true, harness.call("cancelJob", cancel));
+    assertEquals(true, harness.call("printText", next));
+    assertTrue(harness.pumpUntil(() -> service.getUnansweredListeners() == 0, 5000));
+
+    // Only the next job started the engine; the closes are the abort's and the next job's
+    assertEquals("CANCELLED", answer[0]);
+    assertEquals(startsBefore + 1, service.getCalls("prnStart"));
+    assertEquals(closesBefore + 2, service.getCalls("printClose"));
+    assertEquals(0, service.getCallbackThreadCalls());
+  }
+
+  @Test
+  public void rejectedBarcodeDataFailsWithoutGivingUpOnTheFirmware() {
+    Map<String, Object> badCheckDigit = new HashMap<>();
+    badCheckDigit.put("type", "ean13");
+    badCheckDigit.put("data", "1234567890123");
+    Map<String, Object> valid = new HashMap<>();
+    valid.put("type", "ean13");
+    valid.put("data", "1234567890128");
+    int rejected = AidlErrorCode.Printer.ERROR_PRINT_BARCODE_OTHER;
+
+    service.failNext(1, rejected);
+    assertEquals("Code: " + rejected, harness.call("printBarcode", badCheckDigit));
+
+    // The firmware still prints the symbology
+    long nativeBefore = service.getCalls("printBarCode");
+    long bitmapsBefore = service.getCalls("printBmp");
+    assertEquals(true, harness.call("printBarcode", valid));
+    assertEquals(nativeBefore + 1, service.getCalls("printBarCode"));
+    assertEquals(bitmapsBefore, service.getCalls("printBmp"));
+
+    // Valid data it rejects is rendered instead, from then on
+    service.failNext(1, rejected);
+    assertEquals(true, harness.call("printBarcode", valid));
+    assertEquals(true, harness.call("printBarcode", valid));
+    assertEquals(nativeBefore + 2, service.getCalls("printBarCode"));
+    assertEquals(bitmapsBefore + 2, service.getCalls("printBmp"));
+    // The state check and the rendered fallback ran on the print worker, not in onError
+    assertEquals(0, service.getCallbackThreadCalls());
+  }
+
+  @Test
+  public void sessionKeepsTheEngineOpenUntilEndedOrIdle() {
+    Map<String, Object> text = new HashMap<>();
+    text.put("text", "Merchant copy");
+    Map<String, Object> session = new HashMap<>();
+    session.put("idleTimeoutMs", 500);
+
+    Map<String, Object> line = new HashMap<>();
+    line.put("type", "text");
+    line.put("text", "Customer copy");
+    Map<String, Object> receipt = new HashMap<>();
+    receipt.put("items", Collections.singletonList(line));
+
+    assertEquals(true, harness.call("beginSession", session));
+    long closesBefore = service.getCalls("printClose");
+    long initsBefore = service.getCalls("prnInit");
+    for (int copy = 0; copy < 3; copy++) {
+      assertEquals(true, harness.call("printReceipt", receipt));
+      assertEquals(true, harness.call("printText", text));
+    }
+    // Only the first receipt opened the engine; the rest went straight into it
+    assertEquals(initsBefore + 1, service.getCalls("prnInit"));
+    assertEquals(closesBefore, service.getCalls("printClose"));
+    assertEquals(true, harness.call("endSession", null));
+    assertEquals(closesBefore + 1, service.getCalls("printClose"));
+    assertEquals(false, harness.call("endSession", null));
+
+    // Left open, the session closes itself once nothing has printed for the timeout
+    assertEquals(true, harness.call("beginSession", session));
+    assertEquals(true, harness.call("printText", text));
+    assertTrue(harness.pumpUntil(() -> service.getCalls("printClose") == closesBefore + 2, 5000));
+    assertEquals(false, harness.call("endSession", null));
+  }
+
+  @Test
+  public void sessionEndsWithTheServiceThatHeldItsEngine() throws Exception {
+    Map<String, Object> session = new HashMap<>();
+    session.put("idleTimeoutMs", 60000);
+    Map<String, Object> line = new HashMap<>();
+    line.put("type", "text");
+    line.put("text", "Customer copy");
+    Map<String, Object> receipt = new HashMap<>();
+    receipt.put("items", Collections.singletonList(line));
+
+    assertEquals(true, harness.call("beginSession", session));
+    assertEquals(true, harness.call("printReceipt", receipt));
+    harness.killService();
+    assertTrue(harness.pumpUntil(() -> service.getRestarts() == 1
+        && "ready".equals(harness.call("getPrinterStatus", null)), 10000));
+
+    // The restarted service has its engine closed, so the receipt opens and closes it again
+    long initsBefore = service.getCalls("prnInit");
+    long closesBefore = service.getCalls("printClose");
+    assertEquals(true, harness.call("printReceipt", receipt));
+    assertEquals(initsBefore + 1, service.getCalls("prnInit"));
+    assertEquals(closesBefore + 1, service.getCalls("printClose"));
+    // and there is no session left whose engine endSession would close
+    assertEquals(false, harness.call("endSession", null));
+    assertEquals(closesBefore + 1, service.getCalls("printClose"));
+  }
+
+  @Test
+  @GraphicsMode(GraphicsMode.Mode.NATIVE)
+  public void tallImageIsScaledToThePaperAndPrintedInStrips() {
+    Bitmap source = Bitmap.createBitmap(768, 1600, Bitmap.Config.ARGB_8888);
+    source.eraseColor(Color.GRAY);
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    assertTrue(source.compress(Bitmap.CompressFormat.PNG, 100, png));
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("bytes", png.toByteArray());
+    arguments.put("dither", "ordered");
+
+    // 768 dots wide scales to 384, so 1600 rows become 800: four strips
+    long stripsBefore = service.getCalls("printBmp");
+    assertEquals(true, harness.call("printImage", arguments));
+    assertEquals(4, service.getCalls("printBmp") - stripsBefore);
+
+    arguments.put("bytes", new byte[] {1, 2, 3});
+    assertEquals("Image could not be decoded", harness.call("printImage", arguments));
+  }
+
+  @Test
+  public void paperOutAndOverheatingAreReportedByName() {
+    // The sampler reads the service's PrinterConstant states and names them for Dart
+    service.setPaperOut(true);
+    assertTrue(harness.pumpUntil(() -> "outOfPaper".equals(harness.call("getPrinterStatus", null)), 10000));
+    service.setPaperOut(false).setOverheated(true);
+    assertTrue(harness.pumpUntil(() -> "overheated".equals(harness.call("getPrinterStatus", null)), 10000));
+    service.setOverheated(false);
+    assertTrue(harness.pumpUntil(() -> "ready".equals(harness.call("getPrinterStatus", null)), 10000));
+  }
+
+  @Test
+  public void faultsAndServiceDeathAreAnsweredAndRecovered() throws Exception {
+    service.setErrorRate(0.02, AidlErrorCode.Printer.ERROR_PRINT_UNKNOWN);
+    int paperOutAt = JOBS / 4;
+    int killAt = JOBS / 2;
+
+    PrinterLoadHarness.Report report = harness.run(JOBS, IN_FLIGHT, TIMEOUT_MS, index -> {
+      if (index == paperOutAt) {
+        service.setPaperOut(true);
+      } else if (index == paperOutAt + 50) {
+        service.setPaperOut(false);
+      } else if (index == killAt) {
+        harness.killService();
+      }
+    });
+
+    // Every call is answered, one way or the other, and the plugin came back after the crash
+    assertEquals(report.toString(), 0, report.unanswered);
+    assertTrue(report.errors.toString(), report.failed() > 0);
+    assertTrue(report.toString(), report.succeeded > JOBS / 2);
+    assertEquals(report.toString(), 1, service.getRestarts());
+    assertEquals(report.toString(), 0, report.leakedListeners);
+  }
+}
@@ -0,0 +1,70 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import android.os.RemoteException;
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class PrinterMetricsTest {
+  @Test
+  @SuppressWarnings("unchecked")
+  public void jobsAreGroupedByTypeWithErrorCodes() {
+    PrinterMetrics metrics = new PrinterMetrics();
+    metrics.recordJob("printText", ms(1), ms(40), null, 0);
+    metrics.recordJob("printText", ms(3), ms(60), null, 1);
+    metrics.recordJob("printText", ms(2), ms(5000), "PRINT_ERROR", 0);
+    metrics.recordTransfer("printRawBytes", 1200, 24, 2);
+
+    Map<String, Object> jobs = (Map<String, Object>) metrics.snapshot().get("jobs");
+    Map<String, Object> text = (Map<String, Object>) jobs.get("printText");
+    assertEquals(2L, text.get("succeeded"));
+    assertEquals(1L, text.get("failed"));
+    assertEquals(1L, text.get("retries"));
+    assertEquals(1L, ((Map<String, Object>) text.get("errors")).get("PRINT_ERROR"));
+
+    Map<String, Object> run = (Map<String, Object>) text.get("run");
+    assertEquals(3L, run.get("count"));
+    assertEquals(5000.0, (double) run.get("maxMs"), 0.001);
+    // Log2 buckets: the median (60 ms) is reported as its bucket bound, within 2x
+    double p50 = (double) run.get("p50Ms");
+    assertTrue("p50 " + p50, p50 >= 60 && p50 <= 120);
+
+    Map<String, Object> raw = (Map<String, Object>) jobs.get("printRawBytes");
+    assertEquals(1200L, raw.get("bytes"));
+    assertEquals(24L, raw.get("chunks"));
+
+    metrics.reset();
+    assertTrue(((Map<String, Object>) metrics.snapshot().get("jobs")).isEmpty());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void instrumentedPrinterTimesCallsAndKeepsExceptions() throws Exception {
+    PrinterMetrics metrics = new PrinterMetrics();
+    AidlPrinter printer = mock(AidlPrinter.class);
+    when(printer.getPrinterState()).thenReturn(0).thenThrow(new RemoteException("gone"));
+    AidlPrinter timed = InstrumentedPrinter.wrap(printer, metrics, new FlightRecorder(8));
+
+    assertEquals(0, timed.getPrinterState());
+    try {
+      timed.getPrinterState();
+      fail("RemoteException expected");
+    } catch (RemoteException e) {
+      assertEquals("gone", e.getMessage());
+    }
+
+    Map<String, Object> ipc = (Map<String, Object>) metrics.snapshot().get("ipc");
+    assertEquals(2L, ((Map<String, Object>) ipc.get("getPrinterState")).get("count"));
+  }
+
+  private static long ms(long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+}
@@ -0,0 +1,58 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.kp.ktsdkservice.data.PrinterConstant;
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class ReceiptCompilerTest {
+  private final ReceiptCompiler compiler = new ReceiptCompiler(null, 384);
+
+  @Test
+  public void receiptRunsAsOneTransaction() throws Exception {
+    List<Map<String, Object>> items = new ArrayList<>();
+    items.add(item("type", "text", "text", "Coffee", "fontSize", 24));
+    items.add(item("type", "text", "text", "Total 3.50", "fontSize", 24));
+    items.add(item("type", "feedLine", "lines", 2));
+
+    ReceiptProgram program = compiler.compile(items);
+    AidlPrinter printer = mock(AidlPrinter.class);
+    program.run(printer);
+
+    InOrder order = inOrder(printer);
+    order.verify(printer).prnInit();
+    order.verify(printer).prnFontSet(PrinterConstant.FontSize.NORMAL, PrinterConstant.FontSize.NORMAL);
+    order.verify(printer).prnStr("Coffee\n");
+    order.verify(printer).prnStr("Total 3.50\n");
+    order.verify(printer).prnStr("\n\n");
+    order.verify(printer).prnStart();
+    // Same font for both lines, so it is only set once
+    verify(printer, times(1)).prnFontSet(PrinterConstant.FontSize.NORMAL, PrinterConstant.FontSize.NORMAL);
+    assertEquals(3, program.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownItemTypeIsRejected() {
+    List<Map<String, Object>> items = new ArrayList<>();
+    items.add(item("type", "hologram"));
+    compiler.compile(items);
+  }
+
+  private static Map<String, Object> item(Object... keyValues) {
+    Map<String, Object> item = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      item.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return item;
+  }
+}
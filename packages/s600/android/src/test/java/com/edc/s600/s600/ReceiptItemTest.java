@@ -0,0 +1,47 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ReceiptItemTest {
+  @Test
+  public void textDefaultsAndPlainTextDetection() {
+    ReceiptItem plain = ReceiptItem.parse(item("type", "text", "text", "Coffee"), 0);
+    assertEquals(ReceiptItem.Type.TEXT, plain.type);
+    assertEquals(ReceiptItem.DEFAULT_FONT_SIZE, plain.fontSize);
+    assertTrue(plain.isPlainText());
+
+    ReceiptItem centred = ReceiptItem.parse(item("type", "text", "text", "Total", "alignment", "center"), 1);
+    assertFalse(centred.isPlainText());
+    assertNull(ReceiptItem.parse(item("text", "no type"), 2));
+  }
+
+  @Test
+  public void sizesFallBackOnlyWhenMissing() {
+    ReceiptItem image = ReceiptItem.parse(item("type", "image", "bytes", Arrays.asList(1, 2, 255), "width", 0), 0);
+    assertEquals(0, image.width(384));
+    assertFalse(image.hasHeight());
+    assertEquals(3, image.bytes.length);
+    assertEquals((byte) 255, image.bytes[2]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownTypeIsRejected() {
+    ReceiptItem.parse(item("type", "hologram"), 4);
+  }
+
+  private static Map<String, Object> item(Object... keyValues) {
+    Map<String, Object> item = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      item.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return item;
+  }
+}
@@ -0,0 +1,60 @@
+package com.edc.s600.s600;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class ReceiptTemplateTest {
+  private final ReceiptCompiler compiler = new ReceiptCompiler(null, 384);
+
+  @Test
+  public void variablesAreBoundPerPrint() throws Exception {
+    ReceiptTemplate template = ReceiptTemplate.compile("sale", items(), compiler);
+    assertEquals(Arrays.asList("item", "total"), template.describe().get("variables"));
+    assertEquals(2, template.describe().get("staticItems"));
+
+    Map<String, Object> values = new HashMap<>();
+    values.put("item", "Latte");
+    values.put("total", 3.5);
+    AidlPrinter printer = mock(AidlPrinter.class);
+    template.bind(values).run(printer);
+
+    InOrder order = inOrder(printer);
+    order.verify(printer).prnStr("COFFEE SHOP\n");
+    order.verify(printer).prnStr("Latte  3.5\n");
+    order.verify(printer).prnStr("\n\n");
+    order.verify(printer).prnStart();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingVariableIsRejected() {
+    ReceiptTemplate template = ReceiptTemplate.compile("sale", items(), compiler);
+    template.bind(new HashMap<>());
+  }
+
+  private static List<Map<String, Object>> items() {
+    List<Map<String, Object>> items = new ArrayList<>();
+    Map<String, Object> header = new HashMap<>();
+    header.put("type", "text");
+    header.put("text", "COFFEE SHOP");
+    items.add(header);
+    Map<String, Object> line = new HashMap<>();
+    line.put("type", "text");
+    line.put("text", "{{item}}  {{ total }}");
+    items.add(line);
+    Map<String, Object> feed = new HashMap<>();
+    feed.put("type", "feedLine");
+    feed.put("lines", 2);
+    items.add(feed);
+    return items;
+  }
+}
@@ -1,11 +1,38 @@
 package com.edc.s600.s600;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import android.content.ComponentName;
+import android.os.IBinder;
+import android.os.Looper;
+import com.kp.ktsdkservice.printer.AidlPrinter;
+import com.kp.ktsdkservice.service.AidlDeviceService;
+import io.flutter.embedding.engine.plugins.FlutterPlugin;
+import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
 
 /**
  * This demonstrates a simple unit test of the Java portion of this plugin's implementation.
@@ -15,6 +42,8 @@ import org.junit.Test;
  * you can run them directly from IDEs that support JUnit such as Android Studio.
  */
 
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 33)
 public class S600PluginTest {
   @Test
   public void onMethodCall_getPlatformVersion_returnsExpectedValue() {
@@ -26,4 +55,76 @@ public class S600PluginTest {
 
     verify(mockResult).success("Android " + android.os.Build.VERSION.RELEASE);
   }
+
+  @Test
+  public void channelIsServedFromBackgroundTaskQueue() {
+    BinaryMessenger messenger = mock(BinaryMessenger.class);
+    BinaryMessenger.TaskQueue taskQueue = mock(BinaryMessenger.TaskQueue.class);
+    when(messenger.makeBackgroundTaskQueue()).thenReturn(taskQueue);
+    FlutterPlugin.FlutterPluginBinding binding = mock(FlutterPlugin.FlutterPluginBinding.class);
+    when(binding.getBinaryMessenger()).thenReturn(messenger);
+    // A real application, so the spool file lands in its no-backup directory and not the working directory
+    when(binding.getApplicationContext()).thenReturn(RuntimeEnvironment.getApplication());
+
+    new S600Plugin().onAttachedToEngine(binding);
+
+    verify(messenger).setMessageHandler(eq("s600"), any(), eq(taskQueue));
+  }
+
+  @Test
+  public void aidlCallsNeverRunOnTheMainLooper() throws Exception {
+    // Under Robolectric the test thread is the main looper's, and channel calls arrive on it
+    assertTrue(Looper.myLooper() == Looper.getMainLooper());
+    List<String> mainLooperCalls = new CopyOnWriteArrayList<>();
+    List<Thread> aidlThreads = new CopyOnWriteArrayList<>();
+    IBinder printerBinder = mock(IBinder.class);
+    Answer<Object> recording = invocation -> {
+      aidlThreads.add(Thread.currentThread());
+      if (Looper.myLooper() == Looper.getMainLooper()) {
+        mainLooperCalls.add(invocation.getMethod().getName());
+      }
+      return "getPrinter".equals(invocation.getMethod().getName()) ? printerBinder
+          : Mockito.RETURNS_DEFAULTS.answer(invocation);
+    };
+    AidlPrinter printer = mock(AidlPrinter.class, recording);
+    when(printerBinder.queryLocalInterface(anyString())).thenReturn(printer);
+    AidlDeviceService service = mock(AidlDeviceService.class, recording);
+    IBinder serviceBinder = mock(IBinder.class);
+    when(serviceBinder.queryLocalInterface(anyString())).thenReturn(service);
+    Shadows.shadowOf(RuntimeEnvironment.getApplication()).setComponentNameAndServiceForBindService(
+        new ComponentName(PrinterServiceConnection.PACKAGE_NAME, PrinterServiceConnection.CLASS_NAME), serviceBinder);
+
+    // Connect the way an app does, so looking up the printer is covered too
+    S600Plugin plugin = new S600Plugin();
+    FlutterPlugin.FlutterPluginBinding binding = binding();
+    plugin.onAttachedToEngine(binding);
+    MethodChannel.Result initResult = mock(MethodChannel.Result.class);
+    plugin.onMethodCall(new MethodCall("initPrinter", null), initResult);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (Mockito.mockingDetails(initResult).getInvocations().isEmpty() && System.nanoTime() < deadline) {
+      Shadows.shadowOf(Looper.getMainLooper()).idle();
+      Thread.sleep(10);
+    }
+    verify(initResult).success(true);
+    verify(service).getPrinter();
+
+    Map<String, Object> arguments = new HashMap<>();
+    arguments.put("text", "Hello");
+    plugin.onMethodCall(new MethodCall("printText", arguments), mock(MethodChannel.Result.class));
+    plugin.onMethodCall(new MethodCall("getPrinterStatus", null), mock(MethodChannel.Result.class));
+
+    verify(printer, timeout(2000)).printText(anyList(), any());
+    assertFalse(aidlThreads.isEmpty());
+    assertTrue("AIDL calls on the main looper: " + mainLooperCalls, mainLooperCalls.isEmpty());
+    plugin.onDetachedFromEngine(binding);
+  }
+
+  private static FlutterPlugin.FlutterPluginBinding binding() {
+    BinaryMessenger messenger = mock(BinaryMessenger.class);
+    when(messenger.makeBackgroundTaskQueue()).thenReturn(mock(BinaryMessenger.TaskQueue.class));
+    FlutterPlugin.FlutterPluginBinding binding = mock(FlutterPlugin.FlutterPluginBinding.class);
+    when(binding.getBinaryMessenger()).thenReturn(messenger);
+    when(binding.getApplicationContext()).thenReturn(RuntimeEnvironment.getApplication());
+    return binding;
+  }
 }
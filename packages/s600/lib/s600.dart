@@ -1,3 +1,7 @@
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+
 import 's600_platform_interface.dart';
 
 /// A response model for printer operations
@@ -5,85 +9,191 @@ class PrinterResponseModel {
   final bool success;
   final String message;
 
-  PrinterResponseModel({required this.success, required this.message});
+  /// Any other fields reported by the native side, e.g. `bytesPerSecond`,
+  /// `finalChunkSize` and `retries` for raw byte printing, or `spooled` and
+  /// `resumeOffset` (`resumeOperation` for an interpreted stream) when a failed
+  /// job will finish from the print spool
+  final Map<String, dynamic> details;
+
+  PrinterResponseModel({required this.success, required this.message, this.details = const {}});
 
   factory PrinterResponseModel.fromMap(Map<String, dynamic> map) {
     return PrinterResponseModel(
       success: map['success'] ?? false,
       message: map['message'] ?? 'Unknown response',
+      details: Map<String, dynamic>.from(map)
+        ..remove('success')
+        ..remove('message'),
     );
   }
 }
 
 class S600 {
+  /// Priority lanes understood by the native print queue.
+  /// Jobs in an earlier lane are always served before later ones.
+  static const String priorityReceipt = 'receipt';
+  static const String priorityNormal = 'normal';
+  static const String priorityReport = 'report';
+
   Future<String?> getPlatformVersion() {
     return S600Platform.instance.getPlatformVersion();
   }
   
   /// Initialize the printer
-  Future<bool> initPrinter() {
-    return S600Platform.instance.initPrinter();
+  ///
+  /// Completes as soon as the printer service connects, or with `false` after
+  /// [timeoutMs] milliseconds.
+  Future<bool> initPrinter({int timeoutMs = 5000}) {
+    return S600Platform.instance.initPrinter(timeoutMs: timeoutMs);
   }
   
   /// Get printer status
+  ///
+  /// Answered from a cached value kept up to date by the native status monitor.
   Future<String> getPrinterStatus() {
     return S600Platform.instance.getPrinterStatus();
   }
   
+  /// Printer status changes pushed by the native side
+  ///
+  /// Emits the current status on listen, then one event per change:
+  /// `ready`, `busy`, `outOfPaper`, `overheated`, `error` or `disconnected`.
+  Stream<String> get onPrinterStatusChanged {
+    return S600Platform.instance.printerStatusStream();
+  }
+  
   /// Print text
   Future<bool> printText({
     required String text,
     String alignment = 'left',
     String style = 'normal',
     int fontSize = 24,
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
   }) {
     return S600Platform.instance.printText(
       text,
       alignment: alignment,
       style: style,
       fontSize: fontSize,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
     );
   }
   
   /// Print QR code
+  ///
+  /// [size] is the maximum edge length in dots; the code is scaled by whole
+  /// modules, so it may come out slightly smaller. [errorCorrection] is one of
+  /// `L`, `M`, `Q` or `H`; lower levels give fewer, larger modules.
   Future<bool> printQRCode({
     required String data,
     int size = 200,
+    String errorCorrection = 'H',
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
   }) {
     return S600Platform.instance.printQRCode(
       data,
       size: size,
+      errorCorrection: errorCorrection,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
+    );
+  }
+  
+  /// Print an image from its encoded PNG or JPEG bytes
+  ///
+  /// The image is decoded, scaled and dithered to black and white natively,
+  /// on the print queue's background thread, and printed in strips so memory
+  /// stays bounded however tall it is. [width] is the printed width in dots,
+  /// capped at the 384-dot paper width; by default images wider than the
+  /// paper are scaled down to fit and narrower ones print at their own size.
+  /// [alignment] is `left`, `center` or `right`. [dither] is
+  /// `floydSteinberg` (smooth shading, best for photos), `ordered` (a regular
+  /// pattern) or `threshold` (no dithering, for logos and line art).
+  Future<bool> printImage(
+    List<int> bytes, {
+    int? width,
+    String alignment = 'center',
+    String dither = 'floydSteinberg',
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
+  }) {
+    return S600Platform.instance.printImage(
+      bytes,
+      width: width,
+      alignment: alignment,
+      dither: dither,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
     );
   }
   
   /// Print barcode
+  ///
+  /// [type] is one of `code128`, `code39`, `code93`, `ean13`, `ean8`, `upc-a`,
+  /// `upc-e`, `itf`, `codabar`, `pdf417`, `datamatrix`, `aztec` or `qrcode`.
+  /// The printer firmware draws the barcode when it supports the type;
+  /// otherwise it is rendered on the device. [width] is capped at 384 dots.
   Future<bool> printBarcode({
     required String data,
     String type = 'code128',
+    int width = 384,
     int height = 100,
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
   }) {
     return S600Platform.instance.printBarcode(
       data,
       type: type,
+      width: width,
       height: height,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
     );
   }
   
   /// Print raw bytes directly to the printer
   /// 
-  /// [bytes] - List of integers (bytes) to send to the printer
+  /// [bytes] - Bytes to send to the printer; pass a `Uint8List` to avoid a copy
   /// [chunkSize] - Size of chunks to break the data into (default: 50)
-  /// [delayMs] - Delay between chunks in milliseconds (default: 50)
+  /// [delayMs] - Extra pause between acknowledged chunks in milliseconds (default: 0)
+  /// [adaptive] - Treat [chunkSize] and [delayMs] as starting values and tune them
+  /// to how fast the printer acknowledges; the achieved throughput is in
+  /// [PrinterResponseModel.details]
+  /// [mode] - 'auto' interprets ESC/POS into SDK calls unless the service has a
+  /// direct byte command; 'interpret' and 'raw' force one path
+  /// [priority] - Queue lane for the job (default: normal)
+  /// [jobId], [deadlineMs] - See [cancelJob]
   Future<PrinterResponseModel> printRawBytes(
     List<int> bytes, {
     int chunkSize = 50,
-    int delayMs = 50,
+    int delayMs = 0,
+    bool adaptive = false,
+    String mode = 'auto',
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
   }) async {
     try {
       final response = await S600Platform.instance.printRawBytes(
         bytes,
         chunkSize: chunkSize,
         delayMs: delayMs,
+        adaptive: adaptive,
+        mode: mode,
+        priority: priority,
+        jobId: jobId,
+        deadlineMs: deadlineMs,
       );
       
       if (response is Map) {
@@ -99,14 +209,20 @@ class S600 {
       }
       
       return PrinterResponseModel(success: false, message: 'Unknown response type');
+    } on PlatformException catch (e) {
+      // The native side explains the failure, e.g. how far the job got, in the error details
+      if (e.details is Map) {
+        return PrinterResponseModel.fromMap(Map<String, dynamic>.from(e.details));
+      }
+      return PrinterResponseModel(success: false, message: e.toString());
     } catch (e) {
       return PrinterResponseModel(success: false, message: e.toString());
     }
   }
   
   /// Feed paper
-  Future<bool> feedPaper(int lines) {
-    return S600Platform.instance.feedPaper(lines);
+  Future<bool> feedPaper(int lines, {String priority = priorityNormal, String? jobId, int? deadlineMs}) {
+    return S600Platform.instance.feedPaper(lines, priority: priority, jobId: jobId, deadlineMs: deadlineMs);
   }
   
   /// Set print density
@@ -114,42 +230,217 @@ class S600 {
     return S600Platform.instance.setPrintDensity(density);
   }
   
-  /// Print receipt - implementation for compatibility with example app
-  /// This method will print each item in the receipt sequentially
-  Future<bool> printReceipt(List<dynamic> items) async {
-    bool success = true;
+  /// Merge bursts of small print calls into one print cycle
+  ///
+  /// While enabled, consecutive [printText] and [feedPaper] calls in the same
+  /// priority lane are held for up to [windowMs] from the first one and sent
+  /// to the printer as one item list, with one start and close. Each call
+  /// still completes on its own once the batch has printed. Any other print
+  /// call, or [flush], sends the held calls straight away. Calls given a
+  /// `jobId` or `deadlineMs` are never held. Off by default.
+  Future<bool> setCoalescing({bool enabled = true, int windowMs = 50}) {
+    return S600Platform.instance.setCoalescing(enabled ? windowMs : 0);
+  }
+  
+  /// Print the calls held by [setCoalescing] now, without waiting for the
+  /// window to close. Returns false if none were held.
+  Future<bool> flush() {
+    return S600Platform.instance.flush();
+  }
+  
+  /// Keep the printer engine open between print jobs
+  ///
+  /// Normally every job ends by closing the printer engine, so the next one
+  /// pays for warming it up again. Inside a session jobs leave it open, and
+  /// back-to-back receipts, such as a merchant copy followed by a customer
+  /// copy, print without the engine restarting. The session starts after the
+  /// jobs already queued, and ends with [endSession] or once nothing has
+  /// printed for [idleTimeoutMs]. Calling it again only updates the timeout.
+  Future<bool> beginSession({int idleTimeoutMs = 10000}) {
+    return S600Platform.instance.beginSession(idleTimeoutMs: idleTimeoutMs);
+  }
+  
+  /// Close the printer engine once the jobs queued before this call have
+  /// printed, and end the session. Returns false if no session was open.
+  Future<bool> endSession() {
+    return S600Platform.instance.endSession();
+  }
+  
+  /// Cancel the print jobs submitted with [jobId]
+  ///
+  /// Every print method takes an optional `jobId` of the caller's choosing and
+  /// an optional `deadlineMs`. A queued job is dropped; a running job stops at
+  /// its next chunk or receipt item, the printer transaction is closed and the
+  /// status returns to `ready`. Either way the job's own call fails with
+  /// `CANCELLED`, or `DEADLINE_EXCEEDED` when `deadlineMs` passed after it was
+  /// submitted. Returns false if no job with [jobId] was queued or running.
+  Future<bool> cancelJob(String jobId) {
+    return S600Platform.instance.cancelJob(jobId);
+  }
+  
+  /// Get print queue statistics
+  ///
+  /// Contains `queueDepth`, `depthByPriority`, `lastWaitMs`, `averageWaitMs`,
+  /// `maxWaitMs` and counters for submitted, completed, rejected, cancelled
+  /// and deadline-exceeded jobs. `spool` holds the print spool's counters:
+  /// `entries` still to print, `fileBytes`, `compactions` and `recovered`.
+  /// `coalescing` holds the [setCoalescing] window, the calls held now and
+  /// the number of calls and batches coalesced. `session` says whether a
+  /// [beginSession] session and the printer engine are open.
+  Future<Map<String, dynamic>> getQueueStats() {
+    return S600Platform.instance.getQueueStats();
+  }
+  
+  /// Get statistics of the native QR code/barcode cache
+  ///
+  /// Contains `hits`, `misses`, `hitRate`, `evictions`, `entries`, `sizeBytes`
+  /// and `maxSizeBytes`.
+  Future<Map<String, dynamic>> getSymbolCacheStats() {
+    return S600Platform.instance.getSymbolCacheStats();
+  }
+  
+  /// Get print performance metrics collected since the last reset
+  ///
+  /// `jobs` holds one entry per job type (`printText`, `printRawBytes`, ...)
+  /// with `succeeded`, `failed`, `retries`, `errors` by code, `bytes`, `chunks`
+  /// and `queueWait`/`run` histograms. `ipc` holds a histogram per printer
+  /// service call, and `bind` the service bind latency. Each histogram has
+  /// `count`, `meanMs`, `maxMs`, `p50Ms`, `p90Ms` and `p99Ms`. Pass [reset] to
+  /// start a new collection window after reading.
+  Future<Map<String, dynamic>> getPrinterMetrics({bool reset = false}) {
+    return S600Platform.instance.getPrinterMetrics(reset: reset);
+  }
+  
+  /// Get the most recent native printer events, oldest first
+  ///
+  /// Each event has `seq`, `time` (epoch ms), `event` and `detail`. Events
+  /// include method calls, job outcomes with error codes and durations, printer
+  /// service calls and connection changes, but never receipt contents. Attach
+  /// the dump to bug reports for a stuck printer. [limit] caps the count
+  /// (default: everything held, up to 256).
+  Future<List<Map<String, dynamic>>> dumpFlightRecorder({int? limit}) {
+    return S600Platform.instance.dumpFlightRecorder(limit: limit);
+  }
+  
+  /// Set the native log level: `verbose`, `debug`, `info` (default), `warn`,
+  /// `error` or `none`
+  Future<bool> setLogLevel(String level) {
+    return S600Platform.instance.setLogLevel(level);
+  }
+  
+  /// Print a receipt as one printer job
+  ///
+  /// Items may be the example app's `TextPrintItem`, `BarcodePrintItem`,
+  /// `ImagePrintItem` and `FeedLinePrintItem`, or maps with a `type` of
+  /// `text`, `qrCode`, `barcode`, `image` or `feedLine`. The whole receipt is
+  /// sent in one call and printed in a single paper cycle.
+  ///
+  /// With [rasterize] the receipt is laid out natively with Android's Canvas
+  /// and sent to the printer as bitmap bands instead of through the printer's
+  /// text commands. This gives full font control and enables `columns` items:
+  /// `{'type': 'columns', 'columns': [{'text': 'Latte', 'weight': 3},
+  /// {'text': '3.50', 'alignment': 'right'}]}`.
+  Future<bool> printReceipt(
+    List<dynamic> items, {
+    bool rasterize = false,
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
+  }) {
+    final receiptItems = <Map<String, dynamic>>[];
     
-    // Process each item in the receipt
     for (var item in items) {
-      bool itemSuccess = true;
-      
-      if (item.runtimeType.toString().contains('TextPrintItem')) {
-        // Print text item
-        itemSuccess = await printText(
-          text: item.text,
-          alignment: _convertAlignment(item.alignment.toString()),
-          style: _convertStyle(item.style.toString()),
-          fontSize: item.fontSize,
-        );
-      } else if (item.runtimeType.toString().contains('BarcodePrintItem')) {
-        // Print barcode item
-        itemSuccess = await printBarcode(
-          data: item.data,
-          type: _convertBarcodeType(item.type.toString()),
-          height: item.height,
-        );
-      } else if (item.runtimeType.toString().contains('FeedLinePrintItem')) {
-        // Feed paper
-        itemSuccess = await feedPaper(item.lines);
+      final receiptItem = _toReceiptItem(item);
+      if (receiptItem != null) {
+        receiptItems.add(receiptItem);
       }
-      
-      // If any item fails, mark the whole receipt as failed
-      if (!itemSuccess) {
-        success = false;
+    }
+    
+    return S600Platform.instance.printReceipt(
+      receiptItems,
+      rasterize: rasterize,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
+    );
+  }
+  
+  /// Register a receipt layout once so later prints only send variable values
+  ///
+  /// Takes the same items as [printReceipt]. Any string field may contain
+  /// `{{name}}` placeholders; items without placeholders are rendered once,
+  /// natively, at registration. Registering an existing [templateId] replaces it.
+  Future<bool> registerReceiptTemplate(String templateId, List<dynamic> items) {
+    final receiptItems = <Map<String, dynamic>>[];
+    
+    for (var item in items) {
+      final receiptItem = _toReceiptItem(item);
+      if (receiptItem != null) {
+        receiptItems.add(receiptItem);
       }
     }
     
-    return success;
+    return S600Platform.instance.registerReceiptTemplate(templateId, receiptItems);
+  }
+  
+  /// Print a template registered with [registerReceiptTemplate]
+  ///
+  /// Fails if a placeholder used by the template has no value in [values].
+  Future<bool> printReceiptTemplate(
+    String templateId,
+    Map<String, dynamic> values, {
+    String priority = priorityNormal,
+    String? jobId,
+    int? deadlineMs,
+  }) {
+    return S600Platform.instance.printReceiptTemplate(
+      templateId,
+      values,
+      priority: priority,
+      jobId: jobId,
+      deadlineMs: deadlineMs,
+    );
+  }
+  
+  /// Drop a registered receipt template
+  Future<bool> unregisterReceiptTemplate(String templateId) {
+    return S600Platform.instance.unregisterReceiptTemplate(templateId);
+  }
+  
+  Map<String, dynamic>? _toReceiptItem(dynamic item) {
+    if (item is Map) {
+      return Map<String, dynamic>.from(item);
+    }
+    
+    final typeName = item.runtimeType.toString();
+    if (typeName.contains('TextPrintItem')) {
+      return {
+        'type': 'text',
+        'text': item.text,
+        'alignment': _convertAlignment(item.alignment.toString()),
+        'style': _convertStyle(item.style.toString()),
+        'fontSize': item.fontSize,
+      };
+    } else if (typeName.contains('BarcodePrintItem')) {
+      return {
+        'type': 'barcode',
+        'data': item.data,
+        'barcodeType': _convertBarcodeType(item.type.toString()),
+        'height': item.height,
+      };
+    } else if (typeName.contains('ImagePrintItem')) {
+      final List<int> imageData = item.imageData;
+      return {
+        'type': 'image',
+        'bytes': imageData is Uint8List ? imageData : Uint8List.fromList(imageData),
+        'width': item.width,
+        'height': item.height,
+      };
+    } else if (typeName.contains('FeedLinePrintItem')) {
+      return {'type': 'feedLine', 'lines': item.lines};
+    }
+    
+    return null;
   }
   
   // Helper methods to convert enum values to strings
@@ -167,6 +458,7 @@ class S600 {
   String _convertBarcodeType(String typeEnum) {
     if (typeEnum.contains('code39')) return 'code39';
     if (typeEnum.contains('qrCode')) return 'qrcode';
+    if (typeEnum.contains('dataMatrix')) return 'datamatrix';
     return 'code128';
   }
 }
@@ -9,6 +9,12 @@ class MethodChannelS600 extends S600Platform {
   @visibleForTesting
   final methodChannel = const MethodChannel('s600');
 
+  /// The event channel the native side pushes printer status changes on.
+  @visibleForTesting
+  final statusChannel = const EventChannel('s600/status');
+
+  Stream<String>? _statusStream;
+
   @override
   Future<String?> getPlatformVersion() async {
     final version = await methodChannel.invokeMethod<String>('getPlatformVersion');
@@ -16,9 +22,11 @@ class MethodChannelS600 extends S600Platform {
   }
   
   @override
-  Future<bool> initPrinter() async {
+  Future<bool> initPrinter({int timeoutMs = 5000}) async {
     try {
-      final result = await methodChannel.invokeMethod<bool>('initPrinter');
+      final result = await methodChannel.invokeMethod<bool>('initPrinter', {
+        'timeoutMs': timeoutMs,
+      });
       return result ?? false;
     } catch (e) {
       debugPrint('S600 init printer error: $e');
@@ -38,13 +46,23 @@ class MethodChannelS600 extends S600Platform {
   }
   
   @override
-  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24}) async {
+  Stream<String> printerStatusStream() {
+    return _statusStream ??= statusChannel
+        .receiveBroadcastStream()
+        .map((status) => status as String);
+  }
+  
+  @override
+  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24, String priority = 'normal', String? jobId, int? deadlineMs}) async {
     try {
       final result = await methodChannel.invokeMethod<bool>('printText', {
         'text': text,
         'alignment': alignment,
         'style': style,
         'fontSize': fontSize,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
       });
       return result ?? false;
     } catch (e) {
@@ -54,11 +72,15 @@ class MethodChannelS600 extends S600Platform {
   }
   
   @override
-  Future<bool> printQRCode(String data, {int size = 200}) async {
+  Future<bool> printQRCode(String data, {int size = 200, String errorCorrection = 'H', String priority = 'normal', String? jobId, int? deadlineMs}) async {
     try {
       final result = await methodChannel.invokeMethod<bool>('printQRCode', {
         'data': data,
         'size': size,
+        'errorCorrection': errorCorrection,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
       });
       return result ?? false;
     } catch (e) {
@@ -68,12 +90,16 @@ class MethodChannelS600 extends S600Platform {
   }
   
   @override
-  Future<bool> printBarcode(String data, {String type = 'code128', int height = 100}) async {
+  Future<bool> printBarcode(String data, {String type = 'code128', int width = 384, int height = 100, String priority = 'normal', String? jobId, int? deadlineMs}) async {
     try {
       final result = await methodChannel.invokeMethod<bool>('printBarcode', {
         'data': data,
         'type': type,
+        'width': width,
         'height': height,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
       });
       return result ?? false;
     } catch (e) {
@@ -83,19 +109,108 @@ class MethodChannelS600 extends S600Platform {
   }
   
   @override
-  Future<dynamic> printRawBytes(List<int> bytes, {int chunkSize = 50, int delayMs = 50}) async {
+  Future<bool> printReceipt(List<Map<String, dynamic>> items, {bool rasterize = false, String priority = 'normal', String? jobId, int? deadlineMs}) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('printReceipt', {
+        'items': items,
+        'rasterize': rasterize,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 print receipt error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> registerReceiptTemplate(String templateId, List<Map<String, dynamic>> items) async {
+    try {
+      final result = await methodChannel.invokeMapMethod<String, dynamic>('registerReceiptTemplate', {
+        'templateId': templateId,
+        'items': items,
+      });
+      return result != null;
+    } catch (e) {
+      debugPrint('S600 register receipt template error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> printReceiptTemplate(String templateId, Map<String, dynamic> values, {String priority = 'normal', String? jobId, int? deadlineMs}) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('printReceiptTemplate', {
+        'templateId': templateId,
+        'values': values,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 print receipt template error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> unregisterReceiptTemplate(String templateId) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('unregisterReceiptTemplate', {
+        'templateId': templateId,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 unregister receipt template error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<dynamic> printRawBytes(List<int> bytes, {int chunkSize = 50, int delayMs = 0, bool adaptive = false, String mode = 'auto', String priority = 'normal', String? jobId, int? deadlineMs}) async {
+    // Uint8List is carried as a single byte[] by the standard codec instead of one boxed Integer per byte
     return await methodChannel.invokeMethod('printRawBytes', {
-      'bytes': bytes,
+      'bytes': bytes is Uint8List ? bytes : Uint8List.fromList(bytes),
       'chunkSize': chunkSize,
       'delayMs': delayMs,
+      'adaptive': adaptive,
+      'mode': mode,
+      'priority': priority,
+      'jobId': jobId,
+      'deadlineMs': deadlineMs,
     });
   }
   
   @override
-  Future<bool> feedPaper(int lines) async {
+  Future<bool> printImage(List<int> bytes, {int? width, String alignment = 'center', String dither = 'floydSteinberg', String priority = 'normal', String? jobId, int? deadlineMs}) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('printImage', {
+        'bytes': bytes is Uint8List ? bytes : Uint8List.fromList(bytes),
+        'width': width,
+        'alignment': alignment,
+        'dither': dither,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 print image error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> feedPaper(int lines, {String priority = 'normal', String? jobId, int? deadlineMs}) async {
     try {
       final result = await methodChannel.invokeMethod<bool>('feedPaper', {
         'lines': lines,
+        'priority': priority,
+        'jobId': jobId,
+        'deadlineMs': deadlineMs,
       });
       return result ?? false;
     } catch (e) {
@@ -116,4 +231,126 @@ class MethodChannelS600 extends S600Platform {
       return false;
     }
   }
+  
+  @override
+  Future<bool> setCoalescing(int windowMs) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('setCoalescing', {
+        'windowMs': windowMs,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 set coalescing error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> flush() async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('flush');
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 flush error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> beginSession({int idleTimeoutMs = 10000}) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('beginSession', {
+        'idleTimeoutMs': idleTimeoutMs,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 begin session error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> endSession() async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('endSession');
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 end session error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<bool> cancelJob(String jobId) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('cancelJob', {
+        'jobId': jobId,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 cancel job error: $e');
+      return false;
+    }
+  }
+  
+  @override
+  Future<Map<String, dynamic>> getQueueStats() async {
+    try {
+      final stats = await methodChannel.invokeMapMethod<String, dynamic>('getQueueStats');
+      return stats ?? <String, dynamic>{};
+    } catch (e) {
+      debugPrint('S600 get queue stats error: $e');
+      return <String, dynamic>{};
+    }
+  }
+  
+  @override
+  Future<Map<String, dynamic>> getSymbolCacheStats() async {
+    try {
+      final stats = await methodChannel.invokeMapMethod<String, dynamic>('getSymbolCacheStats');
+      return stats ?? <String, dynamic>{};
+    } catch (e) {
+      debugPrint('S600 get symbol cache stats error: $e');
+      return <String, dynamic>{};
+    }
+  }
+  
+  @override
+  Future<Map<String, dynamic>> getPrinterMetrics({bool reset = false}) async {
+    try {
+      final metrics = await methodChannel.invokeMapMethod<String, dynamic>('getPrinterMetrics', {
+        'reset': reset,
+      });
+      return metrics ?? <String, dynamic>{};
+    } catch (e) {
+      debugPrint('S600 get printer metrics error: $e');
+      return <String, dynamic>{};
+    }
+  }
+  
+  @override
+  Future<List<Map<String, dynamic>>> dumpFlightRecorder({int? limit}) async {
+    try {
+      final events = await methodChannel.invokeListMethod<Map<Object?, Object?>>('dumpFlightRecorder', {
+        'limit': limit,
+      });
+      return (events ?? const []).map((event) => Map<String, dynamic>.from(event)).toList();
+    } catch (e) {
+      debugPrint('S600 dump flight recorder error: $e');
+      return <Map<String, dynamic>>[];
+    }
+  }
+  
+  @override
+  Future<bool> setLogLevel(String level) async {
+    try {
+      final result = await methodChannel.invokeMethod<bool>('setLogLevel', {
+        'level': level,
+      });
+      return result ?? false;
+    } catch (e) {
+      debugPrint('S600 set log level error: $e');
+      return false;
+    }
+  }
 }
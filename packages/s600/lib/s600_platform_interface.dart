@@ -27,8 +27,8 @@ abstract class S600Platform extends PlatformInterface {
     throw UnimplementedError('platformVersion() has not been implemented.');
   }
   
-  /// Initialize the printer
-  Future<bool> initPrinter() {
+  /// Initialize the printer, waiting up to [timeoutMs] for the printer service to connect
+  Future<bool> initPrinter({int timeoutMs = 5000}) {
     throw UnimplementedError('initPrinter() has not been implemented.');
   }
   
@@ -37,32 +37,67 @@ abstract class S600Platform extends PlatformInterface {
     throw UnimplementedError('getPrinterStatus() has not been implemented.');
   }
   
+  /// Stream of printer status changes, starting with the current status
+  Stream<String> printerStatusStream() {
+    throw UnimplementedError('printerStatusStream() has not been implemented.');
+  }
+  
   /// Print text
-  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24}) {
+  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24, String priority = 'normal', String? jobId, int? deadlineMs}) {
     throw UnimplementedError('printText() has not been implemented.');
   }
   
   /// Print QR code
-  Future<bool> printQRCode(String data, {int size = 200}) {
+  Future<bool> printQRCode(String data, {int size = 200, String errorCorrection = 'H', String priority = 'normal', String? jobId, int? deadlineMs}) {
     throw UnimplementedError('printQRCode() has not been implemented.');
   }
   
+  /// Print an encoded PNG or JPEG image
+  Future<bool> printImage(List<int> bytes, {int? width, String alignment = 'center', String dither = 'floydSteinberg', String priority = 'normal', String? jobId, int? deadlineMs}) {
+    throw UnimplementedError('printImage() has not been implemented.');
+  }
+  
   /// Print barcode
-  Future<bool> printBarcode(String data, {String type = 'code128', int height = 100}) {
+  Future<bool> printBarcode(String data, {String type = 'code128', int width = 384, int height = 100, String priority = 'normal', String? jobId, int? deadlineMs}) {
     throw UnimplementedError('printBarcode() has not been implemented.');
   }
   
-  /// Print raw bytes
+  /// Print a receipt made of item maps as a single printer job
+  Future<bool> printReceipt(List<Map<String, dynamic>> items, {bool rasterize = false, String priority = 'normal', String? jobId, int? deadlineMs}) {
+    throw UnimplementedError('printReceipt() has not been implemented.');
+  }
+  
+  /// Compile a receipt template natively; string fields may contain `{{variables}}`
+  Future<bool> registerReceiptTemplate(String templateId, List<Map<String, dynamic>> items) {
+    throw UnimplementedError('registerReceiptTemplate() has not been implemented.');
+  }
+  
+  /// Print a registered receipt template with the given variable values
+  Future<bool> printReceiptTemplate(String templateId, Map<String, dynamic> values, {String priority = 'normal', String? jobId, int? deadlineMs}) {
+    throw UnimplementedError('printReceiptTemplate() has not been implemented.');
+  }
+  
+  /// Drop a registered receipt template
+  Future<bool> unregisterReceiptTemplate(String templateId) {
+    throw UnimplementedError('unregisterReceiptTemplate() has not been implemented.');
+  }
+  
+  /// Print raw bytes. [mode] is 'auto', 'interpret' or 'raw'
   Future<dynamic> printRawBytes(
     List<int> bytes, {
     int chunkSize = 50,
-    int delayMs = 50,
+    int delayMs = 0,
+    bool adaptive = false,
+    String mode = 'auto',
+    String priority = 'normal',
+    String? jobId,
+    int? deadlineMs,
   }) {
     throw UnimplementedError('printRawBytes() has not been implemented.');
   }
   
   /// Feed paper
-  Future<bool> feedPaper(int lines) {
+  Future<bool> feedPaper(int lines, {String priority = 'normal', String? jobId, int? deadlineMs}) {
     throw UnimplementedError('feedPaper() has not been implemented.');
   }
   
@@ -70,4 +105,56 @@ abstract class S600Platform extends PlatformInterface {
   Future<bool> setPrintDensity(int density) {
     throw UnimplementedError('setPrintDensity() has not been implemented.');
   }
+  
+  /// Hold printText and feedPaper calls for up to [windowMs] and print them
+  /// in one cycle; 0 turns coalescing off
+  Future<bool> setCoalescing(int windowMs) {
+    throw UnimplementedError('setCoalescing() has not been implemented.');
+  }
+  
+  /// Print the calls held for coalescing now
+  Future<bool> flush() {
+    throw UnimplementedError('flush() has not been implemented.');
+  }
+  
+  /// Keep the printer engine open between jobs until [endSession], or until
+  /// nothing has printed for [idleTimeoutMs]
+  Future<bool> beginSession({int idleTimeoutMs = 10000}) {
+    throw UnimplementedError('beginSession() has not been implemented.');
+  }
+  
+  /// Close the session opened by [beginSession] and the printer engine
+  Future<bool> endSession() {
+    throw UnimplementedError('endSession() has not been implemented.');
+  }
+  
+  /// Cancel the queued or running jobs submitted with [jobId]
+  Future<bool> cancelJob(String jobId) {
+    throw UnimplementedError('cancelJob() has not been implemented.');
+  }
+  
+  /// Get print queue statistics (depth per priority lane and wait times)
+  Future<Map<String, dynamic>> getQueueStats() {
+    throw UnimplementedError('getQueueStats() has not been implemented.');
+  }
+  
+  /// Get QR code/barcode cache statistics (hits, misses, evictions, memory use)
+  Future<Map<String, dynamic>> getSymbolCacheStats() {
+    throw UnimplementedError('getSymbolCacheStats() has not been implemented.');
+  }
+  
+  /// Get per job type latency histograms and counters, optionally resetting them
+  Future<Map<String, dynamic>> getPrinterMetrics({bool reset = false}) {
+    throw UnimplementedError('getPrinterMetrics() has not been implemented.');
+  }
+  
+  /// Get the most recent printer events from the native flight recorder, oldest first
+  Future<List<Map<String, dynamic>>> dumpFlightRecorder({int? limit}) {
+    throw UnimplementedError('dumpFlightRecorder() has not been implemented.');
+  }
+  
+  /// Set the native log level: verbose, debug, info, warn, error or none
+  Future<bool> setLogLevel(String level) {
+    throw UnimplementedError('setLogLevel() has not been implemented.');
+  }
 }
@@ -1,3 +1,5 @@
+import 'dart:typed_data';
+
 import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:s600/s600_method_channel.dart';
@@ -31,8 +33,31 @@ void main() {
               return true;
             case 'feedPaper':
               return true;
+            case 'printImage':
+              return methodCall.arguments['bytes'] is Uint8List &&
+                  methodCall.arguments['dither'] == 'floydSteinberg';
             case 'setPrintDensity':
               return true;
+            case 'printReceiptTemplate':
+              return true;
+            case 'cancelJob':
+              return methodCall.arguments['jobId'] == 'sale-1';
+            case 'setCoalescing':
+              return methodCall.arguments['windowMs'] >= 0;
+            case 'flush':
+              return false;
+            case 'beginSession':
+              return methodCall.arguments['idleTimeoutMs'] > 0;
+            case 'endSession':
+              return true;
+            case 'getQueueStats':
+              return {'queueDepth': 2, 'depthByPriority': {'receipt': 1, 'report': 1}};
+            case 'getPrinterMetrics':
+              return {'reset': methodCall.arguments['reset'], 'jobs': {}};
+            case 'dumpFlightRecorder':
+              return [
+                {'seq': 7, 'time': 0, 'event': 'jobEnd', 'detail': 'printText #3 ok 42ms'}
+              ];
             case 'printRawBytes':
               // Return a success response map for the printRawBytes method
               return {
@@ -104,6 +129,10 @@ void main() {
       );
     });
 
+    test('printImage sends the encoded bytes in one typed list', () async {
+      expect(await platform.printImage([0x89, 0x50, 0x4E, 0x47], width: 200), true);
+    });
+
     test('feedPaper', () async {
       expect(await platform.feedPaper(3), true);
     });
@@ -112,6 +141,39 @@ void main() {
       expect(await platform.setPrintDensity(8), true);
     });
 
+    test('setCoalescing and flush', () async {
+      expect(await platform.setCoalescing(40), true);
+      expect(await platform.flush(), false);
+    });
+
+    test('beginSession and endSession', () async {
+      expect(await platform.beginSession(idleTimeoutMs: 5000), true);
+      expect(await platform.endSession(), true);
+    });
+
+    test('cancelJob', () async {
+      expect(await platform.cancelJob('sale-1'), true);
+      expect(await platform.cancelJob('other'), false);
+    });
+    
+    test('getQueueStats', () async {
+      final stats = await platform.getQueueStats();
+      expect(stats['queueDepth'], 2);
+      expect(stats['depthByPriority']['receipt'], 1);
+    });
+
+    test('getPrinterMetrics', () async {
+      final metrics = await platform.getPrinterMetrics(reset: true);
+      expect(metrics['reset'], true);
+      expect(metrics['jobs'], isEmpty);
+    });
+
+    test('dumpFlightRecorder', () async {
+      final events = await platform.dumpFlightRecorder();
+      expect(events, hasLength(1));
+      expect(events.first['detail'], 'printText #3 ok 42ms');
+    });
+
     // New test for printRawBytes
     test('printRawBytes', () async {
       List<int> testBytes = [27, 64, 27, 33, 0, 84, 101, 115, 116]; // ESC/POS commands for "Test"
@@ -154,9 +216,12 @@ void main() {
       
       expect(log, hasLength(1));
       expect(log[0].method, 'printRawBytes');
+      expect(log[0].arguments['bytes'], isA<Uint8List>());
       expect(log[0].arguments['bytes'], testBytes);
       expect(log[0].arguments['chunkSize'], 75);
       expect(log[0].arguments['delayMs'], 150);
+      expect(log[0].arguments['adaptive'], false);
+      expect(log[0].arguments['mode'], 'auto');
     });
   });
 
@@ -179,6 +244,14 @@ void main() {
       methodCalls.clear();
     });
 
+    test('initPrinter arguments', () async {
+      await platform.initPrinter(timeoutMs: 8000);
+
+      expect(methodCalls.length, 1);
+      expect(methodCalls[0].method, 'initPrinter');
+      expect(methodCalls[0].arguments['timeoutMs'], 8000);
+    });
+
     test('printText arguments', () async {
       await platform.printText(
         'Hello World',
@@ -197,12 +270,41 @@ void main() {
       expect(args['alignment'], 'center');
       expect(args['style'], 'bold');
       expect(args['fontSize'], 32);
+      expect(args['priority'], 'normal');
+    });
+
+    test('printReceiptTemplate arguments', () async {
+      await platform.printReceiptTemplate('sale', {'total': '3.50'}, priority: 'receipt');
+
+      final args = methodCalls[0].arguments;
+      expect(args['templateId'], 'sale');
+      expect(args['values']['total'], '3.50');
+      expect(args['priority'], 'receipt');
+    });
+
+    test('priority argument', () async {
+      await platform.printText('Receipt line', priority: 'receipt');
+      await platform.feedPaper(2, priority: 'report');
+
+      expect(methodCalls[0].arguments['priority'], 'receipt');
+      expect(methodCalls[1].arguments['priority'], 'report');
+    });
+
+    test('jobId and deadline arguments', () async {
+      await platform.printReceipt([], jobId: 'sale-1', deadlineMs: 5000);
+      await platform.printText('No handle');
+
+      expect(methodCalls[0].arguments['jobId'], 'sale-1');
+      expect(methodCalls[0].arguments['deadlineMs'], 5000);
+      expect(methodCalls[1].arguments['jobId'], isNull);
+      expect(methodCalls[1].arguments['deadlineMs'], isNull);
     });
 
     test('printQRCode arguments', () async {
       await platform.printQRCode(
         'https://example.com',
         size: 300,
+        errorCorrection: 'M',
       );
       
       expect(methodCalls.length, 1);
@@ -213,12 +315,14 @@ void main() {
       final args = methodCalls[0].arguments;
       expect(args['data'], 'https://example.com');
       expect(args['size'], 300);
+      expect(args['errorCorrection'], 'M');
     });
 
     test('printBarcode arguments', () async {
       await platform.printBarcode(
         '123456789012',
         type: 'code39',
+        width: 300,
         height: 120,
       );
       
@@ -230,6 +334,7 @@ void main() {
       final args = methodCalls[0].arguments;
       expect(args['data'], '123456789012');
       expect(args['type'], 'code39');
+      expect(args['width'], 300);
       expect(args['height'], 120);
     });
 
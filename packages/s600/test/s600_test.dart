@@ -1,3 +1,4 @@
+import 'package:flutter/services.dart';
 import 'package:flutter_test/flutter_test.dart';
 import 'package:s600/s600.dart';
 import 'package:s600/s600_platform_interface.dart';
@@ -7,35 +8,114 @@ import 'package:plugin_platform_interface/plugin_platform_interface.dart';
 class MockS600Platform
     with MockPlatformInterfaceMixin
     implements S600Platform {
+  List<Map<String, dynamic>>? lastReceipt;
+  final Map<String, List<Map<String, dynamic>>> templates = {};
+  PlatformException? rawBytesError;
+  int coalescingWindowMs = 0;
+  int? sessionIdleTimeoutMs;
+  String? lastImageDither;
 
   @override
   Future<String?> getPlatformVersion() => Future.value('42');
   
   @override
-  Future<bool> initPrinter() => Future.value(true);
+  Future<bool> initPrinter({int timeoutMs = 5000}) => Future.value(true);
   
   @override
   Future<String> getPrinterStatus() => Future.value('ready');
   
   @override
-  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24}) => 
+  Stream<String> printerStatusStream() => Stream.fromIterable(['ready', 'busy', 'outOfPaper']);
+  
+  @override
+  Future<bool> printText(String text, {String alignment = 'left', String style = 'normal', int fontSize = 24, String priority = 'normal', String? jobId, int? deadlineMs}) => 
       Future.value(true);
       
   @override
-  Future<bool> printQRCode(String data, {int size = 200}) => Future.value(true);
+  Future<bool> printQRCode(String data, {int size = 200, String errorCorrection = 'H', String priority = 'normal', String? jobId, int? deadlineMs}) => Future.value(true);
   
   @override
-  Future<bool> printBarcode(String data, {String type = 'code128', int height = 100}) => 
+  Future<bool> printBarcode(String data, {String type = 'code128', int width = 384, int height = 100, String priority = 'normal', String? jobId, int? deadlineMs}) => 
       Future.value(true);
       
   @override
-  Future<bool> feedPaper(int lines) => Future.value(true);
+  Future<bool> printImage(List<int> bytes, {int? width, String alignment = 'center', String dither = 'floydSteinberg', String priority = 'normal', String? jobId, int? deadlineMs}) {
+    lastImageDither = dither;
+    return Future.value(bytes.isNotEmpty);
+  }
+  
+  @override
+  Future<bool> feedPaper(int lines, {String priority = 'normal', String? jobId, int? deadlineMs}) => Future.value(true);
   
   @override
   Future<bool> setPrintDensity(int density) => Future.value(true);
   
   @override
-  Future<dynamic> printRawBytes(List<int> bytes, {int chunkSize = 50, int delayMs = 50}) {
+  Future<bool> printReceipt(List<Map<String, dynamic>> items, {bool rasterize = false, String priority = 'normal', String? jobId, int? deadlineMs}) {
+    lastReceipt = items;
+    return Future.value(true);
+  }
+  
+  @override
+  Future<bool> registerReceiptTemplate(String templateId, List<Map<String, dynamic>> items) {
+    templates[templateId] = items;
+    return Future.value(true);
+  }
+  
+  @override
+  Future<bool> printReceiptTemplate(String templateId, Map<String, dynamic> values, {String priority = 'normal', String? jobId, int? deadlineMs}) =>
+      Future.value(templates.containsKey(templateId));
+  
+  @override
+  Future<bool> unregisterReceiptTemplate(String templateId) => Future.value(templates.remove(templateId) != null);
+  
+  @override
+  Future<bool> setCoalescing(int windowMs) {
+    coalescingWindowMs = windowMs;
+    return Future.value(true);
+  }
+  
+  @override
+  Future<bool> flush() => Future.value(coalescingWindowMs > 0);
+  
+  @override
+  Future<bool> beginSession({int idleTimeoutMs = 10000}) {
+    sessionIdleTimeoutMs = idleTimeoutMs;
+    return Future.value(true);
+  }
+  
+  @override
+  Future<bool> endSession() {
+    final wasOpen = sessionIdleTimeoutMs != null;
+    sessionIdleTimeoutMs = null;
+    return Future.value(wasOpen);
+  }
+  
+  @override
+  Future<bool> cancelJob(String jobId) => Future.value(jobId == 'sale-1');
+  
+  @override
+  Future<Map<String, dynamic>> getQueueStats() => Future.value({'queueDepth': 0, 'rejected': 0});
+  
+  @override
+  Future<Map<String, dynamic>> getSymbolCacheStats() => Future.value({'hits': 3, 'misses': 1});
+  
+  @override
+  Future<Map<String, dynamic>> getPrinterMetrics({bool reset = false}) =>
+      Future.value({'jobs': {'printText': {'succeeded': 1}}, 'reset': reset});
+  
+  @override
+  Future<List<Map<String, dynamic>>> dumpFlightRecorder({int? limit}) =>
+      Future.value([{'seq': 0, 'event': 'call', 'detail': 'printText'}]);
+  
+  @override
+  Future<bool> setLogLevel(String level) => Future.value(level == 'debug');
+  
+  @override
+  Future<dynamic> printRawBytes(List<int> bytes, {int chunkSize = 50, int delayMs = 0, bool adaptive = false, String mode = 'auto', String priority = 'normal', String? jobId, int? deadlineMs}) {
+    if (rawBytesError != null) {
+      return Future.error(rawBytesError!);
+    }
     // Return a success response map to simulate the actual implementation
     return Future.value({
       'success': true,
@@ -75,6 +155,10 @@ void main() {
       expect(result, 'ready');
     });
     
+    test('onPrinterStatusChanged', () async {
+      expect(await s600Plugin.onPrinterStatusChanged.toList(), ['ready', 'busy', 'outOfPaper']);
+    });
+    
     test('printText', () async {
       // Test with default parameters
       var result = await s600Plugin.printText(
@@ -123,16 +207,90 @@ void main() {
       expect(result, true);
     });
     
+    test('printImage', () async {
+      expect(await s600Plugin.printImage([0x89, 0x50, 0x4E, 0x47], dither: 'ordered'), true);
+      expect(fakePlatform.lastImageDither, 'ordered');
+      expect(await s600Plugin.printImage([]), false);
+    });
+    
     test('feedPaper', () async {
       final result = await s600Plugin.feedPaper(3);
       expect(result, true);
     });
     
+    test('printReceipt sends the whole receipt in one call', () async {
+      final result = await s600Plugin.printReceipt([
+        {'type': 'text', 'text': 'Coffee', 'alignment': 'center'},
+        {'type': 'qrCode', 'data': 'https://example.com'},
+        {'type': 'feedLine', 'lines': 2},
+      ]);
+      expect(result, true);
+      expect(fakePlatform.lastReceipt!.length, 3);
+      expect(fakePlatform.lastReceipt![1]['type'], 'qrCode');
+    });
+    
+    test('receipt templates', () async {
+      expect(await s600Plugin.registerReceiptTemplate('sale', [
+        {'type': 'text', 'text': 'COFFEE SHOP', 'alignment': 'center'},
+        {'type': 'text', 'text': 'Total: {{total}}'},
+      ]), true);
+      expect(fakePlatform.templates['sale']!.length, 2);
+      expect(await s600Plugin.printReceiptTemplate('sale', {'total': '3.50'}), true);
+      expect(await s600Plugin.unregisterReceiptTemplate('sale'), true);
+      expect(await s600Plugin.printReceiptTemplate('sale', {'total': '3.50'}), false);
+    });
+    
     test('setPrintDensity', () async {
       final result = await s600Plugin.setPrintDensity(8);
       expect(result, true);
     });
     
+    test('setCoalescing', () async {
+      expect(await s600Plugin.setCoalescing(windowMs: 30), true);
+      expect(fakePlatform.coalescingWindowMs, 30);
+      expect(await s600Plugin.flush(), true);
+      
+      expect(await s600Plugin.setCoalescing(enabled: false), true);
+      expect(fakePlatform.coalescingWindowMs, 0);
+    });
+    
+    test('printer session', () async {
+      expect(await s600Plugin.beginSession(idleTimeoutMs: 3000), true);
+      expect(fakePlatform.sessionIdleTimeoutMs, 3000);
+      expect(await s600Plugin.endSession(), true);
+      expect(await s600Plugin.endSession(), false);
+    });
+    
+    test('cancelJob', () async {
+      expect(await s600Plugin.cancelJob('sale-1'), true);
+      expect(await s600Plugin.cancelJob('unknown'), false);
+    });
+    
+    test('getQueueStats', () async {
+      final stats = await s600Plugin.getQueueStats();
+      expect(stats['queueDepth'], 0);
+    });
+    
+    test('getSymbolCacheStats', () async {
+      final stats = await s600Plugin.getSymbolCacheStats();
+      expect(stats['hits'], 3);
+    });
+    
+    test('getPrinterMetrics', () async {
+      final metrics = await s600Plugin.getPrinterMetrics(reset: true);
+      expect(metrics['jobs']['printText']['succeeded'], 1);
+      expect(metrics['reset'], true);
+    });
+    
+    test('dumpFlightRecorder', () async {
+      final events = await s600Plugin.dumpFlightRecorder(limit: 10);
+      expect(events.first['event'], 'call');
+    });
+    
+    test('setLogLevel', () async {
+      expect(await s600Plugin.setLogLevel('debug'), true);
+    });
+    
     // New test for printRawBytes
     test('printRawBytes', () async {
       // Test with sample ESC/POS commands
@@ -166,6 +324,26 @@ void main() {
       expect(result.success, true);
     });
     
+    test('printRawBytes keeps the details of a spooled failure', () async {
+      fakePlatform.rawBytesError = PlatformException(
+        code: 'PRINT_ERROR',
+        message: 'Error printing raw bytes',
+        details: {
+          'success': false,
+          'message': 'Failed to print chunk 5 using all supported methods (printer outOfPaper)',
+          'spooled': true,
+          'resumeOffset': 256,
+        },
+      );
+      
+      final result = await s600Plugin.printRawBytes([27, 64, 84, 101, 115, 116]);
+      
+      expect(result.success, false);
+      expect(result.message, contains('outOfPaper'));
+      expect(result.details['spooled'], true);
+      expect(result.details['resumeOffset'], 256);
+    });
+    
     // Test PrinterResponseModel
     test('PrinterResponseModel creation', () {
       final model = PrinterResponseModel(
@@ -187,6 +365,19 @@ void main() {
       expect(model.message, 'Test message');
     });
     
+    test('PrinterResponseModel keeps extra fields as details', () {
+      final model = PrinterResponseModel.fromMap({
+        'success': true,
+        'message': 'Print completed successfully',
+        'bytesPerSecond': 2048.0,
+        'finalChunkSize': 512,
+      });
+      
+      expect(model.details['bytesPerSecond'], 2048.0);
+      expect(model.details['finalChunkSize'], 512);
+      expect(model.details.containsKey('success'), false);
+    });
+    
     test('PrinterResponseModel handles missing fields', () {
       final model = PrinterResponseModel.fromMap({});
       